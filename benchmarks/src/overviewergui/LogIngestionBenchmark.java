@@ -0,0 +1,101 @@
+package overviewergui;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays the recorded Overviewer output into an {@link OverviewerOutputPanel} the way a run does: chunks are
+ * handed over from the benchmark thread, which stands in for the reader thread, and moved into the view on the
+ * event dispatch thread once every frame. The refresh timer is stopped so only the benchmark drains the panel.
+ * <p>
+ * One operation ingests the whole log. The time per operation should grow in line with the log size; time
+ * growing faster than that means appending has become dependent on the size of the text already shown.
+ *
+ * @author Mark Bernard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LogIngestionBenchmark {
+    /** Characters read from the process at a time. */
+    @Param({"256", "8192"})
+    public int chunkChars;
+    /** Chunks read between two frames, the output rate of the run. */
+    @Param({"1", "50"})
+    public int chunksPerFrame;
+    /** Size of the log ingested by one operation. */
+    @Param({"1024", "16384"})
+    public int logKilobytes;
+
+    private List<char[]> chunks;
+    private OverviewerOutputPanel panel;
+    private Runnable drain;
+
+    @Setup(Level.Trial)
+    public void loadOutput() throws Exception {
+        chunks = RecordedOutput.chunk(RecordedOutput.loadDefault().toChars(logKilobytes * 1024), chunkChars);
+    }
+
+    @Setup(Level.Invocation)
+    public void createPanel() throws InvocationTargetException, InterruptedException {
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                panel = new OverviewerOutputPanel(new RenderScheduler(1), 20000, 4 * 1024 * 1024);
+                OutputRefreshTimer.unregister(panel);
+            }
+        });
+        drain = new Runnable() {
+
+            @Override
+            public void run() {
+                panel.drainOutput();
+            }
+        };
+    }
+
+    @TearDown(Level.Invocation)
+    public void closePanel() throws InvocationTargetException, InterruptedException {
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                panel.close();
+            }
+        });
+    }
+
+    @Benchmark
+    public OverviewerOutputPanel ingest() throws InvocationTargetException, InterruptedException {
+        int count = 0;
+        for(char chunk[]:chunks) {
+            panel.outputRead(null, chunk, 0, chunk.length);
+            if(++count % chunksPerFrame == 0) {
+                SwingUtilities.invokeAndWait(drain);
+            }
+        }
+        SwingUtilities.invokeAndWait(drain);
+        return panel;
+    }
+}
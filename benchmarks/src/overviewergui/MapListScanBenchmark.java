@@ -0,0 +1,120 @@
+package overviewergui;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from creating a {@link MapListModel} on a save folder until every world is in the list, with the
+ * batches applied on the event dispatch thread as in the GUI.
+ *
+ * @author Mark Bernard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MapListScanBenchmark {
+    /** Worlds in the save folder. */
+    @Param({"1000", "10000"})
+    public int worlds;
+
+    private Path saveFolder;
+    private MapListModel model;
+
+    @Setup(Level.Trial)
+    public void createSaveFolder() throws IOException {
+        saveFolder = Files.createTempDirectory("overviewergui-saves");
+        for(int i=0;i<worlds;i++) {
+            Path world = Files.createDirectory(saveFolder.resolve(String.format("World %05d", i)));
+            Files.createFile(world.resolve("level.dat"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSaveFolder() throws IOException {
+        Files.walkFileTree(saveFolder, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopWatching() throws InvocationTargetException, InterruptedException {
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                model.setFolder("");
+            }
+        });
+    }
+
+    @Benchmark
+    public MapListModel scan() throws InvocationTargetException, InterruptedException {
+        final CountDownLatch listed = new CountDownLatch(1);
+        final String folder = saveFolder.toAbsolutePath().toString();
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                model = new MapListModel(folder);
+                model.addListDataListener(new ListDataListener() {
+
+                    @Override
+                    public void intervalAdded(ListDataEvent e) {
+                        if(model.getSize() == worlds) {
+                            listed.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void intervalRemoved(ListDataEvent e) {
+                    }
+
+                    @Override
+                    public void contentsChanged(ListDataEvent e) {
+                    }
+                });
+            }
+        });
+        listed.await();
+        return model;
+    }
+}
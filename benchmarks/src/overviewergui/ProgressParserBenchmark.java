@@ -0,0 +1,53 @@
+package overviewergui;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the {@link ProgressParser} on the recorded Overviewer output, fed in the chunks a run reads
+ * from the process. One operation parses 1 MB of output.
+ *
+ * @author Mark Bernard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProgressParserBenchmark {
+    /** Characters read from the process at a time. */
+    @Param({"64", "8192"})
+    public int chunkChars;
+
+    private List<char[]> chunks;
+
+    @Setup(Level.Trial)
+    public void loadOutput() throws Exception {
+        chunks = RecordedOutput.chunk(RecordedOutput.loadDefault().toChars(1024 * 1024), chunkChars);
+    }
+
+    @Benchmark
+    public long parse() {
+        RenderProgress progress = new RenderProgress();
+        ProgressParser parser = new ProgressParser(progress);
+        for(char chunk[]:chunks) {
+            parser.feed(chunk, 0, chunk.length);
+        }
+        parser.finish();
+        return progress.getTilesDone();
+    }
+}
@@ -0,0 +1,157 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Overviewer output recorded from a real render, with the time stamps Overviewer writes in front of every
+ * line. The benchmarks replay it as the character chunks a run reads from the process; {@link #main(String[])}
+ * replays it with its recorded timing so it can stand in for Overviewer in the GUI.
+ *
+ * @author Mark Bernard
+ */
+public class RecordedOutput {
+    /** The fixture the benchmarks use, relative to the benchmarks folder. */
+    public static final String DEFAULT_FIXTURE = "fixtures/overviewer-render.log";
+    private static final int TIME_STAMP_LENGTH = 19;
+
+    private List<String> lines;
+    private long times[];
+
+    private RecordedOutput(List<String> lines, long times[]) {
+        this.lines = lines;
+        this.times = times;
+    }
+
+    /**
+     * Read a recording. Lines without a time stamp are given the time of the line before them.
+     *
+     * @param file
+     * @return the recording
+     * @throws IOException
+     */
+    public static RecordedOutput load(File file) throws IOException {
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        long times[] = new long[lines.size()];
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        long first = -1;
+        long last = 0;
+        for(int i=0;i<lines.size();i++) {
+            String line = lines.get(i);
+            if(line.length() >= TIME_STAMP_LENGTH) {
+                try {
+                    long time = format.parse(line.substring(0, TIME_STAMP_LENGTH)).getTime();
+                    if(first < 0) {
+                        first = time;
+                    }
+                    last = time - first;
+                }
+                catch (ParseException e) {
+                    e.getMessage();
+                }
+            }
+            times[i] = last;
+        }
+        return new RecordedOutput(lines, times);
+    }
+
+    /**
+     * Load the default fixture, from the folder named by the system property {@code fixtures.dir} if set.
+     *
+     * @return the recording
+     * @throws IOException
+     */
+    public static RecordedOutput loadDefault() throws IOException {
+        String folder = System.getProperty("fixtures.dir");
+        return load(folder == null ? new File(DEFAULT_FIXTURE) : new File(folder, new File(DEFAULT_FIXTURE).getName()));
+    }
+
+    /**
+     * The recording repeated until it is at least the given size, as one block of text.
+     *
+     * @param minChars
+     * @return the text
+     */
+    public char[] toChars(int minChars) {
+        StringBuilder text = new StringBuilder(minChars + 1024);
+        do {
+            for(String line:lines) {
+                text.append(line).append('\n');
+            }
+        } while(text.length() < minChars);
+        char chars[] = new char[text.length()];
+        text.getChars(0, text.length(), chars, 0);
+        return chars;
+    }
+
+    /**
+     * Cut text into the chunks a run would read with a buffer of the given size.
+     *
+     * @param text
+     * @param chunkChars
+     * @return the chunks
+     */
+    public static List<char[]> chunk(char text[], int chunkChars) {
+        List<char[]> chunks = new ArrayList<>(text.length / chunkChars + 1);
+        for(int i=0;i<text.length;i+=chunkChars) {
+            char chunk[] = new char[Math.min(chunkChars, text.length - i)];
+            System.arraycopy(text, i, chunk, 0, chunk.length);
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * @return the recorded lines
+     */
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * @return the time the recording covers in milliseconds
+     */
+    public long getDurationMillis() {
+        return times.length == 0 ? 0 : times[times.length - 1];
+    }
+
+    /**
+     * Write the recording to a stream with its recorded timing.
+     *
+     * @param out
+     * @param speed How many times faster than recorded to replay.
+     * @throws InterruptedException
+     */
+    public void replay(PrintStream out, double speed) throws InterruptedException {
+        long start = System.nanoTime();
+        for(int i=0;i<lines.size();i++) {
+            long due = (long)(times[i] / speed) - (System.nanoTime() - start) / 1000000;
+            if(due > 0) {
+                out.flush();
+                Thread.sleep(due);
+            }
+            out.println(lines.get(i));
+        }
+        out.flush();
+    }
+
+    /**
+     * Replay a recording to standard out, to stand in for Overviewer.
+     * <p>
+     * Usage: {@code RecordedOutput [file] [speed]}
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String args[]) throws Exception {
+        RecordedOutput recording = args.length > 0 ? load(new File(args[0])) : loadDefault();
+        recording.replay(System.out, args.length > 1 ? Double.parseDouble(args[1]) : 1);
+    }
+}
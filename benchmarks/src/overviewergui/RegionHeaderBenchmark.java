@@ -0,0 +1,134 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scanning the region file headers of a world, as done to estimate render times and to find the regions
+ * changed since the last render. The world is generated with region files holding a random number of chunks
+ * and some data after the header, so the page cache is warm after the first iteration like it is for a world
+ * that is played on.
+ *
+ * @author Mark Bernard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RegionHeaderBenchmark {
+    private static final int HEADER_SIZE = 8192;
+    private static final int CHUNKS_PER_REGION = 1024;
+    private static final int DATA_SIZE = 64 * 1024;
+
+    /** Region files in the world. */
+    @Param({"100", "2000"})
+    public int regions;
+
+    private Path world;
+    private List<File> regionFiles;
+    private RegionManifest previous;
+
+    @Setup(Level.Trial)
+    public void createWorld() throws IOException {
+        world = Files.createTempDirectory("overviewergui-world");
+        File regionFolder = new File(world.toFile(), "region");
+        regionFolder.mkdirs();
+        Random random = new Random(regions);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        int side = (int)Math.ceil(Math.sqrt(regions));
+        for(int i=0;i<regions;i++) {
+            header.clear();
+            int chunks = random.nextInt(CHUNKS_PER_REGION + 1);
+            for(int c=0;c<CHUNKS_PER_REGION;c++) {
+                header.putInt(c < chunks ? ((2 + c) << 8) | 1 : 0);
+            }
+            while(header.hasRemaining()) {
+                header.putInt(random.nextInt());
+            }
+            File region = new File(regionFolder, "r." + (i % side - side / 2) + "." + (i / side - side / 2) + ".mca");
+            try (RandomAccessFile file = new RandomAccessFile(region, "rw")) {
+                file.write(header.array());
+                file.setLength(HEADER_SIZE + DATA_SIZE);
+            }
+        }
+        regionFiles = RegionManifest.listRegionFiles(world.toFile());
+        previous = RegionManifest.scan(world.toFile(), null);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteWorld() throws IOException {
+        Files.walkFileTree(world, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Count the chunks of every region, as the render time estimate does.
+     *
+     * @return the chunk count
+     * @throws IOException
+     */
+    @Benchmark
+    public long countChunks() throws IOException {
+        return RegionManifest.countChunks(regionFiles);
+    }
+
+    /**
+     * Scan a world that has no manifest yet, reading and checksumming every header.
+     *
+     * @return the manifest
+     * @throws IOException
+     */
+    @Benchmark
+    public RegionManifest scanNew() throws IOException {
+        return RegionManifest.scan(world.toFile(), null);
+    }
+
+    /**
+     * Scan a world with nothing changed since the last manifest, which only reads the file attributes.
+     *
+     * @return the manifest
+     * @throws IOException
+     */
+    @Benchmark
+    public RegionManifest scanUnchanged() throws IOException {
+        return RegionManifest.scan(world.toFile(), previous);
+    }
+}
@@ -0,0 +1,125 @@
+package overviewergui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the output of a batch run between the maps in it. A line that names a map, by one of its render
+ * names or as <code>'map'</code> or <code>map:</code>, goes to that map only; all other lines, including the
+ * overall progress Overviewer reports for the whole batch, go to every map. Each map gets its own
+ * {@link RenderProgress} parsed from the lines it receives.
+ *
+ * @author Mark Bernard
+ */
+public class BatchOutputRouter implements RunListener {
+    private List<Target> targets;
+    private StringBuilder line;
+    private char lineChars[];
+
+    /**
+     * Create a router without maps.
+     */
+    public BatchOutputRouter() {
+        targets = new ArrayList<>();
+        line = new StringBuilder();
+        lineChars = new char[256];
+    }
+
+    /**
+     * Add a map of the batch. Must be called before the run starts.
+     *
+     * @param map
+     * @param renderModes Render modes of the map in the batch configuration.
+     * @param listener Listener receiving the output of the map.
+     * @return the progress of the map
+     */
+    public RenderProgress add(String map, List<String> renderModes, RunListener listener) {
+        Target target = new Target(listener);
+        target.keys.add("'" + map + "'");
+        target.keys.add(map + ":");
+        for(String renderMode:renderModes) {
+            target.keys.add(OverviewerConfig.getRenderName(map, renderMode));
+        }
+        targets.add(target);
+        return target.progress;
+    }
+
+    @Override
+    public synchronized void outputRead(OverviewerRun run, char[] buffer, int offset, int length) {
+        for(int i=offset;i<offset + length;i++) {
+            line.append(buffer[i]);
+            if(buffer[i] == '\n') {
+                route(run);
+            }
+        }
+    }
+
+    @Override
+    public void stateChanged(OverviewerRun run, RunState state) {
+        if(state.isFinished()) {
+            synchronized (this) {
+                if(line.length() > 0) {
+                    route(run);
+                }
+                for(Target target:targets) {
+                    target.parser.finish();
+                }
+            }
+        }
+        for(Target target:targets) {
+            target.listener.stateChanged(run, state);
+        }
+    }
+
+    private void route(OverviewerRun run) {
+        int length = line.length();
+        if(lineChars.length < length) {
+            lineChars = new char[Math.max(length, lineChars.length * 2)];
+        }
+        line.getChars(0, length, lineChars, 0);
+        boolean matched = false;
+        for(Target target:targets) {
+            if(target.matches(line)) {
+                target.send(run, lineChars, length);
+                matched = true;
+            }
+        }
+        if(!matched) {
+            for(Target target:targets) {
+                target.send(run, lineChars, length);
+            }
+        }
+        line.setLength(0);
+    }
+
+    /**
+     * One map of the batch.
+     */
+    private static class Target {
+        private RunListener listener;
+        private List<String> keys;
+        private RenderProgress progress;
+        private ProgressParser parser;
+
+        public Target(RunListener listener) {
+            this.listener = listener;
+            keys = new ArrayList<>();
+            progress = new RenderProgress();
+            parser = new ProgressParser(progress);
+        }
+
+        public boolean matches(StringBuilder line) {
+            for(String key:keys) {
+                if(line.indexOf(key) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void send(OverviewerRun run, char[] chars, int length) {
+            parser.feed(chars, 0, length);
+            listener.outputRead(run, chars, 0, length);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps maps current while a server is running: watches the region folders of the worlds and renders a
+ * world once its region files have been quiet for a while after a change. Minecraft saves chunks in bursts,
+ * so waiting for the quiet period turns a burst into one run.
+ * <p>
+ * A world has at most one run at a time. Changes made while it runs are collected into one follow-up run
+ * that starts when it ends. Every world is rendered once when watching starts, to catch up with changes
+ * made while nothing was watching; the runs are meant to be incremental, so unchanged worlds are skipped.
+ *
+ * @author Mark Bernard
+ */
+public class ContinuousRenderer implements Runnable {
+    /** How often runs in flight are checked for having ended. */
+    private static final long RUN_CHECK_MILLIS = 1000;
+    private static final String REGION_FOLDERS[] = {"region", "DIM-1/region", "DIM1/region"};
+
+    /**
+     * Starts the run of a world.
+     */
+    public interface Starter {
+        /**
+         * Create and submit a run of the world. Called on the thread of the renderer.
+         *
+         * @param world
+         * @return the run, which may be one that was already running, or null if no run was started
+         */
+        OverviewerRun start(String world);
+    }
+
+    private File saveFolder;
+    private List<String> worlds;
+    private long quietMillis;
+    private Starter starter;
+    private WatchService watchService;
+    private Map<WatchKey, String> keys;
+    private Map<String, World> states;
+    private Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Create a renderer. Nothing is watched until {@link #start()}.
+     *
+     * @param saveFolder Folder holding the worlds.
+     * @param worlds Names of the worlds to watch.
+     * @param quietMillis How long the region files of a world must be unchanged before it is rendered.
+     * @param starter
+     */
+    public ContinuousRenderer(File saveFolder, List<String> worlds, long quietMillis, Starter starter) {
+        this.saveFolder = saveFolder;
+        this.worlds = new ArrayList<>(worlds);
+        this.quietMillis = quietMillis;
+        this.starter = starter;
+        keys = new HashMap<>();
+        states = new LinkedHashMap<>();
+    }
+
+    /**
+     * Register the region folders and start watching them on a daemon thread.
+     *
+     * @throws IOException if the folders cannot be watched
+     */
+    public void start() throws IOException {
+        watchService = saveFolder.toPath().getFileSystem().newWatchService();
+        long now = System.nanoTime();
+        for(String world:worlds) {
+            for(String folderName:REGION_FOLDERS) {
+                Path folder = new File(new File(saveFolder, world), folderName).toPath();
+                if(folder.toFile().isDirectory()) {
+                    keys.put(folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), world);
+                }
+            }
+            World state = new World();
+            state.changed = true;
+            state.lastChange = now - TimeUnit.MILLISECONDS.toNanos(quietMillis);
+            states.put(world, state);
+        }
+        thread = new Thread(this, "Region watcher - " + saveFolder.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop watching. Runs in flight are left to finish.
+     */
+    public void close() {
+        closed = true;
+        if(watchService != null) {
+            try {
+                watchService.close();
+            }
+            catch (IOException e) {
+                e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Wait until watching stops, because of {@link #close()} or because the folders can no longer be 
+     * watched.
+     * 
+     * @throws InterruptedException
+     */
+    public void awaitClose() throws InterruptedException {
+        thread.join();
+    }
+
+    /**
+     * @return the runs that have not ended yet
+     */
+    public List<OverviewerRun> getActiveRuns() {
+        List<OverviewerRun> runs = new ArrayList<>();
+        synchronized (states) {
+            for(World state:states.values()) {
+                if(state.run != null && !state.run.getState().isFinished()) {
+                    runs.add(state.run);
+                }
+            }
+        }
+        return runs;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while(!closed) {
+                WatchKey key = watchService.poll(startDue(), TimeUnit.MILLISECONDS);
+                while(key != null) {
+                    collect(key);
+                    key = watchService.poll();
+                }
+            }
+        }
+        catch (ClosedWatchServiceException | InterruptedException e) {
+            e.getMessage();
+        }
+    }
+
+    /**
+     * Note the worlds that changed. An overflow means events were lost, so the world counts as changed.
+     */
+    private void collect(WatchKey key) {
+        String world = keys.get(key);
+        boolean changed = false;
+        for(WatchEvent<?> event:key.pollEvents()) {
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || event.context().toString().endsWith(".mca");
+        }
+        if(!key.reset()) {
+            keys.remove(key);
+        }
+        if(world != null && changed) {
+            synchronized (states) {
+                World state = states.get(world);
+                state.changed = true;
+                state.lastChange = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Start a run for every world that changed, has been quiet long enough and has no run in flight.
+     *
+     * @return how long to wait for the next world to become due
+     */
+    private long startDue() {
+        long now = System.nanoTime();
+        long wait = Long.MAX_VALUE;
+        List<String> due = new ArrayList<>();
+        synchronized (states) {
+            for(Map.Entry<String, World> entry:states.entrySet()) {
+                World state = entry.getValue();
+                if(!state.changed) {
+                    continue;
+                }
+                if(state.run != null && !state.run.getState().isFinished()) {
+                    wait = Math.min(wait, RUN_CHECK_MILLIS);
+                    continue;
+                }
+                long quietLeft = TimeUnit.NANOSECONDS.toMillis(state.lastChange - now) + quietMillis;
+                if(quietLeft > 0) {
+                    wait = Math.min(wait, quietLeft);
+                }
+                else {
+                    due.add(entry.getKey());
+                }
+            }
+        }
+        for(String world:due) {
+            OverviewerRun run = null;
+            try {
+                run = starter.start(world);
+            }
+            catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            synchronized (states) {
+                World state = states.get(world);
+                state.run = run;
+                state.changed = false;
+            }
+        }
+        return wait == Long.MAX_VALUE ? RUN_CHECK_MILLIS * 60 : Math.max(1, wait);
+    }
+
+    /**
+     * Watch state of one world.
+     */
+    private static class World {
+        private boolean changed;
+        private long lastChange;
+        private OverviewerRun run;
+    }
+}
@@ -0,0 +1,28 @@
+package overviewergui;
+
+import java.io.File;
+
+/**
+ * Location of the files Overviewer GUI keeps between sessions that do not belong in the preferences.
+ * 
+ * @author Mark Bernard
+ */
+public class DataFolder {
+    private static final String FOLDER_NAME = ".overviewergui";
+    
+    private DataFolder() {}
+    
+    /**
+     * Get a file or folder inside the data folder. The data folder is created if needed.
+     * 
+     * @param name Name of the file or folder.
+     * @return the file
+     */
+    public static File resolve(String name) {
+        File folder = new File(System.getProperty("user.home"), FOLDER_NAME);
+        if(!folder.isDirectory() && !folder.mkdirs()) {
+            throw new RuntimeException("Unable to create data directory: " + folder.getAbsolutePath());
+        }
+        return new File(folder, name);
+    }
+}
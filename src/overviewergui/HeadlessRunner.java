@@ -0,0 +1,471 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs Overviewer for a list of maps without a display, for render servers. Uses the settings saved by the
+ * GUI unless they are overridden on the command line, writes the output of every run to standard out with
+ * the map name in front of each line and returns an exit code for scripts:
+ * <ul>
+ * <li>{@value #EXIT_OK} when every map was rendered or had nothing to render</li>
+ * <li>{@value #EXIT_FAILED} when a run failed or was stopped</li>
+ * <li>{@value #EXIT_USAGE} when the command line or the settings are not usable</li>
+ * </ul>
+ *
+ * @author Mark Bernard
+ */
+public class HeadlessRunner implements RunListener {
+    /** Command line option that selects the headless runner. */
+    public static final String HEADLESS_OPTION = "--headless";
+    /** Exit code when all runs ended well. */
+    public static final int EXIT_OK = 0;
+    /** Exit code when at least one run failed or was stopped. */
+    public static final int EXIT_FAILED = 1;
+    /** Exit code for a bad command line. */
+    public static final int EXIT_USAGE = 2;
+    /** How long an interrupted runner waits for the runs to stop. */
+    private static final long STOP_WAIT_SECONDS = 30;
+    /** How long the runner waits for the logs of the runs to be archived before it exits. */
+    private static final long ARCHIVE_WAIT_SECONDS = 60;
+
+    private PrintStream out;
+    private Map<OverviewerRun, StringBuilder> lines;
+    private CountDownLatch remaining;
+    private boolean watching;
+
+    private HeadlessRunner(PrintStream out, int runCount) {
+        this.out = out;
+        lines = new ConcurrentHashMap<>();
+        remaining = new CountDownLatch(runCount);
+    }
+
+    /**
+     * @param args Command line arguments.
+     * @return true if the arguments ask for a headless run
+     */
+    public static boolean isHeadless(String args[]) {
+        for(String arg:args) {
+            if(HEADLESS_OPTION.equals(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Render the maps named on the command line and wait for all of them to end.
+     *
+     * @param args Command line arguments.
+     * @return the exit code
+     */
+    public static int run(String args[]) {
+        System.setProperty("java.awt.headless", "true");
+        RenderSettings settings = RenderSettings.load();
+        List<String> maps = new ArrayList<>();
+        RunPriority priority = RunPriority.NORMAL;
+        boolean watch = false;
+        int servePort = -1;
+        int metricsPort = -1;
+        try {
+            for(int i=0;i<args.length;i++) {
+                String arg = args[i];
+                if(HEADLESS_OPTION.equals(arg)) {
+                    continue;
+                }
+                else if("--help".equals(arg)) {
+                    usage(System.out);
+                    return EXIT_OK;
+                }
+                else if("--full".equals(arg)) {
+                    settings.setIncrementalRenders(false);
+                }
+                else if("--incremental".equals(arg)) {
+                    settings.setIncrementalRenders(true);
+                }
+                else if("--batch".equals(arg)) {
+                    settings.setBatchRuns(true);
+                }
+                else if("--separate".equals(arg)) {
+                    settings.setBatchRuns(false);
+                }
+                else if("--watch".equals(arg)) {
+                    watch = true;
+                }
+                else if(i + 1 == args.length) {
+                    return usageError("Missing value for " + arg);
+                }
+                else if("--maps".equals(arg)) {
+                    for(String map:args[++i].split(",")) {
+                        if(!map.trim().isEmpty()) {
+                            maps.add(map.trim());
+                        }
+                    }
+                }
+                else if("--save-folder".equals(arg)) {
+                    settings.setMinecraftSaveFolder(args[++i]);
+                }
+                else if("--output-folder".equals(arg)) {
+                    settings.setMapOutputFolder(args[++i]);
+                }
+                else if("--executable".equals(arg)) {
+                    settings.setOverviewerExecutable(args[++i]);
+                }
+                else if("--priority".equals(arg)) {
+                    priority = parsePriority(args[++i]);
+                }
+                else if("--order".equals(arg)) {
+                    settings.setQueueOrder(parseOrder(args[++i]));
+                }
+                else if("--concurrent".equals(arg)) {
+                    settings.setMaxConcurrentRenders(Integer.parseInt(args[++i]));
+                }
+                else if("--quiet".equals(arg)) {
+                    settings.setWatchQuietSeconds(Integer.parseInt(args[++i]));
+                }
+                else if("--serve".equals(arg)) {
+                    servePort = Integer.parseInt(args[++i]);
+                }
+                else if("--metrics".equals(arg)) {
+                    metricsPort = Integer.parseInt(args[++i]);
+                }
+                else {
+                    return usageError("Unknown option " + arg);
+                }
+            }
+        }
+        catch (NumberFormatException e) {
+            return usageError("Not a number: " + e.getMessage());
+        }
+        catch (IllegalArgumentException e) {
+            return usageError(e.getMessage());
+        }
+        if(maps.isEmpty() && servePort < 0) {
+            return usageError("No maps given");
+        }
+        if(!maps.isEmpty() && settings.getOverviewerExecutable().isEmpty()) {
+            return usageError("No Overviewer executable set");
+        }
+        for(String map:maps) {
+            if(!new File(settings.getMinecraftSaveFolder(), map).isDirectory()) {
+                return usageError("Map not found in " + settings.getMinecraftSaveFolder() + ": " + map);
+            }
+        }
+
+        LogArchiver.getDefault().setRetention(settings.getLogRetentionDays(), settings.getLogRetentionMegabytes());
+        LogArchiver.getDefault().sweep();
+        if(metricsPort >= 0) {
+            MetricsEndpoint endpoint = new MetricsEndpoint(RenderMetrics.getDefault());
+            try {
+                endpoint.start(metricsPort);
+            }
+            catch (IOException e) {
+                System.err.println("Unable to publish the metrics on port " + metricsPort + ": " + e.getMessage());
+                return EXIT_FAILED;
+            }
+            System.out.println("Publishing metrics at http://localhost:" + endpoint.getPort() + MetricsEndpoint.PATH);
+        }
+        MapServer server = null;
+        if(servePort >= 0) {
+            server = new MapServer(new File(settings.getMapOutputFolder()), servePort);
+            try {
+                server.start();
+            }
+            catch (IOException e) {
+                System.err.println("Unable to serve the maps on port " + servePort + ": " + e.getMessage());
+                return EXIT_FAILED;
+            }
+            System.out.println("Serving " + server.getRoot().getAbsolutePath() + " at http://localhost:" + server.getPort() + "/");
+            if(maps.isEmpty()) {
+                return serve(server, EXIT_OK);
+            }
+        }
+        if(watch) {
+            return watch(settings, maps, priority);
+        }
+
+        boolean batch = settings.isBatchRuns() && maps.size() > 1;
+        final HeadlessRunner runner = new HeadlessRunner(System.out, batch ? 1 : maps.size());
+        RenderScheduler scheduler = new RenderScheduler(settings.getMaxConcurrentRenders());
+        scheduler.setOrder(settings.getQueueOrder());
+        final List<OverviewerRun> runs = new ArrayList<>();
+        if(batch) {
+            Map<String, List<String>> renderModes = new HashMap<>();
+            for(String map:maps) {
+                renderModes.put(map, settings.getRenderModes(map));
+            }
+            OverviewerRun run = OverviewerRun.batch(settings.getMinecraftSaveFolder(), maps, renderModes, settings.getMapOutputFolder(), 
+                    settings.getOverviewerExecutable(), settings.isIncrementalRenders(), scheduler, runner);
+            run.setPriority(priority, settings.isLowerLowPriority());
+            runner.lines.put(run, new StringBuilder("[" + run.getMap() + "] "));
+            runs.add(run);
+        }
+        else {
+            RenderCostEstimator estimator = new RenderCostEstimator(RunHistory.getDefault());
+            for(String map:maps) {
+                OverviewerRun run = new OverviewerRun(settings.getMinecraftSaveFolder(), map, settings.getMapOutputFolder(),
+                        settings.getOverviewerExecutable(), settings.isIncrementalRenders(), scheduler, runner);
+                run.setPriority(priority, settings.isLowerLowPriority());
+                if(settings.getQueueOrder() != QueueOrder.SELECTED) {
+                    run.setEstimatedSeconds(estimateSeconds(estimator, settings, map));
+                }
+                runner.lines.put(run, new StringBuilder("[" + map + "] "));
+                runs.add(run);
+            }
+        }
+        Thread stopper = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                for(OverviewerRun run:runs) {
+                    run.stop();
+                }
+                try {
+                    runner.remaining.await(STOP_WAIT_SECONDS, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    e.getMessage();
+                }
+            }
+        }, "Overviewer headless stop");
+        Runtime.getRuntime().addShutdownHook(stopper);
+        List<OverviewerRun> submitted = new ArrayList<>(runs.size());
+        for(OverviewerRun run:runs) {
+            if(run.markSubmitted()) {
+                submitted.add(run);
+            }
+        }
+        scheduler.submitAll(submitted);
+        try {
+            runner.remaining.await();
+        }
+        catch (InterruptedException e) {
+            return EXIT_FAILED;
+        }
+
+        try {
+            LogArchiver.getDefault().awaitIdle(TimeUnit.SECONDS.toMillis(ARCHIVE_WAIT_SECONDS));
+        }
+        catch (InterruptedException e) {
+            e.getMessage();
+        }
+        int exitCode = EXIT_OK;
+        for(OverviewerRun run:runs) {
+            RenderProgress progress = run.getProgress();
+            StringBuilder summary = new StringBuilder("[" + run.getMap() + "] " + run.getState().getDescription());
+            if(progress.getAverageRate() > 0) {
+                summary.append(String.format(", %,d tiles at %.1f tiles/s", progress.getTilesDone(), progress.getAverageRate()));
+            }
+            File log = run.getLogFile() == null ? null : LogArchiver.find(run.getLogFile());
+            if(log != null) {
+                summary.append(", log ").append(log.getAbsolutePath());
+            }
+            System.out.println(summary);
+            if(run.getState() != RunState.COMPLETE && run.getState() != RunState.SKIPPED) {
+                exitCode = EXIT_FAILED;
+            }
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(stopper);
+        }
+        catch (IllegalStateException e) {
+            e.getMessage();
+        }
+        if(server != null) {
+            System.out.println("Rendering done, still serving the maps until stopped");
+            return serve(server, exitCode);
+        }
+        return exitCode;
+    }
+
+    /**
+     * Keep serving the maps until the process is ended.
+     *
+     * @return the exit code given
+     */
+    private static int serve(MapServer server, int exitCode) {
+        try {
+            server.awaitClose();
+        }
+        catch (InterruptedException e) {
+            e.getMessage();
+        }
+        return exitCode;
+    }
+
+    /**
+     * Watch the maps and render each one with an incremental run whenever its region files change, until the
+     * process is ended.
+     *
+     * @return the exit code
+     */
+    private static int watch(final RenderSettings settings, List<String> maps, final RunPriority priority) {
+        final HeadlessRunner runner = new HeadlessRunner(System.out, 0);
+        runner.watching = true;
+        final RenderScheduler scheduler = new RenderScheduler(settings.getMaxConcurrentRenders());
+        final ContinuousRenderer renderer = new ContinuousRenderer(new File(settings.getMinecraftSaveFolder()), maps,
+                settings.getWatchQuietSeconds() * 1000L, new ContinuousRenderer.Starter() {
+
+            @Override
+            public OverviewerRun start(String world) {
+                OverviewerRun run = new OverviewerRun(settings.getMinecraftSaveFolder(), world, settings.getMapOutputFolder(),
+                        settings.getOverviewerExecutable(), true, scheduler, runner);
+                run.setPriority(priority, settings.isLowerLowPriority());
+                runner.lines.put(run, new StringBuilder("[" + world + "] "));
+                if(run.markSubmitted()) {
+                    scheduler.submitAll(Collections.singletonList(run));
+                }
+                return run;
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                renderer.close();
+                List<OverviewerRun> runs = renderer.getActiveRuns();
+                for(OverviewerRun run:runs) {
+                    run.stop();
+                }
+                long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(STOP_WAIT_SECONDS);
+                try {
+                    for(OverviewerRun run:runs) {
+                        run.awaitEnd(Math.max(1, deadline - System.currentTimeMillis()));
+                    }
+                }
+                catch (InterruptedException e) {
+                    e.getMessage();
+                }
+            }
+        }, "Overviewer headless stop"));
+        try {
+            renderer.start();
+        }
+        catch (IOException e) {
+            System.err.println("Unable to watch the maps: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+        System.out.println("Watching " + maps.size() + (maps.size() == 1 ? " map" : " maps") + ", rendering " 
+                + settings.getWatchQuietSeconds() + " s after the last change");
+        try {
+            renderer.awaitClose();
+        }
+        catch (InterruptedException e) {
+            e.getMessage();
+        }
+        return EXIT_FAILED;
+    }
+
+    /**
+     * Write complete lines with the map name in front. Each run has its own line buffer and only its
+     * reader thread writes to it.
+     */
+    @Override
+    public void outputRead(OverviewerRun run, char[] buffer, int offset, int length) {
+        StringBuilder line = lines.get(run);
+        int prefixLength = run.getMap().length() + 3;
+        for(int i=offset;i<offset + length;i++) {
+            char c = buffer[i];
+            if(c == '\n') {
+                out.println(line);
+                line.setLength(prefixLength);
+            }
+            else if(c != '\r') {
+                line.append(c);
+            }
+        }
+    }
+
+    @Override
+    public void stateChanged(OverviewerRun run, RunState state) {
+        if(state.isFinished()) {
+            StringBuilder line = lines.get(run);
+            if(line.length() > run.getMap().length() + 3) {
+                out.println(line);
+            }
+            if(watching) {
+                out.println("[" + run.getMap() + "] " + state.getDescription());
+                lines.remove(run);
+            }
+            remaining.countDown();
+        }
+        else {
+            out.println("[" + run.getMap() + "] " + state.getDescription());
+        }
+    }
+
+    /**
+     * Estimate a run and print the estimate.
+     * 
+     * @return the estimated duration, or -1 if the world could not be read
+     */
+    private static long estimateSeconds(RenderCostEstimator estimator, RenderSettings settings, String map) {
+        try {
+            RenderCostEstimator.Estimate estimate = estimator.estimate(
+                    new File(settings.getMinecraftSaveFolder(), map), new File(settings.getMapOutputFolder(), map), 
+                    settings.isIncrementalRenders());
+            System.out.println("[" + map + "] Estimate: " + estimate.getSummary());
+            return estimate.getSeconds();
+        }
+        catch (IOException e) {
+            System.out.println("[" + map + "] No estimate: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static RunPriority parsePriority(String value) {
+        for(RunPriority priority:RunPriority.values()) {
+            if(priority.name().equalsIgnoreCase(value)) {
+                return priority;
+            }
+        }
+        throw new IllegalArgumentException("Unknown priority: " + value);
+    }
+
+    private static QueueOrder parseOrder(String value) {
+        if("selected".equalsIgnoreCase(value)) {
+            return QueueOrder.SELECTED;
+        }
+        else if("shortest".equalsIgnoreCase(value)) {
+            return QueueOrder.SHORTEST_FIRST;
+        }
+        else if("longest".equalsIgnoreCase(value)) {
+            return QueueOrder.LONGEST_FIRST;
+        }
+        throw new IllegalArgumentException("Unknown queue order: " + value);
+    }
+
+    private static int usageError(String message) {
+        System.err.println(message);
+        usage(System.err);
+        return EXIT_USAGE;
+    }
+
+    private static void usage(PrintStream out) {
+        out.println("Usage: java -jar overviewergui.jar --headless --maps map1,map2,... [options]");
+        out.println("Settings not given here are taken from the GUI.");
+        out.println("  --save-folder <folder>    Minecraft save folder");
+        out.println("  --output-folder <folder>  Map output folder");
+        out.println("  --executable <file>       Overviewer executable");
+        out.println("  --concurrent <n>          Maximum number of renders at the same time");
+        out.println("  --priority <priority>     low, normal or high; low priority runs may be reniced");
+        out.println("  --order <order>           selected, shortest or longest; order of the queued maps");
+        out.println("  --incremental             Skip unchanged maps and only check changed regions");
+        out.println("  --full                    Always run a full Overviewer check");
+        out.println("  --batch                   Render all maps with one Overviewer process");
+        out.println("  --separate                Render each map with its own Overviewer process");
+        out.println("  --watch                   Keep running and render maps whenever their region files change");
+        out.println("  --quiet <seconds>         Time without changes before a watched map is rendered");
+        out.println("  --serve <port>            Serve the map output folder over HTTP until stopped; --maps may be left out");
+        out.println("  --metrics <port>          Publish metrics for Prometheus at http://localhost:<port>/metrics");
+    }
+}
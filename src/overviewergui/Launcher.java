@@ -0,0 +1,19 @@
+package overviewergui;
+
+/**
+ * Entry point of the jar. Starts the headless runner when asked to, otherwise the GUI. This class must not
+ * refer to any AWT or Swing class so that a headless run never loads them.
+ *
+ * @author Mark Bernard
+ */
+public class Launcher {
+    /**
+     * @param args Command line arguments.
+     */
+    public static void main(String... args) {
+        if(HeadlessRunner.isHeadless(args)) {
+            System.exit(HeadlessRunner.run(args));
+        }
+        OverviewerGui.main(args);
+    }
+}
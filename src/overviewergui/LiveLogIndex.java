@@ -0,0 +1,284 @@
+package overviewergui;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link LogIndex} kept in memory and added to as output is read, so a run can be searched while it is
+ * still going. When the run ends the index is saved next to the archived log and read back as a
+ * {@link LogIndexFile}. Once the words take {@value #MAX_BYTES} bytes no more lines are indexed; the rest
+ * of such a log can still be searched line by line in the log viewer.
+ * <p>
+ * The {@link LogSpool} also passes on the bytes it writes, so the index knows where every
+ * {@value #CHECKPOINT_INTERVAL}th line starts in the file and the text of a line found can be read without
+ * reading the log from the start.
+ *
+ * @author Mark Bernard
+ */
+public class LiveLogIndex extends LogIndex {
+    /** Memory the lines of all words may take. */
+    public static final long MAX_BYTES = 64L * 1024 * 1024;
+    /** Lines between two known line starts. */
+    public static final int CHECKPOINT_INTERVAL = 256;
+
+    private Map<String, Postings> words;
+    private char token[];
+    private int tokenLength;
+    private boolean inToken;
+    private int line;
+    private long bytes;
+    private boolean full;
+    private int linesBeforeFull;
+    private long checkpoints[];
+    private int checkpointCount;
+    private long fileBytes;
+    private int fileLines;
+
+    /**
+     * Create an empty index.
+     */
+    public LiveLogIndex() {
+        words = new HashMap<>();
+        token = new char[MAX_TOKEN];
+        checkpoints = new long[64];
+        checkpointCount = 1;
+    }
+
+    /**
+     * Index a log read from the start.
+     *
+     * @param in
+     * @return the index
+     * @throws IOException
+     */
+    public static LiveLogIndex read(Reader in) throws IOException {
+        LiveLogIndex index = new LiveLogIndex();
+        char buffer[] = new char[8192];
+        int read;
+        while((read = in.read(buffer)) > -1) {
+            index.feed(buffer, 0, read);
+        }
+        return index;
+    }
+
+    /**
+     * Index output. Lines and words may be split across calls.
+     *
+     * @param buffer
+     * @param offset
+     * @param length
+     */
+    public synchronized void feed(char buffer[], int offset, int length) {
+        for(int i=offset;i<offset + length;i++) {
+            char c = buffer[i];
+            if(isTokenChar(c)) {
+                if(tokenLength < MAX_TOKEN) {
+                    token[tokenLength++] = Character.toLowerCase(c);
+                }
+                inToken = true;
+            }
+            else {
+                if(inToken) {
+                    endToken();
+                }
+                if(c == '\n') {
+                    line++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Index output.
+     *
+     * @param text
+     */
+    public void feed(String text) {
+        feed(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Count bytes written to the log file to find where lines start. Called with the bytes in the order
+     * they are written; the characters they decode to are passed to {@link #feed(char[], int, int)}.
+     *
+     * @param buffer
+     * @param offset
+     * @param length
+     */
+    public synchronized void addBytes(byte buffer[], int offset, int length) {
+        for(int i=offset;i<offset + length;i++) {
+            if(buffer[i] == '\n') {
+                fileLines++;
+                if(fileLines % CHECKPOINT_INTERVAL == 0) {
+                    if(checkpointCount == checkpoints.length) {
+                        checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+                    }
+                    checkpoints[checkpointCount++] = fileBytes + i - offset + 1;
+                }
+            }
+        }
+        fileBytes += length;
+    }
+
+    /**
+     * @param line Zero based line index.
+     * @return the index of the last line at or before the given line whose start in the file is known
+     */
+    public synchronized int getCheckpointLine(int line) {
+        return Math.min(line / CHECKPOINT_INTERVAL, checkpointCount - 1) * CHECKPOINT_INTERVAL;
+    }
+
+    /**
+     * @param line Zero based line index.
+     * @return the position in the file of the start of the line given by {@link #getCheckpointLine(int)}
+     */
+    public synchronized long getCheckpoint(int line) {
+        return checkpoints[Math.min(line / CHECKPOINT_INTERVAL, checkpointCount - 1)];
+    }
+
+    /**
+     * @return true if words stopped being indexed because the index got too big
+     */
+    public synchronized boolean isFull() {
+        return full;
+    }
+
+    @Override
+    public synchronized int getLineCount() {
+        return full ? linesBeforeFull : line + 1;
+    }
+
+    @Override
+    protected synchronized int[] getLines(String token, boolean prefix) {
+        if(!prefix) {
+            Postings postings = words.get(token);
+            return postings == null ? new int[0] : decode(postings.data, 0, postings.count);
+        }
+        List<int[]> terms = new ArrayList<>();
+        for(Map.Entry<String, Postings> entry:words.entrySet()) {
+            if(entry.getKey().startsWith(token)) {
+                terms.add(decode(entry.getValue().data, 0, entry.getValue().count));
+            }
+        }
+        return union(terms);
+    }
+
+    /**
+     * Save the index. Written to a temporary file first like a {@link LogArchive}.
+     * <p>
+     * File layout: a header of magic number and version, the lines of every word, a dictionary of the words
+     * in order with the position and number of their lines, and a trailer with the dictionary position, the
+     * number of lines indexed, the number of words and the magic number again.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public synchronized void write(File file) throws IOException {
+        if(inToken) {
+            endToken();
+        }
+        List<String> tokens = new ArrayList<>(words.keySet());
+        // Words only hold characters of the basic multilingual plane, which sort the same as their UTF-8 bytes.
+        Collections.sort(tokens);
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long position = 8;
+            long offsets[] = new long[tokens.size()];
+            for(int i=0;i<tokens.size();i++) {
+                Postings postings = words.get(tokens.get(i));
+                offsets[i] = position;
+                out.write(postings.data, 0, postings.length);
+                position += postings.length;
+            }
+            for(int i=0;i<tokens.size();i++) {
+                byte name[] = tokens.get(i).getBytes(StandardCharsets.UTF_8);
+                Postings postings = words.get(tokens.get(i));
+                out.writeByte(name.length);
+                out.write(name);
+                out.writeLong(offsets[i]);
+                out.writeInt(postings.length);
+                out.writeInt(postings.count);
+            }
+            out.writeLong(position);
+            out.writeInt(getLineCount());
+            out.writeInt(tokens.size());
+            out.writeInt(MAGIC);
+        }
+        catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        file.delete();
+        if(!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to rename " + temp.getName() + " to " + file.getName());
+        }
+    }
+
+    private void endToken() {
+        inToken = false;
+        if(full) {
+            tokenLength = 0;
+            return;
+        }
+        String key = new String(token, 0, tokenLength);
+        tokenLength = 0;
+        Postings postings = words.get(key);
+        if(postings == null) {
+            postings = new Postings();
+            words.put(key, postings);
+            bytes += key.length() * 2 + 64;
+        }
+        bytes += postings.add(line);
+        if(bytes > MAX_BYTES) {
+            full = true;
+            linesBeforeFull = line;
+        }
+    }
+
+    /**
+     * The lines of one word.
+     */
+    private static class Postings {
+        private byte data[] = new byte[4];
+        private int length;
+        private int count;
+        private int last = -1;
+
+        /**
+         * @return the bytes of memory added
+         */
+        public int add(int line) {
+            if(line == last) {
+                return 0;
+            }
+            int added = 0;
+            if(length + 5 > data.length) {
+                added = data.length;
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            int delta = line - last;
+            while(delta >= 0x80) {
+                data[length++] = (byte)(delta | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte)delta;
+            last = line;
+            count++;
+            return added;
+        }
+    }
+}
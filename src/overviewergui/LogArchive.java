@@ -0,0 +1,369 @@
+package overviewergui;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed run log that can be read from any line without decompressing the rest. The log is cut into
+ * frames of about {@value #FRAME_SIZE} bytes, ending at a line break where there is one, and each frame is
+ * compressed on its own. An index of the frames at the end of the file gives the position and the number
+ * of line breaks up to the end of every frame, so finding a line takes a binary search of the index and
+ * decompressing one frame. The last few frames read are kept decompressed for scrolling.
+ * <p>
+ * File layout: a header of magic number, version and frame size, the compressed frames, the frame index
+ * and a trailer with the index position, the size and line count of the log and the magic number again.
+ *
+ * @author Mark Bernard
+ */
+public class LogArchive implements LogSource {
+    /** File name extension of archived logs. */
+    public static final String EXTENSION = ".logz";
+    /** Bytes of log per frame. */
+    public static final int FRAME_SIZE = 64 * 1024;
+    private static final int MAGIC = 0x4F564C5A;
+    private static final int VERSION = 1;
+    private static final int TRAILER_SIZE = 28;
+    private static final int INDEX_ENTRY_SIZE = 24;
+    private static final int CACHED_FRAMES = 8;
+
+    private FileChannel channel;
+    private long offsets[];
+    private int compressedLengths[];
+    private int lengths[];
+    private long linesAfter[];
+    private long size;
+    private int lineCount;
+    private Map<Integer, byte[]> frames;
+    private Inflater inflater;
+    private byte lineBuffer[];
+
+    /**
+     * Open an archive and read its frame index.
+     *
+     * @param file
+     * @throws IOException if the file is not a complete archive
+     */
+    public LogArchive(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if(fileSize < 12 + TRAILER_SIZE) {
+                throw new IOException("Not a log archive: " + file.getName());
+            }
+            ByteBuffer trailer = read(fileSize - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            size = trailer.getLong();
+            lineCount = (int)trailer.getLong();
+            if(trailer.getInt() != MAGIC || indexOffset < 12 || indexOffset > fileSize - TRAILER_SIZE - 4) {
+                throw new IOException("Not a complete log archive: " + file.getName());
+            }
+            ByteBuffer index = read(indexOffset, (int)(fileSize - TRAILER_SIZE - indexOffset));
+            int count = index.getInt();
+            if(count < 0 || index.remaining() != count * INDEX_ENTRY_SIZE) {
+                throw new IOException("Damaged log archive: " + file.getName());
+            }
+            offsets = new long[count];
+            compressedLengths = new int[count];
+            lengths = new int[count];
+            linesAfter = new long[count];
+            for(int i=0;i<count;i++) {
+                offsets[i] = index.getLong();
+                compressedLengths[i] = index.getInt();
+                lengths[i] = index.getInt();
+                linesAfter[i] = index.getLong();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        frames = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = -1853375813040536437L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                return size() > CACHED_FRAMES;
+            }
+        };
+        inflater = new Inflater();
+        lineBuffer = new byte[MAX_LINE_BYTES];
+    }
+
+    /**
+     * Compress a log into an archive. The archive is written to a temporary file first and only takes the
+     * place of the target once it is complete.
+     *
+     * @param log
+     * @param archive
+     * @throws IOException
+     */
+    public static void write(File log, File archive) throws IOException {
+        File temp = new File(archive.getPath() + ".tmp");
+        Deflater deflater = new Deflater();
+        try (InputStream in = new FileInputStream(log);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), FRAME_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(FRAME_SIZE);
+            byte frame[] = new byte[FRAME_SIZE];
+            byte compressed[] = new byte[FRAME_SIZE + FRAME_SIZE / 8 + 64];
+            long offsets[] = new long[16];
+            int compressedLengths[] = new int[16];
+            int lengths[] = new int[16];
+            long linesAfter[] = new long[16];
+            int count = 0;
+            long lines = 0;
+            long size = 0;
+            long position = 12;
+            int filled = 0;
+            boolean endsWithBreak = true;
+            boolean eof = false;
+            while(!eof || filled > 0) {
+                while(!eof && filled < FRAME_SIZE) {
+                    int read = in.read(frame, filled, FRAME_SIZE - filled);
+                    if(read < 0) {
+                        eof = true;
+                    }
+                    else {
+                        filled += read;
+                    }
+                }
+                if(filled == 0) {
+                    break;
+                }
+                int length = filled;
+                if(!eof) {
+                    for(int i=filled - 1;i>=0;i--) {
+                        if(frame[i] == '\n') {
+                            length = i + 1;
+                            break;
+                        }
+                    }
+                }
+                for(int i=0;i<length;i++) {
+                    if(frame[i] == '\n') {
+                        lines++;
+                    }
+                }
+                endsWithBreak = frame[length - 1] == '\n';
+                deflater.reset();
+                deflater.setInput(frame, 0, length);
+                deflater.finish();
+                int compressedLength = 0;
+                while(!deflater.finished()) {
+                    if(compressedLength == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                }
+                out.write(compressed, 0, compressedLength);
+                if(count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                    compressedLengths = Arrays.copyOf(compressedLengths, count * 2);
+                    lengths = Arrays.copyOf(lengths, count * 2);
+                    linesAfter = Arrays.copyOf(linesAfter, count * 2);
+                }
+                offsets[count] = position;
+                compressedLengths[count] = compressedLength;
+                lengths[count] = length;
+                linesAfter[count] = lines;
+                count++;
+                position += compressedLength;
+                size += length;
+                System.arraycopy(frame, length, frame, 0, filled - length);
+                filled -= length;
+            }
+            out.writeInt(count);
+            for(int i=0;i<count;i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(compressedLengths[i]);
+                out.writeInt(lengths[i]);
+                out.writeLong(linesAfter[i]);
+            }
+            out.writeLong(position);
+            out.writeLong(size);
+            out.writeLong(lines + (endsWithBreak ? 0 : 1));
+            out.writeInt(MAGIC);
+        }
+        catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        finally {
+            deflater.end();
+        }
+        archive.delete();
+        if(!temp.renameTo(archive)) {
+            temp.delete();
+            throw new IOException("Unable to rename " + temp.getName() + " to " + archive.getName());
+        }
+    }
+
+    /**
+     * @param file
+     * @return true if the file name is that of an archived log
+     */
+    public static boolean isArchive(File file) {
+        return file.getName().endsWith(EXTENSION);
+    }
+
+    /**
+     * Nothing is added to an archive, so it is always fully indexed.
+     */
+    @Override
+    public boolean refresh() {
+        return true;
+    }
+
+    @Override
+    public synchronized int getLineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public synchronized long getIndexedBytes() {
+        return size;
+    }
+
+    /**
+     * @return the number of compressed frames
+     */
+    public int getFrameCount() {
+        return offsets.length;
+    }
+
+    @Override
+    public synchronized void getLines(int first, int count, List<String> lines) {
+        if(first < 0 || first >= lineCount || frames == null) {
+            return;
+        }
+        try {
+            int frame = 0;
+            int position = 0;
+            if(first > 0) {
+                frame = firstFrameWithLines(first);
+                byte data[] = frame(frame);
+                long breaks = frame == 0 ? 0 : linesAfter[frame - 1];
+                while(breaks < first) {
+                    if(data[position++] == '\n') {
+                        breaks++;
+                    }
+                }
+            }
+            int last = Math.min(lineCount, first + count);
+            for(int line=first;line<last;line++) {
+                int length = 0;
+                boolean ended = false;
+                while(!ended && frame < lengths.length) {
+                    if(position == lengths[frame]) {
+                        frame++;
+                        position = 0;
+                        continue;
+                    }
+                    byte data[] = frame(frame);
+                    while(position < data.length) {
+                        byte b = data[position++];
+                        if(b == '\n') {
+                            ended = true;
+                            break;
+                        }
+                        if(length < lineBuffer.length) {
+                            lineBuffer[length++] = b;
+                        }
+                    }
+                }
+                if(length > 0 && lineBuffer[length - 1] == '\r') {
+                    length--;
+                }
+                lines.add(new String(lineBuffer, 0, length, StandardCharsets.UTF_8));
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the first frame that holds the line break ending the line before the given line
+     */
+    private int firstFrameWithLines(long line) {
+        int low = 0;
+        int high = linesAfter.length - 1;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(linesAfter[middle] >= line) {
+                high = middle;
+            }
+            else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Decompress a frame, or take it from the frames read last.
+     */
+    private byte[] frame(int frame) throws IOException {
+        byte data[] = frames.get(frame);
+        if(data == null) {
+            ByteBuffer compressed = read(offsets[frame], compressedLengths[frame]);
+            data = new byte[lengths[frame]];
+            inflater.reset();
+            inflater.setInput(compressed.array(), 0, compressedLengths[frame]);
+            try {
+                int inflated = 0;
+                while(inflated < data.length && !inflater.finished()) {
+                    int count = inflater.inflate(data, inflated, data.length - inflated);
+                    if(count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                if(inflated != data.length) {
+                    throw new IOException("Damaged frame " + frame + " in log archive");
+                }
+            }
+            catch (DataFormatException e) {
+                throw new IOException("Damaged frame " + frame + " in log archive", e);
+            }
+            frames.put(frame, data);
+        }
+        return data;
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        frames = null;
+        inflater.end();
+        channel.close();
+    }
+}
@@ -0,0 +1,303 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compresses finished run logs into {@link LogArchive}s and saves their {@link LogIndex} next to them on a
+ * background thread, and removes archives that are older or take more room than the retention settings
+ * allow. Logs of runs that ended without being archived, because the application was closed first, are
+ * picked up once they are a day old and indexed from the file.
+ *
+ * @author Mark Bernard
+ */
+public class LogArchiver {
+    /** Plain logs not written to for this long are archived when the log folder is swept. */
+    public static final long STALE_MILLIS = 24L * 60 * 60 * 1000;
+    private static final LogArchiver INSTANCE = new LogArchiver();
+    private static final FileFilter PLAIN_LOGS = new FileFilter() {
+
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && file.getName().endsWith(".log");
+        }
+    };
+    private static final FileFilter ARCHIVES = new FileFilter() {
+
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && LogArchive.isArchive(file);
+        }
+    };
+
+    private ThreadPoolExecutor executor;
+    private volatile int retentionDays;
+    private volatile int retentionMegabytes;
+
+    private LogArchiver() {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Log archiver");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * @return the archiver of the log folder
+     */
+    public static LogArchiver getDefault() {
+        return INSTANCE;
+    }
+
+    /**
+     * Set how long and how much archived logs are kept. Applied the next time a log is archived or the
+     * folder is swept.
+     *
+     * @param days Age after which archives are deleted, 0 to keep them regardless of age.
+     * @param megabytes Total size of the archives above which the oldest are deleted, 0 for no limit.
+     */
+    public void setRetention(int days, int megabytes) {
+        retentionDays = days;
+        retentionMegabytes = megabytes;
+    }
+
+    /**
+     * The archive a plain log is compressed into.
+     *
+     * @param log
+     * @return the archive file, which may not exist yet
+     */
+    public static File getArchive(File log) {
+        return new File(log.getParentFile(), getBaseName(log) + LogArchive.EXTENSION);
+    }
+
+    /**
+     * The saved index of a plain log.
+     *
+     * @param log
+     * @return the index file, which may not exist yet
+     */
+    public static File getIndex(File log) {
+        return new File(log.getParentFile(), getBaseName(log) + LogIndex.EXTENSION);
+    }
+
+    /**
+     * The plain log an archive was made from.
+     *
+     * @param archive
+     * @return the plain log file, which no longer exists once the archive is complete
+     */
+    public static File getLog(File archive) {
+        String name = archive.getName();
+        return new File(archive.getParentFile(), name.substring(0, name.length() - LogArchive.EXTENSION.length()) + ".log");
+    }
+
+    /**
+     * Find a log that may have been archived.
+     *
+     * @param log The plain log file of a run.
+     * @return the plain log if it is still there, otherwise its archive, or null if neither exists
+     */
+    public static File find(File log) {
+        if(log.isFile()) {
+            return log;
+        }
+        File archive = getArchive(log);
+        return archive.isFile() ? archive : null;
+    }
+
+    /**
+     * Save the index of a finished log and compress the log in the background, delete the plain log and
+     * apply the retention settings.
+     *
+     * @param log
+     * @param index The index built while the log was written, or null to index the file.
+     * @return the pending work
+     */
+    public Future<?> archive(final File log, final LiveLogIndex index) {
+        return executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                compress(log, index);
+                applyRetention();
+            }
+        });
+    }
+
+    /**
+     * In the background, archive plain logs that are no longer written to, index archives that have no
+     * index, remove temporary files of archives that were not finished and indexes whose archive is gone,
+     * and apply the retention settings.
+     *
+     * @return the pending work
+     */
+    public Future<?> sweep() {
+        return executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                File logs[] = LogSpool.getLogFolder().listFiles(PLAIN_LOGS);
+                long stale = System.currentTimeMillis() - STALE_MILLIS;
+                if(logs != null) {
+                    for(File log:logs) {
+                        if(log.lastModified() < stale) {
+                            compress(log, null);
+                        }
+                    }
+                }
+                for(File archive:listArchives()) {
+                    File index = getIndex(getLog(archive));
+                    if(!index.isFile()) {
+                        try (LogArchive source = new LogArchive(archive)) {
+                            index(source).write(index);
+                        }
+                        catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+                File files[] = LogSpool.getLogFolder().listFiles();
+                if(files != null) {
+                    for(File file:files) {
+                        String name = file.getName();
+                        if(name.endsWith(".tmp") && file.lastModified() < stale) {
+                            file.delete();
+                        }
+                        else if(name.endsWith(LogIndex.EXTENSION) &&
+                                find(new File(file.getParentFile(), name.substring(0, name.length() - LogIndex.EXTENSION.length()) + ".log")) == null) {
+                            file.delete();
+                        }
+                    }
+                }
+                applyRetention();
+            }
+        });
+    }
+
+    /**
+     * Wait for the logs queued so far to be archived.
+     *
+     * @param timeoutMillis
+     * @return true if all queued work is done
+     * @throws InterruptedException
+     */
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while(executor.getActiveCount() > 0 || !executor.getQueue().isEmpty()) {
+            if(System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+
+    /**
+     * @return the archived logs, newest first
+     */
+    public static List<File> listArchives() {
+        File archives[] = LogSpool.getLogFolder().listFiles(ARCHIVES);
+        if(archives == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(archives, new Comparator<File>() {
+
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(o2.lastModified(), o1.lastModified());
+            }
+        });
+        return new ArrayList<>(Arrays.asList(archives));
+    }
+
+    private static String getBaseName(File log) {
+        String name = log.getName();
+        return name.endsWith(".log") ? name.substring(0, name.length() - 4) : name;
+    }
+
+    private void compress(File log, LiveLogIndex index) {
+        if(!log.isFile()) {
+            LogSearch.getDefault().unregister(log);
+            return;
+        }
+        File archive = getArchive(log);
+        try {
+            File indexFile = getIndex(log);
+            if(!indexFile.isFile()) {
+                if(index == null) {
+                    try (Reader in = new InputStreamReader(new FileInputStream(log), StandardCharsets.UTF_8)) {
+                        index = LiveLogIndex.read(in);
+                    }
+                }
+                index.write(indexFile);
+            }
+            if(!archive.isFile()) {
+                LogArchive.write(log, archive);
+                archive.setLastModified(log.lastModified());
+            }
+            // A log still open in a viewer on Windows cannot be deleted; a later sweep tries again.
+            log.delete();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        finally {
+            LogSearch.getDefault().unregister(log);
+        }
+    }
+
+    /**
+     * Index an archive made before logs were indexed.
+     */
+    private static LiveLogIndex index(LogArchive source) {
+        LiveLogIndex index = new LiveLogIndex();
+        List<String> lines = new ArrayList<>();
+        for(int first=0;first<source.getLineCount();first+=4096) {
+            lines.clear();
+            source.getLines(first, 4096, lines);
+            for(String line:lines) {
+                index.feed(line);
+                index.feed("\n");
+            }
+        }
+        return index;
+    }
+
+    private void applyRetention() {
+        int days = retentionDays;
+        long maxBytes = retentionMegabytes * 1024L * 1024L;
+        long oldest = System.currentTimeMillis() - days * 24L * 60 * 60 * 1000;
+        long total = 0;
+        for(File archive:listArchives()) {
+            File index = getIndex(getLog(archive));
+            long length = archive.length() + index.length();
+            if((days > 0 && archive.lastModified() < oldest) || (maxBytes > 0 && total + length > maxBytes)) {
+                archive.delete();
+                index.delete();
+            }
+            else {
+                total += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package overviewergui;
+
+/**
+ * Shortens Overviewer output for display the way a terminal would show it. A carriage return moves back to
+ * the start of the line so the text after it overwrites the line, and a run of lines that only differ in
+ * their numbers, like the progress lines Overviewer writes every few seconds, is folded into the last line
+ * of the run with a count of the lines folded into it. Warnings and errors are never folded.
+ * <p>
+ * The result is split in two: committed text that will not change any more and is appended to the view,
+ * and a tail of the folded line and the unfinished line that is replaced as more output arrives. The full
+ * output is still in the log file of the run.
+ *
+ * @author Mark Bernard
+ */
+public class LogCompactor {
+    /** Longer lines are broken, so output without line breaks does not collect in the tail. */
+    private static final int MAX_LINE = 65536;
+    private static final String IMPORTANT[] = {"WARNING", "ERROR", "CRITICAL", "Error", "Exception", "Traceback"};
+
+    private StringBuilder committed;
+    private StringBuilder line;
+    private int cursor;
+    private StringBuilder live;
+    private StringBuilder liveSignature;
+    private StringBuilder signature;
+    private int folded;
+    private long linesFolded;
+
+    /**
+     * Create a compactor with nothing shown yet.
+     */
+    public LogCompactor() {
+        committed = new StringBuilder();
+        line = new StringBuilder();
+        live = new StringBuilder();
+        liveSignature = new StringBuilder();
+        signature = new StringBuilder();
+    }
+
+    /**
+     * Add output. Lines and carriage return sequences may be split across calls.
+     *
+     * @param text
+     */
+    public void feed(CharSequence text) {
+        for(int i=0;i<text.length();i++) {
+            char c = text.charAt(i);
+            if(c == '\n') {
+                endLine();
+            }
+            else if(c == '\r') {
+                cursor = 0;
+            }
+            else {
+                if(cursor < line.length()) {
+                    line.setCharAt(cursor, c);
+                }
+                else {
+                    line.append(c);
+                }
+                cursor++;
+                if(line.length() >= MAX_LINE) {
+                    endLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Take the text that was finished since the last call. It will not be part of the tail again.
+     *
+     * @return the text to append to the view
+     */
+    public String takeCommitted() {
+        String text = committed.toString();
+        committed.setLength(0);
+        return text;
+    }
+
+    /**
+     * @return the text shown after the committed text: the folded line and the line not ended yet
+     */
+    public String getTail() {
+        if(live.length() == 0) {
+            return line.toString();
+        }
+        StringBuilder tail = new StringBuilder(live.length() + line.length() + 32);
+        appendLive(tail);
+        return tail.append(line).toString();
+    }
+
+    /**
+     * @return the number of lines folded into other lines so far
+     */
+    public long getLinesFolded() {
+        return linesFolded;
+    }
+
+    private void endLine() {
+        boolean foldable = isFoldable(line);
+        if(foldable && live.length() > 0 && sameSignature()) {
+            live.setLength(0);
+            live.append(line);
+            folded++;
+            linesFolded++;
+        }
+        else {
+            if(live.length() > 0) {
+                appendLive(committed);
+                live.setLength(0);
+            }
+            if(foldable) {
+                live.append(line);
+                liveSignature.setLength(0);
+                liveSignature.append(signature);
+                folded = 0;
+            }
+            else {
+                committed.append(line).append('\n');
+            }
+        }
+        line.setLength(0);
+        cursor = 0;
+    }
+
+    private void appendLive(StringBuilder target) {
+        target.append(live);
+        if(folded > 0) {
+            target.append("  [").append(folded).append(folded == 1 ? " similar line" : " similar lines").append(" folded]");
+        }
+        target.append('\n');
+    }
+
+    /**
+     * Lines with numbers in them may be folded, unless they report a problem. Builds the signature of the
+     * line as a side effect: the line with every number, including its separators, replaced by one '#'.
+     */
+    private boolean isFoldable(CharSequence text) {
+        signature.setLength(0);
+        boolean digits = false;
+        boolean inNumber = false;
+        for(int i=0;i<text.length();i++) {
+            char c = text.charAt(i);
+            if(c >= '0' && c <= '9') {
+                if(!inNumber) {
+                    signature.append('#');
+                    inNumber = true;
+                }
+                digits = true;
+            }
+            else if(inNumber && (c == ',' || c == '.') && i + 1 < text.length() && Character.isDigit(text.charAt(i + 1))) {
+                continue;
+            }
+            else {
+                signature.append(c);
+                inNumber = false;
+            }
+        }
+        if(!digits) {
+            return false;
+        }
+        for(String word:IMPORTANT) {
+            if(signature.indexOf(word) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean sameSignature() {
+        if(signature.length() != liveSignature.length()) {
+            return false;
+        }
+        for(int i=0;i<signature.length();i++) {
+            if(signature.charAt(i) != liveSignature.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
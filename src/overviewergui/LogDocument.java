@@ -0,0 +1,109 @@
+package overviewergui;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.PlainDocument;
+
+/**
+ * Text model for Overviewer output. Text is appended, except for a short tail at the end that may be
+ * replaced, and the oldest lines are dropped once the document goes over its line or character limit, so
+ * memory stays flat during long renders.
+ *
+ * @author Mark Bernard
+ */
+public class LogDocument extends PlainDocument {
+    private static final long serialVersionUID = 2718342981723894761L;
+
+    private int maxLines;
+    private int maxChars;
+    private int tailLength;
+
+    /**
+     * Create an empty log.
+     *
+     * @param maxLines Maximum number of lines kept.
+     * @param maxChars Maximum number of characters kept.
+     */
+    public LogDocument(int maxLines, int maxChars) {
+        super(new RingBufferContent(Math.min(maxChars, 1 << 16)));
+        this.maxLines = Math.max(1, maxLines);
+        this.maxChars = Math.max(1, maxChars);
+    }
+
+    /**
+     * Add text to the end of the log, before the tail, dropping lines from the start if the log is over its
+     * limits.
+     *
+     * @param text
+     */
+    public void append(String text) {
+        update(text, null);
+    }
+
+    /**
+     * Add text before the tail and replace the tail. The tail is kept out of the limits, so it should be
+     * short, like the last line or two.
+     *
+     * @param text Text added for good.
+     * @param tail New tail, or null to keep the tail.
+     */
+    public void update(String text, String tail) {
+        try {
+            int tailStart = getLength() - tailLength;
+            if(tail == null) {
+                if(text.length() == 0) {
+                    return;
+                }
+                insertString(tailStart, text, null);
+            }
+            else {
+                if(text.length() == 0 && tail.length() == tailLength && getText(tailStart, tailLength).equals(tail)) {
+                    return;
+                }
+                if(tailLength > 0) {
+                    remove(tailStart, tailLength);
+                }
+                insertString(tailStart, text + tail, null);
+                tailLength = tail.length();
+            }
+            int cut = Math.min(evictionPoint(), getLength() - tailLength);
+            if(cut > 0) {
+                remove(0, cut);
+            }
+        }
+        catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the maxLines
+     */
+    public int getMaxLines() {
+        return maxLines;
+    }
+
+    /**
+     * @return the maxChars
+     */
+    public int getMaxChars() {
+        return maxChars;
+    }
+
+    private int evictionPoint() {
+        Element root = getDefaultRootElement();
+        int length = getLength();
+        int cut = 0;
+        int excessLines = root.getElementCount() - maxLines;
+        if(excessLines > 0) {
+            cut = root.getElement(excessLines - 1).getEndOffset();
+        }
+        int excessChars = length - cut - maxChars;
+        if(excessChars > 0) {
+            int target = cut + excessChars;
+            int lineEnd = root.getElement(root.getElementIndex(target)).getEndOffset();
+            cut = lineEnd <= length ? lineEnd : target;
+        }
+        return Math.min(cut, length);
+    }
+}
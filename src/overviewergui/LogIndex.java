@@ -0,0 +1,182 @@
+package overviewergui;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Inverted index of a run log: for every word in the log, the lines it is on. A word is a run of letters and
+ * digits, compared without case and cut after {@value #MAX_TOKEN} characters. Searching takes the lines
+ * of each word of the query from the index and keeps the lines that have all of them, so the time taken
+ * depends on how often the words occur and not on the size of the log.
+ * <p>
+ * The lines of a word are stored as the differences between one line and the next, seven bits to a byte,
+ * so a word on most lines takes about a byte per line.
+ *
+ * @author Mark Bernard
+ */
+public abstract class LogIndex {
+    /** File name extension of saved indexes. */
+    public static final String EXTENSION = ".logi";
+    /** Longer words are cut to this many characters. */
+    public static final int MAX_TOKEN = 32;
+    protected static final int MAGIC = 0x4F564C49;
+    protected static final int VERSION = 1;
+
+    /**
+     * @return the number of lines indexed, lines after these are not found
+     */
+    public abstract int getLineCount();
+
+    /**
+     * The lines of one word of a query.
+     *
+     * @param token A word as it is indexed.
+     * @param prefix True to take the lines of every word starting with the token.
+     * @return the lines in ascending order without duplicates
+     * @throws IOException
+     */
+    protected abstract int[] getLines(String token, boolean prefix) throws IOException;
+
+    /**
+     * Find the lines that hold every word of the query. The last word also matches words it is the start of,
+     * unless the query ends with a space or punctuation, so a word does not have to be typed in full.
+     *
+     * @param query
+     * @param max Maximum number of lines returned.
+     * @return the first lines found, in ascending order
+     * @throws IOException
+     */
+    public int[] search(String query, int max) throws IOException {
+        List<String> tokens = tokenize(query);
+        if(tokens.isEmpty()) {
+            return new int[0];
+        }
+        boolean prefix = isTokenChar(query.charAt(query.length() - 1));
+        List<int[]> terms = new ArrayList<>();
+        for(int i=0;i<tokens.size();i++) {
+            int lines[] = getLines(tokens.get(i), prefix && i == tokens.size() - 1);
+            if(lines.length == 0) {
+                return lines;
+            }
+            terms.add(lines);
+        }
+        Collections.sort(terms, new Comparator<int[]>() {
+
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return Integer.compare(o1.length, o2.length);
+            }
+        });
+        int result[] = terms.get(0);
+        int length = result.length;
+        for(int t=1;t<terms.size() && length > 0;t++) {
+            int other[] = terms.get(t);
+            int kept = 0;
+            int from = 0;
+            for(int i=0;i<length;i++) {
+                int found = Arrays.binarySearch(other, from, other.length, result[i]);
+                if(found >= 0) {
+                    result[kept++] = result[i];
+                    from = found + 1;
+                }
+                else {
+                    from = -found - 1;
+                }
+            }
+            length = kept;
+        }
+        return Arrays.copyOf(result, Math.min(length, max));
+    }
+
+    /**
+     * Split text into the words that are indexed.
+     *
+     * @param text
+     * @return the words in lower case
+     */
+    public static List<String> tokenize(CharSequence text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder(MAX_TOKEN);
+        for(int i=0;i<=text.length();i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if(isTokenChar(c)) {
+                if(token.length() < MAX_TOKEN) {
+                    token.append(Character.toLowerCase(c));
+                }
+            }
+            else if(token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    protected static boolean isTokenChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Decode the lines of a word.
+     *
+     * @param data
+     * @param offset Position of the first byte.
+     * @param count Number of lines stored.
+     * @return the lines
+     */
+    protected static int[] decode(byte data[], int offset, int count) {
+        int lines[] = new int[count];
+        int line = -1;
+        int position = offset;
+        for(int i=0;i<count;i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while(b < 0);
+            line += delta;
+            lines[i] = line;
+        }
+        return lines;
+    }
+
+    /**
+     * Merge the lines of several words.
+     *
+     * @param terms
+     * @return the lines of any of the words in ascending order without duplicates
+     */
+    protected static int[] union(List<int[]> terms) {
+        if(terms.isEmpty()) {
+            return new int[0];
+        }
+        if(terms.size() == 1) {
+            return terms.get(0);
+        }
+        int total = 0;
+        for(int[] lines:terms) {
+            total += lines.length;
+        }
+        int all[] = new int[total];
+        int position = 0;
+        for(int[] lines:terms) {
+            System.arraycopy(lines, 0, all, position, lines.length);
+            position += lines.length;
+        }
+        Arrays.sort(all);
+        int length = 0;
+        for(int i=0;i<all.length;i++) {
+            if(length == 0 || all[length - 1] != all[i]) {
+                all[length++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, length);
+    }
+}
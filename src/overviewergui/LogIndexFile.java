@@ -0,0 +1,147 @@
+package overviewergui;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link LogIndex} saved by a {@link LiveLogIndex}. Only the dictionary of words is read when the index is
+ * opened, kept as the bytes of the file; the lines of a word are read from the file when it is searched
+ * for. The file is not held open between searches, so it can be deleted when its log expires.
+ *
+ * @author Mark Bernard
+ */
+public class LogIndexFile extends LogIndex {
+    private static final int TRAILER_SIZE = 20;
+
+    private File file;
+    private int lineCount;
+    private byte dictionary[];
+    private int entries[];
+
+    /**
+     * Open an index and read its dictionary.
+     *
+     * @param file
+     * @throws IOException if the file is not a complete index
+     */
+    public LogIndexFile(File file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if(fileSize < 8 + TRAILER_SIZE) {
+                throw new IOException("Not a log index: " + file.getName());
+            }
+            ByteBuffer trailer = read(channel, fileSize - TRAILER_SIZE, TRAILER_SIZE);
+            long dictionaryOffset = trailer.getLong();
+            lineCount = trailer.getInt();
+            int count = trailer.getInt();
+            if(trailer.getInt() != MAGIC || dictionaryOffset < 8 || dictionaryOffset > fileSize - TRAILER_SIZE || count < 0) {
+                throw new IOException("Not a complete log index: " + file.getName());
+            }
+            ByteBuffer header = read(channel, 0, 8);
+            if(header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Unsupported log index: " + file.getName());
+            }
+            dictionary = read(channel, dictionaryOffset, (int)(fileSize - TRAILER_SIZE - dictionaryOffset)).array();
+            entries = new int[count];
+            int position = 0;
+            for(int i=0;i<count;i++) {
+                if(position >= dictionary.length) {
+                    throw new IOException("Damaged log index: " + file.getName());
+                }
+                entries[i] = position;
+                position += 1 + (dictionary[position] & 0xFF) + 16;
+            }
+            if(position != dictionary.length) {
+                throw new IOException("Damaged log index: " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * @return the saved index file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the number of words in the index
+     */
+    public int getWordCount() {
+        return entries.length;
+    }
+
+    @Override
+    protected int[] getLines(String token, boolean prefix) throws IOException {
+        byte key[] = token.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = entries.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(compare(entries[middle], key, false) < 0) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        List<int[]> terms = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for(int i=low;i<entries.length && compare(entries[i], key, prefix) == 0;i++) {
+                ByteBuffer entry = ByteBuffer.wrap(dictionary, entries[i] + 1 + (dictionary[entries[i]] & 0xFF), 16);
+                long offset = entry.getLong();
+                int length = entry.getInt();
+                int count = entry.getInt();
+                terms.add(decode(read(channel, offset, length).array(), 0, count));
+                if(!prefix) {
+                    break;
+                }
+            }
+        }
+        return union(terms);
+    }
+
+    /**
+     * Compare the word of a dictionary entry with a key, byte by byte without sign.
+     *
+     * @param prefix True to count a word starting with the key as equal.
+     */
+    private int compare(int entry, byte key[], boolean prefix) {
+        int length = dictionary[entry] & 0xFF;
+        int common = Math.min(length, key.length);
+        for(int i=0;i<common;i++) {
+            int difference = (dictionary[entry + 1 + i] & 0xFF) - (key[i] & 0xFF);
+            if(difference != 0) {
+                return difference;
+            }
+        }
+        if(prefix && length >= key.length) {
+            return 0;
+        }
+        return length - key.length;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,268 @@
+package overviewergui;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Searches run logs through their {@link LogIndex}: the {@link LiveLogIndex} of a run that is still going
+ * or has not been archived yet, and the saved index of an archived log. Plain logs left by an earlier session
+ * are searchable once {@link LogArchiver} has archived them.
+ *
+ * @author Mark Bernard
+ */
+public class LogSearch {
+    /** Most lines found in one log. */
+    public static final int MAX_HITS_PER_LOG = 200;
+    /** Most lines found in all logs together. */
+    public static final int MAX_HITS = 1000;
+    private static final int CACHED_INDEXES = 64;
+    private static final LogSearch INSTANCE = new LogSearch();
+
+    private Map<File, LiveLogIndex> live;
+    private Map<File, LogIndexFile> saved;
+
+    private LogSearch() {
+        live = new ConcurrentHashMap<>();
+        saved = new LinkedHashMap<File, LogIndexFile>(16, 0.75f, true) {
+            private static final long serialVersionUID = 2236470918517327462L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, LogIndexFile> eldest) {
+                return size() > CACHED_INDEXES;
+            }
+        };
+    }
+
+    /**
+     * @return the search over the log folder
+     */
+    public static LogSearch getDefault() {
+        return INSTANCE;
+    }
+
+    /**
+     * Make the index of a log that is being written searchable.
+     *
+     * @param log The plain log file.
+     * @param index
+     */
+    public void register(File log, LiveLogIndex index) {
+        live.put(log, index);
+    }
+
+    /**
+     * Stop searching the index kept in memory, once the index has been saved.
+     *
+     * @param log The plain log file.
+     */
+    public void unregister(File log) {
+        live.remove(log);
+    }
+
+    /**
+     * The index of a log, from memory if the log is still being written, otherwise from its saved index.
+     *
+     * @param log The plain log file.
+     * @return the index, or null if the log has none
+     */
+    public LogIndex getIndex(File log) {
+        LogIndex index = live.get(log);
+        if(index != null) {
+            return index;
+        }
+        File file = LogArchiver.getIndex(log);
+        synchronized (saved) {
+            index = saved.get(file);
+            if(index == null && file.isFile()) {
+                try {
+                    LogIndexFile opened = new LogIndexFile(file);
+                    saved.put(file, opened);
+                    index = opened;
+                }
+                catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Search one log.
+     *
+     * @param log The plain log file, which may have been archived.
+     * @param query Words that must all be on a line, see {@link LogIndex#search(String, int)}.
+     * @return the lines found, empty if the log has no index
+     */
+    public List<Hit> search(File log, String query) {
+        List<Hit> hits = new ArrayList<>();
+        searchLog(log, query, MAX_HITS_PER_LOG, hits);
+        return hits;
+    }
+
+    /**
+     * Search a log first and then the other logs, newest first, until {@link #MAX_HITS} lines are found.
+     *
+     * @param first The plain log file searched first, or null.
+     * @param query Words that must all be on a line, see {@link LogIndex#search(String, int)}.
+     * @return the lines found
+     */
+    public List<Hit> searchAll(File first, String query) {
+        List<File> logs = new ArrayList<>();
+        if(first != null) {
+            logs.add(first);
+        }
+        for(File log:live.keySet()) {
+            if(!logs.contains(log)) {
+                logs.add(log);
+            }
+        }
+        for(File archive:LogArchiver.listArchives()) {
+            File log = LogArchiver.getLog(archive);
+            if(!logs.contains(log)) {
+                logs.add(log);
+            }
+        }
+        List<Hit> hits = new ArrayList<>();
+        for(File log:logs) {
+            if(hits.size() >= MAX_HITS || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            searchLog(log, query, Math.min(MAX_HITS_PER_LOG, MAX_HITS - hits.size()), hits);
+        }
+        return hits;
+    }
+
+    private void searchLog(File log, String query, int max, List<Hit> hits) {
+        LogIndex index = getIndex(log);
+        if(index == null) {
+            return;
+        }
+        int lines[];
+        try {
+            lines = index.search(query, max);
+        }
+        catch (IOException e) {
+            // The archive expired since the index was opened.
+            synchronized (saved) {
+                saved.remove(LogArchiver.getIndex(log));
+            }
+            return;
+        }
+        if(lines.length == 0) {
+            return;
+        }
+        File file = LogArchiver.find(log);
+        if(file == null) {
+            return;
+        }
+        if(LogArchive.isArchive(file)) {
+            List<String> text = new ArrayList<>(1);
+            try (LogArchive source = new LogArchive(file)) {
+                for(int line:lines) {
+                    text.clear();
+                    source.getLines(line, 1, text);
+                    hits.add(new Hit(log, line, text.isEmpty() ? "" : text.get(0)));
+                }
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        else {
+            readPlain(log, file, index instanceof LiveLogIndex ? (LiveLogIndex)index : null, lines, hits);
+        }
+    }
+
+    /**
+     * Read the lines found in a plain log, starting each from the closest line start the live index knows,
+     * or from the start of the file if there is no live index. The file is read, not mapped, so nothing keeps
+     * it from being deleted once it has been archived.
+     */
+    private static void readPlain(File log, File file, LiveLogIndex index, int lines[], List<Hit> hits) {
+        byte buffer[] = new byte[LogSource.MAX_LINE_BYTES];
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            InputStream in = null;
+            int position = -1;
+            for(int line:lines) {
+                int checkpointLine = index == null ? 0 : index.getCheckpointLine(line);
+                if(in == null || position > line || checkpointLine > position) {
+                    channel.position(index == null ? 0 : index.getCheckpoint(line));
+                    in = new BufferedInputStream(Channels.newInputStream(channel), 16384);
+                    position = checkpointLine;
+                }
+                int b = 0;
+                while(position < line && b >= 0) {
+                    b = in.read();
+                    if(b == '\n') {
+                        position++;
+                    }
+                }
+                if(b < 0) {
+                    return;
+                }
+                int length = 0;
+                while((b = in.read()) >= 0 && b != '\n') {
+                    if(length < buffer.length) {
+                        buffer[length++] = (byte)b;
+                    }
+                }
+                position++;
+                if(length > 0 && buffer[length - 1] == '\r') {
+                    length--;
+                }
+                hits.add(new Hit(log, line, new String(buffer, 0, length, StandardCharsets.UTF_8)));
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A line found by a search.
+     */
+    public static class Hit {
+        private File log;
+        private int line;
+        private String text;
+
+        private Hit(File log, int line, String text) {
+            this.log = log;
+            this.line = line;
+            this.text = text;
+        }
+
+        /**
+         * @return the plain log file, use {@link LogArchiver#find(File)} to open it
+         */
+        public File getLog() {
+            return log;
+        }
+
+        /**
+         * @return the zero based index of the line
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * @return the text of the line
+         */
+        public String getText() {
+            return text;
+        }
+    }
+}
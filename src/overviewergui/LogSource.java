@@ -0,0 +1,43 @@
+package overviewergui;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Lines of a run log that can be read in any order, from a plain log file that may still be growing or
+ * from a compressed archive.
+ *
+ * @author Mark Bernard
+ */
+public interface LogSource extends Closeable {
+    /** Longest part of a line that is returned. */
+    int MAX_LINE_BYTES = 4096;
+
+    /**
+     * Index lines added since the last call, up to a fixed amount per call.
+     *
+     * @return true if everything written so far has been indexed
+     * @throws IOException
+     */
+    boolean refresh() throws IOException;
+
+    /**
+     * @return the number of lines indexed so far, counting a last line without a line break
+     */
+    int getLineCount();
+
+    /**
+     * @return the number of bytes of log indexed so far
+     */
+    long getIndexedBytes();
+
+    /**
+     * Read consecutive lines. Lines longer than {@link #MAX_LINE_BYTES} are cut.
+     *
+     * @param first Index of the first line.
+     * @param count Maximum number of lines to read.
+     * @param lines List the lines are added to.
+     */
+    void getLines(int first, int count, List<String> lines);
+}
@@ -0,0 +1,118 @@
+package overviewergui;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Append-only file holding the complete output of one Overviewer run. The output view only keeps the end
+ * of the log, the spool keeps all of it on disk where it survives the tab being closed. The bytes written
+ * are also passed to the {@link LiveLogIndex} of the log so it knows where lines start.
+ *
+ * @author Mark Bernard
+ */
+public class LogSpool implements Closeable {
+    private File file;
+    private OutputStream out;
+    private LiveLogIndex index;
+
+    /**
+     * Create a new spool file for a run of the map. Every run gets a file of its own.
+     *
+     * @param map
+     * @throws IOException
+     */
+    public LogSpool(String map) throws IOException {
+        String name = map.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        file = new File(getLogFolder(), name + ".log");
+        // Two runs of a map started in the same millisecond, or a name an archived log still uses, get a counter.
+        for(int count=2;LogArchiver.getArchive(file).exists() || !file.createNewFile();count++) {
+            file = new File(getLogFolder(), name + "-" + count + ".log");
+        }
+        out = new FileOutputStream(file);
+        index = new LiveLogIndex();
+    }
+
+    /**
+     * @return the folder holding the spooled logs
+     */
+    public static File getLogFolder() {
+        File folder = DataFolder.resolve("logs");
+        if(!folder.isDirectory() && !folder.mkdirs()) {
+            throw new RuntimeException("Unable to create log directory: " + folder.getAbsolutePath());
+        }
+        return folder;
+    }
+
+    /**
+     * Wrap a stream so that everything read from it is also written to the spool and counted in the
+     * {@link RenderMetrics}.
+     *
+     * @param in
+     * @return the wrapped stream
+     */
+    public InputStream tee(InputStream in) {
+        return new FilterInputStream(in) {
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if(b >= 0) {
+                    out.write(b);
+                    index.addBytes(new byte[] {(byte)b}, 0, 1);
+                    RenderMetrics.getDefault().logRead(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if(read > 0) {
+                    out.write(b, off, read);
+                    index.addBytes(b, off, read);
+                    RenderMetrics.getDefault().logRead(read);
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Add a message from the GUI itself to the log.
+     *
+     * @param text
+     * @throws IOException
+     */
+    public void write(String text) throws IOException {
+        byte bytes[] = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        index.addBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return the index of the log, fed the text of the log by the run
+     */
+    public LiveLogIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the spool file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,54 @@
+package overviewergui;
+
+import java.awt.Component;
+import java.io.File;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+
+/**
+ * Shows the details of each world in the map list. Details come from the {@link WorldMetadataIndex} and the
+ * estimated render time from the {@link RenderCostEstimator}, and since only visible rows are rendered, only
+ * the worlds the user can see are checked for changes.
+ * 
+ * @author Mark Bernard
+ */
+public class MapListCellRenderer extends DefaultListCellRenderer {
+    private static final long serialVersionUID = 4471906185293386207L;
+    
+    private MapListModel listModel;
+    private WorldMetadataIndex index;
+    private RenderCostEstimator estimator;
+    
+    /**
+     * Create the renderer.
+     * 
+     * @param listModel Model of the list, used for the save folder.
+     * @param index Source of the world details.
+     * @param estimator Source of the estimated render times.
+     */
+    public MapListCellRenderer(MapListModel listModel, WorldMetadataIndex index, RenderCostEstimator estimator) {
+        this.listModel = listModel;
+        this.index = index;
+        this.estimator = estimator;
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+        super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+        if(value != null) {
+            String map = value.toString();
+            File world = new File(listModel.getFolder(), map);
+            WorldMetadata metadata = this.index.get(world);
+            RenderCostEstimator.Estimate estimate = estimator.get(world);
+            if(metadata != null) {
+                String name = metadata.getLevelName().equals(map) ? map : metadata.getLevelName() + " (" + map + ")";
+                setText(name + " - " + metadata.getSummary() + (estimate == null ? "" : " - " + estimate.getSummary()));
+            }
+            else if(estimate != null) {
+                setText(map + " - " + estimate.getSummary());
+            }
+        }
+        return this;
+    }
+}
@@ -1,25 +1,57 @@
 package overviewergui;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.swing.AbstractListModel;
+import javax.swing.DefaultListSelectionModel;
+import javax.swing.SwingUtilities;
 
 /**
- * Model to hold the list of available maps.
- * 
+ * Model to hold the list of available maps. The save folder is read on a background thread and then
+ * watched for maps being added or deleted, so the list stays current without rescanning and the event
+ * dispatch thread never waits on the file system. Changes are applied in batches with interval events so
+ * the selection in the list is kept; give the list a {@link SelectionModel} so maps added next to a
+ * selected map are not selected with it.
+ *
  * @author Mark Bernard
  */
 public class MapListModel extends AbstractListModel<String> {
     private static final long serialVersionUID = -6696446612827244475L;
-    
+    /** Number of maps found by a scan before they are shown. */
+    private static final int BATCH_SIZE = 64;
+    private static final Comparator<String> MAP_ORDER = new Comparator<String>() {
+
+        @Override
+        public int compare(String o1, String o2) {
+            int result = o1.compareToIgnoreCase(o2);
+            return result != 0 ? result : o1.compareTo(o2);
+        }
+    };
+
     private String folder;
     private List<String> maps;
-    
+    private int generation;
+    private FolderWatcher watcher;
+
     /**
      * Generate initial list.
-     * 
+     *
      * @param folder Folder holding minecraft maps
      */
     public MapListModel(String folder) {
@@ -27,7 +59,7 @@ public class MapListModel extends AbstractListModel<String> {
         maps = new ArrayList<String>();
         updateList();
     }
-    
+
     @Override
     public int getSize() {
         return maps.size();
@@ -59,18 +91,235 @@ public class MapListModel extends AbstractListModel<String> {
     }
 
     private void updateList() {
-        maps.clear();
+        generation++;
+        if(watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+        int size = maps.size();
+        if(size > 0) {
+            maps.clear();
+            fireIntervalRemoved(this, 0, size - 1);
+        }
         if(!"".equals(folder)) {
-            File base = new File(folder);
-            if(base.isDirectory()) {
-                File list[] = base.listFiles();
-                for(File file:list) {
-                    if(file.isDirectory()) {
-                        maps.add(file.getName());
+            try {
+                watcher = new FolderWatcher(Paths.get(folder), generation);
+            }
+            catch (InvalidPathException e) {
+                return;
+            }
+            Thread t = new Thread(watcher, "Map folder watcher - " + folder);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private void publish(final int batchGeneration, final List<String> added, final List<String> removed, final boolean replace) {
+        SwingUtilities.invokeLater(new Runnable() {
+
+            @Override
+            public void run() {
+                if(batchGeneration == generation) {
+                    apply(added, removed, replace);
+                }
+            }
+        });
+    }
+
+    private void apply(List<String> added, List<String> removed, boolean replace) {
+        if(replace) {
+            Set<String> present = new HashSet<>(added);
+            for(int i=maps.size() - 1;i>=0;i--) {
+                if(!present.contains(maps.get(i))) {
+                    maps.remove(i);
+                    fireIntervalRemoved(this, i, i);
+                }
+            }
+        }
+        for(String map:removed) {
+            int index = Collections.binarySearch(maps, map, MAP_ORDER);
+            if(index >= 0) {
+                maps.remove(index);
+                fireIntervalRemoved(this, index, index);
+            }
+        }
+        insert(added);
+    }
+
+    /**
+     * Merge maps into the sorted list in one pass. Every run of new maps that ends up next to each other is
+     * announced with one interval event, in ascending order, so the list moves its selection past exactly
+     * the rows added before it.
+     */
+    private void insert(List<String> added) {
+        if(added.isEmpty()) {
+            return;
+        }
+        List<String> sorted = new ArrayList<>(added);
+        Collections.sort(sorted, MAP_ORDER);
+        List<String> merged = new ArrayList<>(maps.size() + sorted.size());
+        List<int[]> runs = new ArrayList<>();
+        int next = 0;
+        for(String map:sorted) {
+            while(next < maps.size() && MAP_ORDER.compare(maps.get(next), map) < 0) {
+                merged.add(maps.get(next++));
+            }
+            if((next < maps.size() && MAP_ORDER.compare(maps.get(next), map) == 0) || 
+                    (!merged.isEmpty() && MAP_ORDER.compare(merged.get(merged.size() - 1), map) == 0)) {
+                continue;
+            }
+            int index = merged.size();
+            merged.add(map);
+            int run[] = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+            if(run != null && run[1] == index - 1) {
+                run[1] = index;
+            }
+            else {
+                runs.add(new int[] {index, index});
+            }
+        }
+        if(runs.isEmpty()) {
+            return;
+        }
+        while(next < maps.size()) {
+            merged.add(maps.get(next++));
+        }
+        maps = merged;
+        for(int run[]:runs) {
+            fireIntervalAdded(this, run[0], run[1]);
+        }
+    }
+
+    /**
+     * Selection of a list showing the maps. A list selects rows inserted in front of a selected row, which
+     * would select maps the user never picked when a scan or a new world adds them; this one leaves new
+     * rows unselected.
+     */
+    public static class SelectionModel extends DefaultListSelectionModel {
+        private static final long serialVersionUID = 4781530268197345046L;
+
+        @Override
+        public void insertIndexInterval(int index, int length, boolean before) {
+            super.insertIndexInterval(index, length, before);
+            int first = before ? index : index + 1;
+            if(isSelectedIndex(first)) {
+                int anchor = getAnchorSelectionIndex();
+                int lead = getLeadSelectionIndex();
+                removeSelectionInterval(first, first + length - 1);
+                setAnchorSelectionIndex(anchor);
+                moveLeadSelectionIndex(lead);
+            }
+        }
+    }
+
+    /**
+     * Reads the save folder and then reports maps created or deleted in it until closed.
+     */
+    private class FolderWatcher implements Runnable {
+        private Path base;
+        private int watcherGeneration;
+        private WatchService watchService;
+        private boolean closed;
+
+        public FolderWatcher(Path base, int watcherGeneration) {
+            this.base = base;
+            this.watcherGeneration = watcherGeneration;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if(!Files.isDirectory(base) || !openWatchService()) {
+                    return;
+                }
+                scan(false);
+                while(!isClosed()) {
+                    WatchKey key = watchService.take();
+                    List<String> added = new ArrayList<>();
+                    List<String> removed = new ArrayList<>();
+                    boolean overflow = false;
+                    for(WatchEvent<?> event:key.pollEvents()) {
+                        if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                            continue;
+                        }
+                        Path child = base.resolve((Path)event.context());
+                        if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                            added.add(child.getFileName().toString());
+                        }
+                        else if(event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            removed.add(child.getFileName().toString());
+                        }
+                    }
+                    if(overflow) {
+                        scan(true);
+                    }
+                    else if(!added.isEmpty() || !removed.isEmpty()) {
+                        publish(watcherGeneration, added, removed, false);
+                    }
+                    if(!key.reset()) {
+                        break;
+                    }
+                }
+            }
+            catch (ClosedWatchServiceException | InterruptedException e) {
+                e.getMessage();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            finally {
+                close();
+            }
+        }
+
+        /**
+         * Publish the maps in the folder in batches, or all at once when replacing the whole list.
+         */
+        private void scan(boolean replace) throws IOException {
+            List<String> batch = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(base)) {
+                for(Path path:stream) {
+                    if(isClosed()) {
+                        return;
+                    }
+                    if(Files.isDirectory(path)) {
+                        batch.add(path.getFileName().toString());
+                        if(!replace && batch.size() >= BATCH_SIZE) {
+                            publish(watcherGeneration, batch, Collections.<String>emptyList(), false);
+                            batch = new ArrayList<>();
+                        }
                     }
                 }
             }
-            fireContentsChanged(this, 0, getSize());
+            if(replace || !batch.isEmpty()) {
+                publish(watcherGeneration, batch, Collections.<String>emptyList(), replace);
+            }
+        }
+
+        private synchronized boolean openWatchService() throws IOException {
+            if(closed) {
+                return false;
+            }
+            watchService = base.getFileSystem().newWatchService();
+            base.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            return true;
+        }
+
+        private synchronized boolean isClosed() {
+            return closed;
+        }
+
+        public synchronized void close() {
+            closed = true;
+            if(watchService != null) {
+                try {
+                    watchService.close();
+                }
+                catch (IOException e) {
+                    e.getMessage();
+                }
+            }
         }
     }
 }
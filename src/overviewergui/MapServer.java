@@ -0,0 +1,551 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Serves the rendered maps in the map output folder over HTTP, so the Leaflet viewer of a map can be opened
+ * without a separate web server. Each map is served under its folder name: {@code http://host:port/<map>/}.
+ * <p>
+ * One thread serves every connection with a selector, which is enough for the hundreds of tile requests the
+ * viewer makes at a time because the file contents are handed to the socket with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} instead of being copied
+ * through the Java heap. Connections are kept alive between requests. Responses carry an ETag and
+ * Last-Modified date so the browser revalidates cached tiles instead of loading them again; tiles change
+ * whenever a map is rendered again, so nothing is cached without revalidating. JavaScript and JSON files
+ * that have a gzip compressed copy next to them ({@code name.js.gz}) are served compressed to browsers that
+ * accept it.
+ *
+ * @author Mark Bernard
+ */
+public class MapServer implements Runnable {
+    /** Largest request head accepted, the viewer sends far less. */
+    private static final int MAX_REQUEST_SIZE = 8192;
+    /** Keep-alive connections idle for longer are closed. */
+    private static final long IDLE_MILLIS = 30000;
+    private static final byte HEAD_END[] = {'\r', '\n', '\r', '\n'};
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+    static {
+        CONTENT_TYPES.put("html", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("htm", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("js", "application/javascript");
+        CONTENT_TYPES.put("json", "application/json");
+        CONTENT_TYPES.put("css", "text/css");
+        CONTENT_TYPES.put("txt", "text/plain; charset=utf-8");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("webp", "image/webp");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+    }
+
+    private File root;
+    private int port;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean closed;
+    private SimpleDateFormat httpDate;
+
+    /**
+     * Create a server. Nothing is served until {@link #start()}.
+     *
+     * @param root The map output folder.
+     * @param port Port to listen on, 0 for any free port.
+     */
+    public MapServer(File root, int port) {
+        this.root = root;
+        this.port = port;
+        httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+    }
+
+    /**
+     * Listen on all addresses and serve on a daemon thread.
+     *
+     * @throws IOException if the port cannot be used
+     */
+    public void start() throws IOException {
+        root = root.getCanonicalFile();
+        selector = Selector.open();
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port), 256);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException e) {
+            close();
+            throw e;
+        }
+        port = serverChannel.socket().getLocalPort();
+        thread = new Thread(this, "Map server - " + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop serving and close every connection.
+     */
+    public void close() {
+        closed = true;
+        if(thread != null) {
+            selector.wakeup();
+        }
+        else {
+            closeChannels();
+        }
+    }
+
+    /**
+     * Wait until the server is closed.
+     *
+     * @throws InterruptedException
+     */
+    public void awaitClose() throws InterruptedException {
+        thread.join();
+    }
+
+    /**
+     * @return the port listened on
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return the folder the maps are served from
+     */
+    public File getRoot() {
+        return root;
+    }
+
+    @Override
+    public void run() {
+        try {
+            long lastIdleCheck = System.currentTimeMillis();
+            while(!closed) {
+                selector.select(IDLE_MILLIS / 2);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(!key.isValid()) {
+                        continue;
+                    }
+                    if(key.isAcceptable()) {
+                        accept();
+                    }
+                    else {
+                        Connection connection = (Connection)key.attachment();
+                        try {
+                            if(key.isReadable()) {
+                                connection.read();
+                            }
+                            else if(key.isWritable()) {
+                                connection.write();
+                            }
+                        }
+                        catch (IOException e) {
+                            connection.close();
+                        }
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if(now - lastIdleCheck >= IDLE_MILLIS / 2) {
+                    lastIdleCheck = now;
+                    closeIdle(now);
+                }
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        finally {
+            closeChannels();
+        }
+    }
+
+    /**
+     * Close the connections, the listening socket and the selector.
+     */
+    private void closeChannels() {
+        if(selector != null) {
+            for(SelectionKey key:selector.keys()) {
+                if(key.attachment() instanceof Connection) {
+                    ((Connection)key.attachment()).close();
+                }
+            }
+            try {
+                selector.close();
+            }
+            catch (IOException e) {
+                e.getMessage();
+            }
+        }
+        if(serverChannel != null) {
+            try {
+                serverChannel.close();
+            }
+            catch (IOException e) {
+                e.getMessage();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        while(channel != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            channel = serverChannel.accept();
+        }
+    }
+
+    private void closeIdle(long now) {
+        for(SelectionKey key:selector.keys()) {
+            if(key.attachment() instanceof Connection) {
+                Connection connection = (Connection)key.attachment();
+                if(now - connection.lastActive > IDLE_MILLIS) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the file a request path names, or null if it is outside of the served folder
+     */
+    private File resolve(String path) throws IOException {
+        File file = new File(root, path).getCanonicalFile();
+        if(!file.equals(root) && !file.getPath().startsWith(root.getPath() + File.separator)) {
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * State of one client connection. Only the server thread uses it.
+     */
+    private class Connection {
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer request;
+        private ByteBuffer head;
+        private FileChannel body;
+        private long bodyPosition;
+        private long bodyEnd;
+        private boolean keepAlive;
+        private long lastActive;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            request = ByteBuffer.allocate(MAX_REQUEST_SIZE);
+            lastActive = System.currentTimeMillis();
+        }
+
+        private void read() throws IOException {
+            lastActive = System.currentTimeMillis();
+            if(channel.read(request) < 0) {
+                close();
+                return;
+            }
+            handleNext();
+        }
+
+        /**
+         * Answer the next request in the buffer. A browser may send a request before the answer to the last
+         * one has been read, so more than one can be waiting.
+         */
+        private void handleNext() throws IOException {
+            int end = indexOf(request.array(), request.position(), HEAD_END);
+            if(end < 0) {
+                if(!request.hasRemaining()) {
+                    keepAlive = false;
+                    respond(431, "Request Header Fields Too Large", null);
+                }
+                else {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+                return;
+            }
+            String text = new String(request.array(), 0, end, StandardCharsets.ISO_8859_1);
+            int consumed = end + HEAD_END.length;
+            System.arraycopy(request.array(), consumed, request.array(), 0, request.position() - consumed);
+            request.position(request.position() - consumed);
+            handle(text);
+        }
+
+        private void handle(String text) throws IOException {
+            String lines[] = text.split("\r\n");
+            String requestLine[] = lines[0].split(" ");
+            Map<String, String> headers = new HashMap<>();
+            for(int i=1;i<lines.length;i++) {
+                int colon = lines[i].indexOf(':');
+                if(colon > 0) {
+                    headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.US), lines[i].substring(colon + 1).trim());
+                }
+            }
+            String connectionHeader = headers.get("connection");
+            if(requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+                keepAlive = false;
+                respond(400, "Bad Request", null);
+                return;
+            }
+            keepAlive = "HTTP/1.1".equals(requestLine[2])
+                    ? !"close".equalsIgnoreCase(connectionHeader) : "keep-alive".equalsIgnoreCase(connectionHeader);
+            String method = requestLine[0];
+            if(!"GET".equals(method) && !"HEAD".equals(method)) {
+                respond(405, "Method Not Allowed", "Allow: GET, HEAD\r\n");
+                return;
+            }
+            String path;
+            try {
+                path = new URI(requestLine[1]).getPath();
+            }
+            catch (URISyntaxException e) {
+                respond(400, "Bad Request", null);
+                return;
+            }
+            File file = path == null || !path.startsWith("/") ? null : resolve(path);
+            if(file == null || !file.exists()) {
+                respond(404, "Not Found", null);
+                return;
+            }
+            if(file.isDirectory()) {
+                if(!path.endsWith("/")) {
+                    respond(301, "Moved Permanently", "Location: " + requestLine[1].replaceFirst("^([^?]*)", "$1/") + "\r\n");
+                    return;
+                }
+                File index = new File(file, "index.html");
+                if(!index.isFile()) {
+                    if(file.equals(root)) {
+                        sendMapList("HEAD".equals(method));
+                    }
+                    else {
+                        respond(404, "Not Found", null);
+                    }
+                    return;
+                }
+                file = index;
+            }
+            sendFile(file, headers, "HEAD".equals(method));
+        }
+
+        private void sendFile(File file, Map<String, String> headers, boolean headOnly) throws IOException {
+            String name = file.getName();
+            String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.US);
+            String contentType = CONTENT_TYPES.get(extension);
+            StringBuilder extra = new StringBuilder();
+            extra.append("Content-Type: ").append(contentType == null ? "application/octet-stream" : contentType).append("\r\n");
+            File sent = file;
+            if("js".equals(extension) || "json".equals(extension)) {
+                extra.append("Vary: Accept-Encoding\r\n");
+                String acceptEncoding = headers.get("accept-encoding");
+                File compressed = new File(file.getPath() + ".gz");
+                if(acceptEncoding != null && acceptEncoding.toLowerCase(Locale.US).contains("gzip")
+                        && compressed.isFile() && compressed.lastModified() >= file.lastModified()) {
+                    sent = compressed;
+                    extra.append("Content-Encoding: gzip\r\n");
+                }
+            }
+            long lastModified = sent.lastModified() / 1000 * 1000;
+            String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(sent.length())
+                    + (sent == file ? "" : "-gz") + "\"";
+            extra.append("ETag: ").append(etag).append("\r\n");
+            extra.append("Last-Modified: ").append(httpDate.format(new Date(lastModified))).append("\r\n");
+            extra.append("Cache-Control: no-cache\r\n");
+            if(isNotModified(headers, etag, lastModified)) {
+                respond(304, "Not Modified", extra.toString());
+                return;
+            }
+            FileChannel fileChannel;
+            try {
+                fileChannel = FileChannel.open(sent.toPath(), StandardOpenOption.READ);
+            }
+            catch (IOException e) {
+                respond(403, "Forbidden", null);
+                return;
+            }
+            long length = fileChannel.size();
+            if(headOnly) {
+                fileChannel.close();
+                fileChannel = null;
+            }
+            startResponse(200, "OK", extra + "Content-Length: " + length + "\r\n", fileChannel, length);
+            write();
+        }
+
+        /**
+         * A matching ETag decides; the date is only used when the browser sent no ETag.
+         */
+        private boolean isNotModified(Map<String, String> headers, String etag, long lastModified) {
+            String ifNoneMatch = headers.get("if-none-match");
+            if(ifNoneMatch != null) {
+                for(String tag:ifNoneMatch.split(",")) {
+                    tag = tag.trim();
+                    if(tag.equals("*") || tag.equals(etag)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            String ifModifiedSince = headers.get("if-modified-since");
+            if(ifModifiedSince != null) {
+                try {
+                    return httpDate.parse(ifModifiedSince).getTime() >= lastModified;
+                }
+                catch (ParseException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Links to the maps in the output folder, for the address of the server itself.
+         */
+        private void sendMapList(boolean headOnly) throws IOException {
+            StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html><head><title>Overviewer Maps</title></head><body>\n<h1>Maps</h1>\n<ul>\n");
+            File folders[] = root.listFiles();
+            if(folders != null) {
+                Arrays.sort(folders);
+                for(File folder:folders) {
+                    if(new File(folder, "index.html").isFile()) {
+                        String name = folder.getName().replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;");
+                        String href;
+                        try {
+                            href = new URI(null, null, "/" + folder.getName() + "/", null).toASCIIString();
+                        }
+                        catch (URISyntaxException e) {
+                            continue;
+                        }
+                        html.append("<li><a href=\"").append(href).append("\">").append(name).append("</a></li>\n");
+                    }
+                }
+            }
+            html.append("</ul>\n</body></html>\n");
+            byte data[] = html.toString().getBytes(StandardCharsets.UTF_8);
+            startResponse(200, "OK", "Content-Type: text/html; charset=utf-8\r\nCache-Control: no-cache\r\nContent-Length: "
+                    + data.length + "\r\n", null, 0);
+            if(!headOnly) {
+                ByteBuffer withBody = ByteBuffer.allocate(head.remaining() + data.length);
+                withBody.put(head).put(data).flip();
+                head = withBody;
+            }
+            write();
+        }
+
+        private void respond(int status, String reason, String extra) throws IOException {
+            startResponse(status, reason, (extra == null ? "" : extra) + (status == 304 ? "" : "Content-Length: 0\r\n"), null, 0);
+            write();
+        }
+
+        private void startResponse(int status, String reason, String extra, FileChannel fileChannel, long length) throws IOException {
+            String text = "HTTP/1.1 " + status + " " + reason + "\r\n"
+                    + "Date: " + httpDate.format(new Date()) + "\r\n"
+                    + "Server: OverviewerGui\r\n"
+                    + (keepAlive ? "" : "Connection: close\r\n")
+                    + extra + "\r\n";
+            head = ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+            body = fileChannel;
+            bodyPosition = 0;
+            bodyEnd = length;
+        }
+
+        /**
+         * Write as much of the response as the socket takes, and wait for it to take more if needed.
+         */
+        private void write() throws IOException {
+            if(head.hasRemaining()) {
+                if(channel.write(head) > 0) {
+                    lastActive = System.currentTimeMillis();
+                }
+                if(head.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            while(body != null && bodyPosition < bodyEnd) {
+                long written = body.transferTo(bodyPosition, bodyEnd - bodyPosition, channel);
+                if(written == 0) {
+                    if(bodyPosition >= body.size()) {
+                        // The file got shorter while it was sent, a tile rewritten by a render. The length
+                        // promised can no longer be sent, so end the response by closing the connection.
+                        close();
+                        return;
+                    }
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                lastActive = System.currentTimeMillis();
+                bodyPosition += written;
+            }
+            if(body != null) {
+                body.close();
+                body = null;
+            }
+            if(!keepAlive) {
+                close();
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if(request.position() > 0) {
+                handleNext();
+            }
+        }
+
+        private void close() {
+            try {
+                if(body != null) {
+                    body.close();
+                    body = null;
+                }
+                channel.close();
+            }
+            catch (IOException e) {
+                e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first byte of the pattern in the first length bytes of data, or -1
+     */
+    private static int indexOf(byte data[], int length, byte pattern[]) {
+        for(int i=0;i<=length - pattern.length;i++) {
+            int j = 0;
+            while(j < pattern.length && data[i + j] == pattern[j]) {
+                j++;
+            }
+            if(j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,171 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only, memory-mapped view of a log file that may still be growing. Only the start of every
+ * {@value #INDEX_INTERVAL}th line is kept in memory, so the index of a log with millions of lines stays
+ * small and any line can be found by scanning at most that many lines of the mapped file.
+ *
+ * @author Mark Bernard
+ */
+public class MappedLog implements LogSource {
+    /** Lines between two entries of the sparse line index. */
+    public static final int INDEX_INTERVAL = 256;
+    private static final int SEGMENT_SIZE = 1 << 28;
+    /** Bytes indexed per call to {@link #refresh()} so readers are not locked out for long. */
+    private static final int INDEX_STEP = 1 << 24;
+
+    private FileChannel channel;
+    private List<MappedByteBuffer> segments;
+    private long mappedSize;
+    private long checkpoints[];
+    private int checkpointCount;
+    private int completeLines;
+    private long indexedBytes;
+    private long lastLineStart;
+    private byte lineBuffer[];
+
+    /**
+     * Open the log. Call {@link #refresh()} to index it.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public MappedLog(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        segments = new ArrayList<>();
+        checkpoints = new long[64];
+        checkpoints[0] = 0;
+        checkpointCount = 1;
+        lineBuffer = new byte[MAX_LINE_BYTES];
+    }
+
+    /**
+     * Map and index bytes appended since the last call, up to a fixed amount per call.
+     */
+    @Override
+    public synchronized boolean refresh() throws IOException {
+        long size = channel.size();
+        if(size > mappedSize) {
+            map(size);
+        }
+        long end = Math.min(mappedSize, indexedBytes + INDEX_STEP);
+        long offset = indexedBytes;
+        while(offset < end) {
+            MappedByteBuffer segment = segments.get((int)(offset / SEGMENT_SIZE));
+            long segmentStart = offset - offset % SEGMENT_SIZE;
+            int from = (int)(offset - segmentStart);
+            int to = (int)Math.min(segment.limit(), end - segmentStart);
+            for(int i=from;i<to;i++) {
+                if(segment.get(i) == '\n') {
+                    completeLines++;
+                    lastLineStart = segmentStart + i + 1;
+                    if(completeLines % INDEX_INTERVAL == 0) {
+                        addCheckpoint(lastLineStart);
+                    }
+                }
+            }
+            offset = segmentStart + to;
+        }
+        indexedBytes = end;
+        return indexedBytes == mappedSize;
+    }
+
+    @Override
+    public synchronized int getLineCount() {
+        return completeLines + (indexedBytes > lastLineStart ? 1 : 0);
+    }
+
+    @Override
+    public synchronized long getIndexedBytes() {
+        return indexedBytes;
+    }
+
+    @Override
+    public synchronized void getLines(int first, int count, List<String> lines) {
+        int lineCount = getLineCount();
+        if(first < 0 || first >= lineCount) {
+            return;
+        }
+        long offset = lineStart(first);
+        int last = Math.min(lineCount, first + count);
+        for(int line=first;line<last;line++) {
+            int length = 0;
+            while(offset < indexedBytes) {
+                byte b = byteAt(offset++);
+                if(b == '\n') {
+                    break;
+                }
+                if(length < lineBuffer.length) {
+                    lineBuffer[length++] = b;
+                }
+            }
+            if(length > 0 && lineBuffer[length - 1] == '\r') {
+                length--;
+            }
+            lines.add(new String(lineBuffer, 0, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Find the byte offset where a line starts by scanning forward from the nearest checkpoint.
+     */
+    private long lineStart(int line) {
+        int checkpoint = Math.min(line / INDEX_INTERVAL, checkpointCount - 1);
+        long offset = checkpoints[checkpoint];
+        int remaining = line - checkpoint * INDEX_INTERVAL;
+        while(remaining > 0 && offset < indexedBytes) {
+            if(byteAt(offset++) == '\n') {
+                remaining--;
+            }
+        }
+        return offset;
+    }
+
+    private void addCheckpoint(long offset) {
+        if(checkpointCount == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+        }
+        checkpoints[checkpointCount++] = offset;
+    }
+
+    private byte byteAt(long offset) {
+        return segments.get((int)(offset / SEGMENT_SIZE)).get((int)(offset % SEGMENT_SIZE));
+    }
+
+    /**
+     * Map the file up to the size, replacing the last segment if it was only partly mapped.
+     */
+    private void map(long size) throws IOException {
+        if(!segments.isEmpty() && mappedSize % SEGMENT_SIZE != 0) {
+            segments.remove(segments.size() - 1);
+        }
+        long start = (long)segments.size() * SEGMENT_SIZE;
+        while(start < size) {
+            long length = Math.min(SEGMENT_SIZE, size - start);
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+            start += length;
+        }
+        mappedSize = size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segments.clear();
+        mappedSize = 0;
+        checkpointCount = 1;
+        completeLines = 0;
+        indexedBytes = 0;
+        lastLineStart = 0;
+        channel.close();
+    }
+}
@@ -0,0 +1,378 @@
+package overviewergui;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollBar;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.UIManager;
+
+/**
+ * Viewer for complete run logs of any size. A plain log is memory-mapped through {@link MappedLog} and an
+ * archived one read frame by frame through {@link LogArchive}; only the lines that fit in the window are
+ * read and painted, so scrolling and jumping cost the same at the start and at the end of a multi-gigabyte
+ * log. The scroll bar counts lines, not pixels.
+ *
+ * @author Mark Bernard
+ */
+public class MappedLogViewer extends JPanel {
+    private static final long serialVersionUID = -5470126318856215392L;
+    /** How often a growing log is checked for new lines. */
+    private static final int REFRESH_MILLIS = 500;
+
+    /** Lines read at a time when searching. */
+    private static final int FIND_BATCH = 4096;
+
+    private LogSource log;
+    private LineView lineView;
+    private JScrollBar scrollBar;
+    private JLabel lineCountLabel;
+    private JCheckBox followEnd;
+    private Timer refreshTimer;
+    private Thread indexer;
+    private Thread finder;
+    private JLabel findStatus;
+    private int foundLine = -1;
+    private int pendingLine = -1;
+    private volatile boolean closed;
+
+    /**
+     * Open a plain or archived log file.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public MappedLogViewer(File file) throws IOException {
+        log = LogArchive.isArchive(file) ? new LogArchive(file) : new MappedLog(file);
+        setLayout(new BorderLayout());
+
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        add(topPanel, BorderLayout.NORTH);
+        final JTextField goToField = new JTextField(8);
+        ActionListener goTo = new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                try {
+                    followEnd.setSelected(false);
+                    scrollToLine(Integer.parseInt(goToField.getText().trim()) - 1);
+                }
+                catch (NumberFormatException ex) {
+                    ex.getMessage();
+                }
+            }
+        };
+        goToField.addActionListener(goTo);
+        topPanel.add(new JLabel("Go to line"));
+        topPanel.add(goToField);
+        JButton goButton = new JButton("Go");
+        goButton.addActionListener(goTo);
+        topPanel.add(goButton);
+        final JTextField findField = new JTextField(16);
+        ActionListener find = new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                followEnd.setSelected(false);
+                find(findField.getText(), foundLine >= 0 ? foundLine + 1 : scrollBar.getValue());
+            }
+        };
+        findField.addActionListener(find);
+        topPanel.add(new JLabel("Find"));
+        topPanel.add(findField);
+        JButton findButton = new JButton("Next");
+        findButton.addActionListener(find);
+        topPanel.add(findButton);
+        findStatus = new JLabel();
+        topPanel.add(findStatus);
+        followEnd = new JCheckBox("Follow end");
+        topPanel.add(followEnd);
+        lineCountLabel = new JLabel();
+        topPanel.add(lineCountLabel);
+
+        lineView = new LineView();
+        add(lineView, BorderLayout.CENTER);
+        scrollBar = new JScrollBar(JScrollBar.VERTICAL, 0, 1, 0, 1);
+        scrollBar.addAdjustmentListener(new AdjustmentListener() {
+
+            @Override
+            public void adjustmentValueChanged(AdjustmentEvent e) {
+                lineView.repaint();
+            }
+        });
+        add(scrollBar, BorderLayout.EAST);
+        lineView.addMouseWheelListener(new MouseWheelListener() {
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                followEnd.setSelected(false);
+                scrollToLine(scrollBar.getValue() + e.getUnitsToScroll());
+            }
+        });
+
+        indexer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while(!closed) {
+                        if(log.refresh()) {
+                            Thread.sleep(REFRESH_MILLIS);
+                        }
+                    }
+                }
+                catch (IOException | InterruptedException e) {
+                    e.getMessage();
+                }
+            }
+        }, "Log indexer - " + file.getName());
+        indexer.setDaemon(true);
+        indexer.start();
+        refreshTimer = new Timer(REFRESH_MILLIS / 2, new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                updateScrollBar();
+            }
+        });
+        refreshTimer.start();
+    }
+
+    /**
+     * Open a log file in its own window.
+     *
+     * @param parent Component the window is shown over.
+     * @param file
+     * @param title
+     * @return the viewer, or null if the log could not be opened
+     */
+    public static MappedLogViewer showWindow(Component parent, File file, String title) {
+        final MappedLogViewer viewer;
+        try {
+            viewer = new MappedLogViewer(file);
+        }
+        catch (IOException e) {
+            JOptionPane.showMessageDialog(parent, "Unable to open log: " + e.getMessage(), title, JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+        JFrame frame = new JFrame(title);
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.add(viewer);
+        frame.addWindowListener(new WindowAdapter() {
+
+            @Override
+            public void windowClosed(WindowEvent e) {
+                viewer.close();
+            }
+        });
+        frame.setSize(900, 600);
+        frame.setLocationRelativeTo(parent);
+        frame.setVisible(true);
+        return viewer;
+    }
+
+    /**
+     * Scroll so the line is at the top of the view.
+     *
+     * @param line Zero based line index.
+     */
+    public void scrollToLine(int line) {
+        updateScrollBar();
+        scrollBar.setValue(Math.max(0, Math.min(line, scrollBar.getMaximum() - scrollBar.getVisibleAmount())));
+    }
+
+    /**
+     * Highlight a line and scroll to it, as soon as the part of a plain log holding it has been indexed.
+     *
+     * @param line Zero based line index.
+     */
+    public void showLine(int line) {
+        followEnd.setSelected(false);
+        foundLine = line;
+        pendingLine = line;
+        lineView.repaint();
+    }
+
+    /**
+     * @return true until the viewer is closed
+     */
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Search for the next line holding the text, ignoring case, on a background thread and scroll to it.
+     *
+     * @param text
+     * @param fromLine Zero based index of the first line searched.
+     */
+    public void find(final String text, final int fromLine) {
+        if(finder != null) {
+            finder.interrupt();
+        }
+        if(text.isEmpty()) {
+            return;
+        }
+        findStatus.setText("Searching...");
+        finder = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                final int line = findLine(text, fromLine);
+                if(line == -2) {
+                    return;
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if(line < 0) {
+                            findStatus.setText("Not found");
+                            foundLine = -1;
+                            lineView.repaint();
+                            return;
+                        }
+                        findStatus.setText("Line " + (line + 1));
+                        foundLine = line;
+                        scrollToLine(line - Math.max(1, lineView.getVisibleLineCount()) / 3);
+                        lineView.repaint();
+                    }
+                });
+            }
+        }, "Log search");
+        finder.setDaemon(true);
+        finder.start();
+    }
+
+    /**
+     * @return the index of the first line from the given line on that holds the text, -1 if there is none,
+     * -2 if the search was stopped
+     */
+    private int findLine(String text, int fromLine) {
+        List<String> lines = new ArrayList<>(FIND_BATCH);
+        int lineCount = log.getLineCount();
+        for(int first=Math.max(0, fromLine);first<lineCount;first+=FIND_BATCH) {
+            if(Thread.currentThread().isInterrupted() || closed) {
+                return -2;
+            }
+            lines.clear();
+            log.getLines(first, FIND_BATCH, lines);
+            for(int i=0;i<lines.size();i++) {
+                String line = lines.get(i);
+                for(int start=0;start<=line.length() - text.length();start++) {
+                    if(line.regionMatches(true, start, text, 0, text.length())) {
+                        return first + i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stop indexing and release the file.
+     */
+    public void close() {
+        closed = true;
+        refreshTimer.stop();
+        indexer.interrupt();
+        if(finder != null) {
+            finder.interrupt();
+        }
+        try {
+            log.close();
+        }
+        catch (IOException e) {
+            e.getMessage();
+        }
+    }
+
+    private void updateScrollBar() {
+        int lineCount = log.getLineCount();
+        int visible = Math.max(1, lineView.getVisibleLineCount());
+        int value = followEnd.isSelected() ? Math.max(0, lineCount - visible) : scrollBar.getValue();
+        scrollBar.setValues(value, visible, 0, Math.max(lineCount, visible));
+        scrollBar.setBlockIncrement(visible);
+        lineCountLabel.setText(String.format("%,d lines, %s", lineCount, WorldMetadata.formatBytes(log.getIndexedBytes())));
+        if(pendingLine >= 0 && pendingLine < lineCount) {
+            int line = pendingLine;
+            pendingLine = -1;
+            scrollToLine(line - visible / 3);
+        }
+        lineView.repaint();
+    }
+
+    /**
+     * Paints the lines that fit in the view starting at the scroll bar value.
+     */
+    private class LineView extends JComponent {
+        private static final long serialVersionUID = 6305520468730287734L;
+        private List<String> lines = new ArrayList<>();
+
+        public LineView() {
+            setFont(new Font(Font.MONOSPACED, Font.PLAIN, UIManager.getFont("TextArea.font") == null ? 12 : UIManager.getFont("TextArea.font").getSize()));
+            setOpaque(true);
+            Color background = UIManager.getColor("TextArea.background");
+            Color foreground = UIManager.getColor("TextArea.foreground");
+            setBackground(background == null ? Color.WHITE : background);
+            setForeground(foreground == null ? Color.BLACK : foreground);
+            setPreferredSize(new Dimension(600, 400));
+        }
+
+        public int getVisibleLineCount() {
+            FontMetrics metrics = getFontMetrics(getFont());
+            return getHeight() / metrics.getHeight();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.setColor(getForeground());
+            g.setFont(getFont());
+            FontMetrics metrics = g.getFontMetrics();
+            int lineHeight = metrics.getHeight();
+            lines.clear();
+            log.getLines(scrollBar.getValue(), getHeight() / lineHeight + 1, lines);
+            int y = metrics.getAscent();
+            int line = scrollBar.getValue();
+            for(String text:lines) {
+                if(line++ == foundLine) {
+                    Color selection = UIManager.getColor("TextArea.selectionBackground");
+                    g.setColor(selection == null ? Color.YELLOW : selection);
+                    g.fillRect(0, y - metrics.getAscent(), getWidth(), lineHeight);
+                    g.setColor(getForeground());
+                }
+                g.drawString(text, 2, y);
+                y += lineHeight;
+            }
+        }
+    }
+}
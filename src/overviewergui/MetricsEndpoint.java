@@ -0,0 +1,176 @@
+package overviewergui;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the {@link RenderMetrics} at {@code http://localhost:port/metrics} in the Prometheus text format.
+ * Only the loopback address is bound, so the metrics are read by a Prometheus server or agent on the
+ * render host. The text is built when it is asked for; nothing is done between scrapes.
+ *
+ * @author Mark Bernard
+ */
+public class MetricsEndpoint implements HttpHandler {
+    /** Path the metrics are served on. */
+    public static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private RenderMetrics metrics;
+    private HttpServer server;
+
+    /**
+     * @param metrics The metrics to serve.
+     */
+    public MetricsEndpoint(RenderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Start serving.
+     *
+     * @param port Port to listen on, 0 for any free port.
+     * @throws IOException if the port could not be bound
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PATH, this);
+        server.start();
+    }
+
+    /**
+     * @return the port listened on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop serving.
+     */
+    public void close() {
+        if(server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if(!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte body[] = format().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return the metrics in the Prometheus text format
+     */
+    public String format() {
+        StringBuilder text = new StringBuilder(4096);
+        header(text, "overviewergui_runs", "gauge", "Runs that are queued, running or paused.");
+        sample(text, "overviewergui_runs", "state", "queued", metrics.getRunsQueued());
+        sample(text, "overviewergui_runs", "state", "running", metrics.getRunsRunning());
+        sample(text, "overviewergui_runs", "state", "paused", metrics.getRunsPaused());
+        header(text, "overviewergui_runs_finished_total", "counter", "Runs that have ended, by how they ended.");
+        sample(text, "overviewergui_runs_finished_total", "state", "completed", metrics.getRunsCompleted());
+        sample(text, "overviewergui_runs_finished_total", "state", "failed", metrics.getRunsFailed());
+        sample(text, "overviewergui_runs_finished_total", "state", "stopped", metrics.getRunsStopped());
+        sample(text, "overviewergui_runs_finished_total", "state", "skipped", metrics.getRunsSkipped());
+        header(text, "overviewergui_log_bytes_total", "counter", "Bytes of Overviewer output read.");
+        sample(text, "overviewergui_log_bytes_total", null, null, metrics.getLogBytesIngested());
+        header(text, "overviewergui_frame_drain_seconds", "summary", "Time taken to move a frame of output into the views.");
+        sample(text, "overviewergui_frame_drain_seconds_count", null, null, metrics.getFramesDrained());
+        sample(text, "overviewergui_frame_drain_seconds_sum", null, null, metrics.getFrameDrainNanos() / 1e9);
+        header(text, "overviewergui_frame_drain_max_seconds", "gauge", "Longest time taken to move a frame of output into the views.");
+        sample(text, "overviewergui_frame_drain_max_seconds", null, null, metrics.getFrameDrainMaxMillis() / 1e3);
+        header(text, "overviewergui_child_cpu_percent", "gauge", "CPU use of all Overviewer processes in percent of one core.");
+        sample(text, "overviewergui_child_cpu_percent", null, null, metrics.getChildCpuPercent());
+        header(text, "overviewergui_child_rss_bytes", "gauge", "Resident memory of all Overviewer processes.");
+        sample(text, "overviewergui_child_rss_bytes", null, null, metrics.getChildRssBytes());
+
+        List<RunMetrics> runs = metrics.getRuns();
+        header(text, "overviewergui_world_tiles_per_second", "gauge", "Tiles rendered per second, smoothed over ten seconds.");
+        for(RunMetrics run:runs) {
+            sample(text, "overviewergui_world_tiles_per_second", "world", run.getWorld(), run.getTilesPerSecond());
+        }
+        header(text, "overviewergui_world_tiles_done", "gauge", "Tiles rendered by the current run of the world.");
+        for(RunMetrics run:runs) {
+            sample(text, "overviewergui_world_tiles_done", "world", run.getWorld(), run.getTilesDone());
+        }
+        header(text, "overviewergui_world_tiles_total", "gauge", "Tiles the current run of the world renders, 0 if not known yet.");
+        for(RunMetrics run:runs) {
+            sample(text, "overviewergui_world_tiles_total", "world", run.getWorld(), run.getTilesTotal());
+        }
+        header(text, "overviewergui_world_elapsed_seconds", "gauge", "Time since Overviewer was started for the world.");
+        for(RunMetrics run:runs) {
+            sample(text, "overviewergui_world_elapsed_seconds", "world", run.getWorld(), run.getElapsedSeconds());
+        }
+        header(text, "overviewergui_world_cpu_percent", "gauge", "CPU use of the Overviewer processes of the world in percent of one core.");
+        for(RunMetrics run:runs) {
+            sample(text, "overviewergui_world_cpu_percent", "world", run.getWorld(), run.getCpuPercent());
+        }
+        header(text, "overviewergui_world_rss_bytes", "gauge", "Resident memory of the Overviewer processes of the world.");
+        for(RunMetrics run:runs) {
+            sample(text, "overviewergui_world_rss_bytes", "world", run.getWorld(), run.getRssBytes());
+        }
+        return text.toString();
+    }
+
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String label, String labelValue, double value) {
+        text.append(name);
+        if(label != null) {
+            text.append('{').append(label).append("=\"");
+            for(int i=0;i<labelValue.length();i++) {
+                char c = labelValue.charAt(i);
+                if(c == '\\' || c == '"') {
+                    text.append('\\').append(c);
+                }
+                else if(c == '\n') {
+                    text.append("\\n");
+                }
+                else {
+                    text.append(c);
+                }
+            }
+            text.append("\"}");
+        }
+        text.append(' ');
+        if(value == (long)value) {
+            text.append((long)value);
+        }
+        else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+}
@@ -0,0 +1,168 @@
+package overviewergui;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads selected values out of an uncompressed NBT stream, the format Minecraft uses for level.dat. Only 
+ * the requested values are kept, everything else is skipped, so no tree is built for the whole file.
+ * 
+ * @author Mark Bernard
+ */
+public class NbtReader {
+    private static final int TAG_END = 0;
+    private static final int TAG_BYTE = 1;
+    private static final int TAG_SHORT = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_FLOAT = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_BYTE_ARRAY = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_LIST = 9;
+    private static final int TAG_COMPOUND = 10;
+    private static final int TAG_INT_ARRAY = 11;
+    private static final int TAG_LONG_ARRAY = 12;
+    
+    private DataInputStream in;
+    private Map<String, Object> values;
+    
+    private NbtReader(InputStream in) {
+        this.in = new DataInputStream(in);
+        values = new HashMap<>();
+    }
+    
+    /**
+     * Read the values at the provided paths. Paths are the names of the nested compound tags below the root 
+     * joined with dots, for example <code>Data.Version.Name</code>. Numbers are returned as their boxed 
+     * Java types and strings as {@link String}; other tag types are not returned.
+     * 
+     * @param in Uncompressed NBT data.
+     * @param paths Paths of the values to read.
+     * @return the values found, keyed by path
+     * @throws IOException
+     */
+    public static Map<String, Object> readValues(InputStream in, Set<String> paths) throws IOException {
+        Wanted root = new Wanted();
+        for(String path:paths) {
+            Wanted wanted = root;
+            for(String name:path.split("\\.")) {
+                wanted = wanted.getChild(name);
+            }
+            wanted.path = path;
+        }
+        NbtReader reader = new NbtReader(in);
+        int type = reader.in.readUnsignedByte();
+        if(type != TAG_COMPOUND) {
+            throw new IOException("NBT data does not start with a compound tag");
+        }
+        reader.in.skipBytes(reader.in.readUnsignedShort());
+        reader.readCompound(root);
+        return reader.values;
+    }
+    
+    /**
+     * Read the tags of a compound. Tags that are not wanted and do not lead to a wanted value are skipped 
+     * whole, compounds and lists included, without reading the names inside them.
+     */
+    private void readCompound(Wanted compound) throws IOException {
+        int type;
+        while((type = in.readUnsignedByte()) != TAG_END) {
+            Wanted wanted = compound.children.get(in.readUTF());
+            if(wanted == null) {
+                skip(type);
+            }
+            else if(type == TAG_COMPOUND && !wanted.children.isEmpty()) {
+                readCompound(wanted);
+            }
+            else if(wanted.path != null) {
+                Object value = readValue(type);
+                if(value != null) {
+                    values.put(wanted.path, value);
+                }
+            }
+            else {
+                skip(type);
+            }
+        }
+    }
+    
+    private Object readValue(int type) throws IOException {
+        switch(type) {
+            case TAG_BYTE: return in.readByte();
+            case TAG_SHORT: return in.readShort();
+            case TAG_INT: return in.readInt();
+            case TAG_LONG: return in.readLong();
+            case TAG_FLOAT: return in.readFloat();
+            case TAG_DOUBLE: return in.readDouble();
+            case TAG_STRING: return in.readUTF();
+            default:
+                skip(type);
+                return null;
+        }
+    }
+    
+    private void skip(int type) throws IOException {
+        switch(type) {
+            case TAG_BYTE: skipFully(1); break;
+            case TAG_SHORT: skipFully(2); break;
+            case TAG_INT: 
+            case TAG_FLOAT: skipFully(4); break;
+            case TAG_LONG: 
+            case TAG_DOUBLE: skipFully(8); break;
+            case TAG_BYTE_ARRAY: skipFully(in.readInt()); break;
+            case TAG_STRING: skipFully(in.readUnsignedShort()); break;
+            case TAG_INT_ARRAY: skipFully(in.readInt() * 4L); break;
+            case TAG_LONG_ARRAY: skipFully(in.readInt() * 8L); break;
+            case TAG_LIST:
+                int elementType = in.readUnsignedByte();
+                int count = in.readInt();
+                for(int i=0;i<count;i++) {
+                    skip(elementType);
+                }
+                break;
+            case TAG_COMPOUND:
+                int childType;
+                while((childType = in.readUnsignedByte()) != TAG_END) {
+                    skipFully(in.readUnsignedShort());
+                    skip(childType);
+                }
+                break;
+            default:
+                throw new IOException("Unknown NBT tag type: " + type);
+        }
+    }
+    
+    private void skipFully(long count) throws IOException {
+        while(count > 0) {
+            int skipped = in.skipBytes((int)Math.min(count, Integer.MAX_VALUE));
+            if(skipped <= 0) {
+                in.readByte();
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+    
+    /**
+     * Names of the tags wanted inside a compound, built from the requested paths.
+     */
+    private static class Wanted {
+        private Map<String, Wanted> children = new HashMap<>();
+        /** Path the value is returned under, or null if only tags inside it are wanted. */
+        private String path;
+        
+        public Wanted getChild(String name) {
+            Wanted child = children.get(name);
+            if(child == null) {
+                child = new Wanted();
+                children.put(name, child);
+            }
+            return child;
+        }
+    }
+}
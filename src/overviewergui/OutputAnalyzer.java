@@ -0,0 +1,675 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Walks the output folder of a map in parallel and adds up the size of every render by zoom level. It can
+ * also find tiles that no saved chunk of the world is drawn on any more, left behind when part of a world
+ * was trimmed or the world was reset, and list or delete them.
+ * <p>
+ * A tile of the highest zoom level is orphaned when none of the chunks that could reach it, in Overviewer's
+ * default projection with north to the upper left, is saved in a region file. The check allows for the full
+ * height of a chunk, so a tile is only orphaned when it certainly shows nothing. A lower zoom level tile is
+ * orphaned when its folder of higher zoom level tiles has no tile left that is not.
+ * <p>
+ * How many folders are read at a time is adjusted while walking: more while that makes the walk faster, as
+ * on an SSD, and fewer once it does not, as on a spinning disk where parallel reads only add seeks.
+ *
+ * @author Mark Bernard
+ */
+public class OutputAnalyzer {
+    /** Highest zoom level kept apart in the sizes, deeper levels are added to it. */
+    public static final int MAX_ZOOM = 24;
+    /** Orphaned tiles kept in the report, the full list is written to a file. */
+    private static final int ORPHANS_SHOWN = 1000;
+    /** How often the number of folders read at a time is adjusted. */
+    private static final long ADJUST_MILLIS = 1000;
+    private static final Pattern REGION_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+    /** Chunk rows a chunk may reach up over, more than Overviewer draws. */
+    private static final int REACH_UP = 8;
+    /** Chunk rows a chunk may reach down over, enough for a 384 block high world. */
+    private static final int REACH_DOWN = 52;
+    private static final Set<String> OVERWORLD_MODES = new HashSet<>(Arrays.asList("normal", "lighting", "smooth_lighting",
+            "night", "smooth_night", "cave"));
+    private static final Set<String> NETHER_MODES = new HashSet<>(Arrays.asList("nether", "nether_lighting", "nether_smooth_lighting"));
+
+    private File outputFolder;
+    private File saveFolder;
+    private volatile boolean cancelled;
+
+    /**
+     * @param outputFolder The map output folder.
+     * @param saveFolder The Minecraft save folder with the worlds the maps were rendered from.
+     */
+    public OutputAnalyzer(File outputFolder, File saveFolder) {
+        this.outputFolder = outputFolder;
+        this.saveFolder = saveFolder;
+    }
+
+    /**
+     * Receives the report while it is being filled in.
+     */
+    public interface Listener {
+        /**
+         * Called about once a second from the thread of the analysis, and once at the end.
+         *
+         * @param report
+         */
+        void progress(Report report);
+    }
+
+    /**
+     * Stop an analysis in progress. Tiles already deleted stay deleted.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Walk the output folder of a map.
+     *
+     * @param map Name of the map folder in the output folder.
+     * @param findOrphans True to look for orphaned tiles.
+     * @param delete True to delete the orphaned tiles, false to only list them.
+     * @param orphanList File the full list of orphaned tiles is written to, or null.
+     * @param listener Receives the report while it is filled in, may be null.
+     * @return the report
+     * @throws IOException if the map folder cannot be read, or a world needed to find orphans is missing
+     */
+    public Report analyze(String map, boolean findOrphans, boolean delete, File orphanList, final Listener listener) throws IOException {
+        cancelled = false;
+        File mapFolder = new File(outputFolder, map);
+        if(!mapFolder.isDirectory()) {
+            throw new IOException("No output folder for " + map + ": " + mapFolder.getAbsolutePath());
+        }
+        final Report report = new Report(map, delete);
+        int processors = Runtime.getRuntime().availableProcessors();
+        final Throttle throttle = new Throttle(Math.max(2, processors * 2), report);
+        ForkJoinPool pool = new ForkJoinPool(throttle.getMaximum());
+        PrintWriter orphanWriter = null;
+        Thread monitor = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while(!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(ADJUST_MILLIS);
+                        throttle.adjust();
+                        if(listener != null) {
+                            listener.progress(report);
+                        }
+                    }
+                }
+                catch (InterruptedException e) {
+                    e.getMessage();
+                }
+            }
+        }, "Output analyzer monitor");
+        monitor.setDaemon(true);
+        try {
+            if(findOrphans && orphanList != null) {
+                orphanWriter = new PrintWriter(Files.newBufferedWriter(orphanList.toPath(), StandardCharsets.UTF_8));
+                report.orphanWriter = orphanWriter;
+            }
+            monitor.start();
+            for(String render:TilePyramid.listRenders(mapFolder)) {
+                if(cancelled) {
+                    break;
+                }
+                File renderFolder = new File(mapFolder, render);
+                TilePyramid pyramid = TilePyramid.open(renderFolder);
+                ChunkIndex chunks = null;
+                if(findOrphans) {
+                    chunks = ChunkIndex.load(getRegionFolder(map, render));
+                }
+                RenderSize size = report.addRender(render);
+                pool.invoke(new FolderScan(report, size, throttle, pyramid, chunks, delete, renderFolder, 0, 0, 0));
+            }
+            report.cancelled = cancelled;
+        }
+        finally {
+            monitor.interrupt();
+            pool.shutdown();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch (InterruptedException e) {
+                e.getMessage();
+            }
+            if(orphanWriter != null) {
+                orphanWriter.close();
+            }
+            report.done = true;
+        }
+        if(listener != null) {
+            listener.progress(report);
+        }
+        return report;
+    }
+
+    /**
+     * Find the region folder of the dimension a render shows. The dimension follows from the render mode, as
+     * in {@link OverviewerConfig#addWorld(String, File, List, RenderPlan.CheckMode)}: a map run names its
+     * renders after their render mode and a batch run after their world and render mode, see
+     * {@link OverviewerConfig#getRenderName(String, String)}. Renders under any other name were not made by
+     * this program and may show any dimension, so no orphans are looked for in them.
+     */
+    private File getRegionFolder(String map, String render) throws IOException {
+        String world = map;
+        String renderMode = render;
+        if(OverviewerRun.BATCH_NAME.equals(map)) {
+            world = null;
+            String names[] = saveFolder.list();
+            if(names != null) {
+                for(String name:names) {
+                    String prefix = OverviewerConfig.getRenderName(name, "");
+                    if(render.startsWith(prefix) && getDimension(render.substring(prefix.length())) != null) {
+                        if(world != null) {
+                            throw new IOException("Render " + render + " could belong to world " + world + " or " + name
+                                    + ", orphaned tiles are only looked for when the world is certain");
+                        }
+                        world = name;
+                        renderMode = render.substring(prefix.length());
+                    }
+                }
+            }
+            if(world == null) {
+                throw new IOException("No world in " + saveFolder.getAbsolutePath() + " and known render mode make up render " + render
+                        + ", orphaned tiles are only looked for when the world and dimension are known");
+            }
+        }
+        String dimension = getDimension(renderMode);
+        if(dimension == null) {
+            throw new IOException("Render " + render + " has an unknown render mode, orphaned tiles are only looked for"
+                    + " when the dimension it shows is known");
+        }
+        File worldFolder = new File(saveFolder, world);
+        if(!new File(worldFolder, "level.dat").isFile()) {
+            throw new IOException("World " + world + " not found in " + saveFolder.getAbsolutePath()
+                    + ", orphaned tiles are only looked for when the world is there");
+        }
+        return new File(worldFolder, dimension);
+    }
+
+    /**
+     * @param renderMode An Overviewer render mode, as in a configuration file or on the command line.
+     * @return the region folder below the world folder of the dimension the mode is rendered from, or null
+     * if the mode is not one of Overviewer's
+     */
+    private static String getDimension(String renderMode) {
+        String mode = renderMode.replace('-', '_');
+        if(OVERWORLD_MODES.contains(mode)) {
+            return "region";
+        }
+        if(NETHER_MODES.contains(mode)) {
+            return "DIM-1/region";
+        }
+        return null;
+    }
+
+    /**
+     * The chunks saved in the region files of one dimension, one bit per chunk.
+     */
+    private static class ChunkIndex {
+        private Map<Long, BitSet> regions = new HashMap<>();
+
+        private static ChunkIndex load(File regionFolder) throws IOException {
+            ChunkIndex index = new ChunkIndex();
+            File files[] = regionFolder.listFiles();
+            if(files == null) {
+                return index;
+            }
+            for(File file:files) {
+                Matcher matcher = REGION_NAME.matcher(file.getName());
+                if(!matcher.matches()) {
+                    continue;
+                }
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    long length = Math.min(channel.size(), 4096);
+                    if(length == 0) {
+                        continue;
+                    }
+                    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                    BitSet chunks = new BitSet(1024);
+                    for(int i=0;i + 3 < length;i+=4) {
+                        if(header.getInt(i) != 0) {
+                            chunks.set(i / 4);
+                        }
+                    }
+                    if(!chunks.isEmpty()) {
+                        index.regions.put(key(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))), chunks);
+                    }
+                }
+            }
+            return index;
+        }
+
+        private static long key(int regionX, int regionZ) {
+            return ((long)regionX << 32) | (regionZ & 0xffffffffL);
+        }
+
+        private boolean contains(int chunkX, int chunkZ) {
+            BitSet chunks = regions.get(key(chunkX >> 5, chunkZ >> 5));
+            return chunks != null && chunks.get((chunkZ & 31) * 32 + (chunkX & 31));
+        }
+
+        /**
+         * Overviewer draws chunk x, z at chunk column x + z and chunk row z - x. A tile of the highest zoom
+         * level starts at an even column and a row divisible by four and spans two columns and four rows.
+         * Columns overlap by one, and a chunk reaches down over the rows below it.
+         *
+         * @return true if a saved chunk may be drawn on the tile
+         */
+        private boolean isDrawn(int maxZoom, int column, int row) {
+            long tileColumn = column * 2L - (1L << maxZoom);
+            long tileRow = row * 4L - (2L << maxZoom);
+            for(long chunkColumn=tileColumn;chunkColumn<=tileColumn + 2;chunkColumn++) {
+                for(long chunkRow=tileRow - REACH_DOWN;chunkRow<=tileRow + 3 + REACH_UP;chunkRow++) {
+                    if(((chunkColumn + chunkRow) & 1) != 0) {
+                        continue;
+                    }
+                    if(contains((int)((chunkColumn - chunkRow) / 2), (int)((chunkColumn + chunkRow) / 2))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reads one tile folder and forks a task for each of its sub folders.
+     */
+    private class FolderScan extends RecursiveTask<Boolean> {
+        private static final long serialVersionUID = 5214897104722368129L;
+        private Report report;
+        private RenderSize size;
+        private Throttle throttle;
+        private TilePyramid pyramid;
+        private ChunkIndex chunks;
+        private boolean delete;
+        private File folder;
+        private int zoom;
+        private int column;
+        private int row;
+
+        /**
+         * @param zoom Zoom level of the tile the folder belongs to, the tiles in it are one level higher.
+         */
+        private FolderScan(Report report, RenderSize size, Throttle throttle, TilePyramid pyramid, ChunkIndex chunks,
+                boolean delete, File folder, int zoom, int column, int row) {
+            this.report = report;
+            this.size = size;
+            this.throttle = throttle;
+            this.pyramid = pyramid;
+            this.chunks = chunks;
+            this.delete = delete;
+            this.folder = folder;
+            this.zoom = zoom;
+            this.column = column;
+            this.row = row;
+        }
+
+        /**
+         * @return true if a tile under the folder is still drawn on
+         */
+        @Override
+        protected Boolean compute() {
+            if(cancelled) {
+                return true;
+            }
+            File files[];
+            throttle.acquire();
+            try {
+                files = folder.listFiles();
+            }
+            finally {
+                throttle.release();
+            }
+            if(files == null) {
+                return true;
+            }
+            Map<String, File> tiles = new HashMap<>();
+            List<FolderScan> subfolders = new ArrayList<>();
+            Map<String, FolderScan> quadrants = new HashMap<>();
+            for(File file:files) {
+                String name = file.getName();
+                int quadrant = name.length() > 0 ? name.charAt(0) - '0' : -1;
+                boolean tileName = quadrant >= 0 && quadrant < 4 && (name.length() == 1 || name.charAt(1) == '.');
+                if(file.isDirectory()) {
+                    if(tileName) {
+                        FolderScan scan = new FolderScan(report, size, throttle, pyramid, chunks, delete, file, zoom + 1,
+                                column * 2 + (quadrant & 1), row * 2 + (quadrant >> 1));
+                        subfolders.add(scan);
+                        quadrants.put(name, scan);
+                    }
+                    continue;
+                }
+                long length = file.length();
+                size.add(tileName ? zoom + 1 : zoom, length);
+                report.files.increment();
+                report.bytes.add(length);
+                if(tileName) {
+                    tiles.put(name.substring(0, 1), file);
+                }
+            }
+            invokeAll(subfolders);
+            boolean drawn = chunks == null;
+            for(Map.Entry<String, File> tile:tiles.entrySet()) {
+                int quadrant = tile.getKey().charAt(0) - '0';
+                boolean tileDrawn;
+                if(chunks == null) {
+                    tileDrawn = true;
+                }
+                else if(zoom + 1 >= pyramid.getMaxZoom()) {
+                    tileDrawn = chunks.isDrawn(pyramid.getMaxZoom(), column * 2 + (quadrant & 1), row * 2 + (quadrant >> 1));
+                }
+                else {
+                    FolderScan below = quadrants.get(tile.getKey());
+                    tileDrawn = below == null || below.join();
+                }
+                if(!tileDrawn) {
+                    orphan(tile.getValue());
+                }
+                drawn |= tileDrawn;
+            }
+            for(FolderScan below:subfolders) {
+                drawn |= below.join();
+            }
+            if(delete && !drawn) {
+                String left[] = folder.list();
+                if(left != null && left.length == 0 && zoom > 0) {
+                    folder.delete();
+                }
+            }
+            return drawn;
+        }
+
+        private void orphan(File tile) {
+            long length = tile.length();
+            if(delete) {
+                throttle.acquire();
+                try {
+                    if(!tile.delete()) {
+                        report.failedDeletes.increment();
+                        return;
+                    }
+                }
+                finally {
+                    throttle.release();
+                }
+            }
+            report.addOrphan(tile, length);
+        }
+    }
+
+    /**
+     * Limits the folders read at a time and climbs towards the number that reads the most files a second.
+     */
+    private static class Throttle {
+        private Semaphore permits;
+        private int maximum;
+        private AtomicInteger limit;
+        private Report report;
+        private long lastFiles;
+        private double lastRate;
+        private int step = 1;
+
+        private Throttle(int maximum, Report report) {
+            this.maximum = maximum;
+            this.report = report;
+            limit = new AtomicInteger(2);
+            permits = new Semaphore(limit.get());
+            report.parallelism = limit.get();
+        }
+
+        private int getMaximum() {
+            return maximum;
+        }
+
+        private void acquire() {
+            permits.acquireUninterruptibly();
+        }
+
+        private void release() {
+            permits.release();
+        }
+
+        /**
+         * Keep going in the same direction while the rate goes up, turn around when it goes down.
+         */
+        private void adjust() {
+            long files = report.files.sum();
+            double rate = files - lastFiles;
+            lastFiles = files;
+            if(rate < lastRate * 0.95) {
+                step = -step;
+            }
+            lastRate = rate;
+            int current = limit.get();
+            int next = Math.max(1, Math.min(maximum, current + step));
+            if(next > current) {
+                permits.release(next - current);
+            }
+            else if(next < current) {
+                permits.acquireUninterruptibly(current - next);
+            }
+            limit.set(next);
+            report.parallelism = next;
+        }
+    }
+
+    /**
+     * Bytes and files of one render by zoom level.
+     */
+    public static class RenderSize {
+        private String render;
+        private LongAdder bytes[] = new LongAdder[MAX_ZOOM + 1];
+        private LongAdder files[] = new LongAdder[MAX_ZOOM + 1];
+
+        private RenderSize(String render) {
+            this.render = render;
+            for(int i=0;i<=MAX_ZOOM;i++) {
+                bytes[i] = new LongAdder();
+                files[i] = new LongAdder();
+            }
+        }
+
+        private void add(int zoom, long length) {
+            int level = Math.min(zoom, MAX_ZOOM);
+            bytes[level].add(length);
+            files[level].increment();
+        }
+
+        /**
+         * @return the name of the render
+         */
+        public String getRender() {
+            return render;
+        }
+
+        /**
+         * @param zoom
+         * @return the bytes of the tiles of a zoom level, level 0 includes the other files of the render
+         */
+        public long getBytes(int zoom) {
+            return bytes[zoom].sum();
+        }
+
+        /**
+         * @param zoom
+         * @return the number of files of a zoom level
+         */
+        public long getFiles(int zoom) {
+            return files[zoom].sum();
+        }
+
+        /**
+         * @return the highest zoom level with files
+         */
+        public int getMaxZoom() {
+            for(int zoom=MAX_ZOOM;zoom>0;zoom--) {
+                if(files[zoom].sum() > 0) {
+                    return zoom;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * What an analysis found so far. Safe to read from any thread while it is being filled in.
+     */
+    public static class Report {
+        private String map;
+        private boolean delete;
+        private Map<String, RenderSize> renders = Collections.synchronizedMap(new LinkedHashMap<String, RenderSize>());
+        private LongAdder files = new LongAdder();
+        private LongAdder bytes = new LongAdder();
+        private LongAdder orphans = new LongAdder();
+        private LongAdder orphanBytes = new LongAdder();
+        private LongAdder failedDeletes = new LongAdder();
+        private List<File> shownOrphans = new ArrayList<>();
+        private PrintWriter orphanWriter;
+        private volatile int parallelism;
+        private volatile boolean cancelled;
+        private volatile boolean done;
+
+        private Report(String map, boolean delete) {
+            this.map = map;
+            this.delete = delete;
+        }
+
+        private RenderSize addRender(String render) {
+            RenderSize size = new RenderSize(render);
+            renders.put(render, size);
+            return size;
+        }
+
+        private void addOrphan(File tile, long length) {
+            orphans.increment();
+            orphanBytes.add(length);
+            synchronized (shownOrphans) {
+                if(shownOrphans.size() < ORPHANS_SHOWN) {
+                    shownOrphans.add(tile);
+                }
+                if(orphanWriter != null) {
+                    orphanWriter.println(tile.getPath());
+                }
+            }
+        }
+
+        /**
+         * @return the map analyzed
+         */
+        public String getMap() {
+            return map;
+        }
+
+        /**
+         * @return true if orphaned tiles are deleted, false if they are only listed
+         */
+        public boolean isDelete() {
+            return delete;
+        }
+
+        /**
+         * @return the renders walked so far
+         */
+        public List<RenderSize> getRenders() {
+            synchronized (renders) {
+                return new ArrayList<>(renders.values());
+            }
+        }
+
+        /**
+         * @return the number of files walked
+         */
+        public long getFiles() {
+            return files.sum();
+        }
+
+        /**
+         * @return the bytes of the files walked
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * @return the number of orphaned tiles found
+         */
+        public long getOrphans() {
+            return orphans.sum();
+        }
+
+        /**
+         * @return the bytes of the orphaned tiles found
+         */
+        public long getOrphanBytes() {
+            return orphanBytes.sum();
+        }
+
+        /**
+         * @return the number of orphaned tiles that could not be deleted
+         */
+        public long getFailedDeletes() {
+            return failedDeletes.sum();
+        }
+
+        /**
+         * @return the first orphaned tiles found
+         */
+        public List<File> getShownOrphans() {
+            synchronized (shownOrphans) {
+                return new ArrayList<>(shownOrphans);
+            }
+        }
+
+        /**
+         * @return the number of folders read at a time
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        /**
+         * @return true if the analysis was stopped before the end
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return true once the analysis has ended
+         */
+        public boolean isDone() {
+            return done;
+        }
+    }
+}
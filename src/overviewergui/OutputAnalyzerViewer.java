@@ -0,0 +1,272 @@
+package overviewergui;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Runs the {@link OutputAnalyzer} on a map of the output folder and shows its size by render and zoom level
+ * and the orphaned tiles as they are found.
+ *
+ * @author Mark Bernard
+ */
+public class OutputAnalyzerViewer extends JPanel {
+    private static final long serialVersionUID = -2257480236043981764L;
+
+    private OutputAnalyzer analyzer;
+    private JComboBox<String> maps;
+    private JCheckBox findOrphans = new JCheckBox("Find orphaned tiles");
+    private JCheckBox deleteOrphans = new JCheckBox("Delete them");
+    private JButton startButton = new JButton("Analyze");
+    private JButton stopButton = new JButton("Stop");
+    private JLabel status = new JLabel(" ");
+    private SizeTableModel tableModel = new SizeTableModel();
+    private JTextArea orphanArea = new JTextArea();
+    private int orphansShown;
+
+    /**
+     * @param outputFolder The map output folder.
+     * @param saveFolder The Minecraft save folder.
+     */
+    public OutputAnalyzerViewer(File outputFolder, File saveFolder) {
+        analyzer = new OutputAnalyzer(outputFolder, saveFolder);
+        setLayout(new BorderLayout(5, 5));
+        setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        List<String> names = new ArrayList<>();
+        File folders[] = outputFolder.listFiles();
+        if(folders != null) {
+            Arrays.sort(folders);
+            for(File folder:folders) {
+                if(folder.isDirectory() && !TilePyramid.listRenders(folder).isEmpty()) {
+                    names.add(folder.getName());
+                }
+            }
+        }
+        maps = new JComboBox<>(names.toArray(new String[0]));
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("Map"));
+        controls.add(maps);
+        controls.add(findOrphans);
+        controls.add(deleteOrphans);
+        controls.add(startButton);
+        controls.add(stopButton);
+        add(controls, BorderLayout.NORTH);
+        findOrphans.setToolTipText("Tiles no saved chunk of the world is drawn on");
+        deleteOrphans.setToolTipText("Delete orphaned tiles instead of only listing them");
+        deleteOrphans.setEnabled(false);
+        stopButton.setEnabled(false);
+        startButton.setEnabled(!names.isEmpty());
+
+        JTable table = new JTable(tableModel);
+        JScrollPane tableScroll = new JScrollPane(table);
+        tableScroll.setBorder(BorderFactory.createTitledBorder("Size by Zoom Level"));
+        orphanArea.setEditable(false);
+        JScrollPane orphanScroll = new JScrollPane(orphanArea);
+        orphanScroll.setBorder(BorderFactory.createTitledBorder("Orphaned Tiles"));
+        orphanScroll.setPreferredSize(new Dimension(300, 200));
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tableScroll, orphanScroll);
+        split.setResizeWeight(0.6);
+        add(split, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+
+        findOrphans.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                deleteOrphans.setEnabled(findOrphans.isSelected());
+                if(!findOrphans.isSelected()) {
+                    deleteOrphans.setSelected(false);
+                }
+            }
+        });
+        startButton.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                start();
+            }
+        });
+        stopButton.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                analyzer.cancel();
+            }
+        });
+    }
+
+    /**
+     * Open the analyzer in its own window.
+     *
+     * @param parent Component the window is shown over.
+     * @param outputFolder The map output folder.
+     * @param saveFolder The Minecraft save folder.
+     */
+    public static void showWindow(Component parent, String outputFolder, String saveFolder) {
+        JFrame frame = new JFrame("Analyze Output Folder");
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.add(new OutputAnalyzerViewer(new File(outputFolder), new File(saveFolder)));
+        frame.setSize(800, 600);
+        frame.setLocationRelativeTo(parent);
+        frame.setVisible(true);
+    }
+
+    private void start() {
+        final String map = (String)maps.getSelectedItem();
+        final boolean find = findOrphans.isSelected();
+        final boolean delete = find && deleteOrphans.isSelected();
+        if(map == null) {
+            return;
+        }
+        if(delete && JOptionPane.showConfirmDialog(this, "Delete the tiles of " + map + " that no saved chunk is drawn on?",
+                "Delete Orphaned Tiles", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        final File orphanList = find ? DataFolder.resolve("orphaned-tiles-" + map.replaceAll("[^A-Za-z0-9_-]", "_") + ".txt") : null;
+        setRunning(true);
+        tableModel.setRenders(new ArrayList<OutputAnalyzer.RenderSize>());
+        orphanArea.setText("");
+        orphansShown = 0;
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    analyzer.analyze(map, find, delete, orphanList, new OutputAnalyzer.Listener() {
+
+                        @Override
+                        public void progress(final OutputAnalyzer.Report report) {
+                            SwingUtilities.invokeLater(new Runnable() {
+
+                                @Override
+                                public void run() {
+                                    show(report, orphanList);
+                                }
+                            });
+                        }
+                    });
+                }
+                catch (final IOException e) {
+                    SwingUtilities.invokeLater(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            setRunning(false);
+                            status.setText(" ");
+                            JOptionPane.showMessageDialog(OutputAnalyzerViewer.this, e.getMessage(), "Analyze Output Folder",
+                                    JOptionPane.ERROR_MESSAGE);
+                        }
+                    });
+                }
+            }
+        }, "Output analyzer - " + map);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void setRunning(boolean running) {
+        startButton.setEnabled(!running);
+        stopButton.setEnabled(running);
+        maps.setEnabled(!running);
+        findOrphans.setEnabled(!running);
+        deleteOrphans.setEnabled(!running && findOrphans.isSelected());
+    }
+
+    private void show(OutputAnalyzer.Report report, File orphanList) {
+        tableModel.setRenders(report.getRenders());
+        List<File> orphans = report.getShownOrphans();
+        StringBuilder added = new StringBuilder();
+        for(int i=orphansShown;i<orphans.size();i++) {
+            added.append(orphans.get(i).getPath()).append('\n');
+        }
+        orphansShown = orphans.size();
+        orphanArea.append(added.toString());
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%,d files, %s", report.getFiles(), WorldMetadata.formatBytes(report.getBytes())));
+        if(orphanList != null) {
+            text.append(String.format(", %,d orphaned tiles %s (%s)", report.getOrphans(), report.isDelete() ? "deleted" : "found",
+                    WorldMetadata.formatBytes(report.getOrphanBytes())));
+            if(report.getFailedDeletes() > 0) {
+                text.append(String.format(", %,d could not be deleted", report.getFailedDeletes()));
+            }
+        }
+        if(report.isDone()) {
+            text.append(report.isCancelled() ? ", stopped" : ", done");
+            if(orphanList != null && report.getOrphans() > orphansShown) {
+                text.append(", full list in ").append(orphanList.getAbsolutePath());
+            }
+            setRunning(false);
+        }
+        else {
+            text.append(", reading ").append(report.getParallelism()).append(" folders at a time");
+        }
+        status.setText(text.toString());
+    }
+
+    /**
+     * One row per render and zoom level.
+     */
+    private static class SizeTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 7740418939066093612L;
+        private static final String COLUMNS[] = {"Render", "Zoom Level", "Files", "Size"};
+        private List<Object[]> rows = new ArrayList<>();
+
+        public void setRenders(List<OutputAnalyzer.RenderSize> renders) {
+            rows.clear();
+            for(OutputAnalyzer.RenderSize render:renders) {
+                long files = 0;
+                long bytes = 0;
+                for(int zoom=0;zoom<=render.getMaxZoom();zoom++) {
+                    rows.add(new Object[] {render.getRender(), zoom, render.getFiles(zoom), WorldMetadata.formatBytes(render.getBytes(zoom))});
+                    files += render.getFiles(zoom);
+                    bytes += render.getBytes(zoom);
+                }
+                rows.add(new Object[] {render.getRender(), "All", files, WorldMetadata.formatBytes(bytes)});
+            }
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row)[column];
+        }
+    }
+}
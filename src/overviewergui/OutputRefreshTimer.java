@@ -0,0 +1,63 @@
+package overviewergui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.Timer;
+
+/**
+ * Single timer on the event dispatch thread that moves queued Overviewer output into the panels at a fixed
+ * frame rate. Reader threads never touch Swing; they only queue text, and each panel gets at most one append
+ * and one scroll per frame no matter how fast Overviewer writes.
+ *
+ * @author Mark Bernard
+ */
+public class OutputRefreshTimer implements ActionListener {
+    /** Number of times per second queued output is shown. */
+    public static final int FRAMES_PER_SECOND = 20;
+    private static final OutputRefreshTimer INSTANCE = new OutputRefreshTimer();
+
+    private List<OverviewerOutputPanel> panels;
+    private Timer timer;
+
+    private OutputRefreshTimer() {
+        panels = new CopyOnWriteArrayList<>();
+        timer = new Timer(1000 / FRAMES_PER_SECOND, this);
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Start refreshing the panel. Must be called on the event dispatch thread.
+     *
+     * @param panel
+     */
+    public static void register(OverviewerOutputPanel panel) {
+        INSTANCE.panels.add(panel);
+        if(!INSTANCE.timer.isRunning()) {
+            INSTANCE.timer.start();
+        }
+    }
+
+    /**
+     * Stop refreshing the panel. Must be called on the event dispatch thread.
+     *
+     * @param panel
+     */
+    public static void unregister(OverviewerOutputPanel panel) {
+        INSTANCE.panels.remove(panel);
+        if(INSTANCE.panels.isEmpty()) {
+            INSTANCE.timer.stop();
+        }
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        long start = System.nanoTime();
+        for(OverviewerOutputPanel panel:panels) {
+            panel.drainOutput();
+        }
+        RenderMetrics.getDefault().frameDrained(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,221 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Overviewer configuration file covering several worlds, so that a batch of maps is rendered by one
+ * Overviewer process with <code>--config</code>. Textures are then loaded once and all worlds share one
+ * worker pool.
+ * <p>
+ * Overviewer writes one web map per output folder, listing only the renders of the configuration it was
+ * run with. Every batch renders to the same folder, so the worlds of earlier batches are read back with
+ * {@link #read(File)} and kept in the configuration without rendering them again.
+ *
+ * @author Mark Bernard
+ */
+public class OverviewerConfig {
+    /** Name of the configuration file written to the output folder. */
+    public static final String FILE_NAME = "overviewergui-settings.py";
+    /** Overviewer's renderchecks value that renders nothing and only writes the web map. */
+    private static final int SKIP_RENDER = 3;
+    private static final Pattern WORLD_LINE = Pattern.compile("worlds\\[(\"(?:[^\"\\\\]|\\\\.)*\")\\] = (\"(?:[^\"\\\\]|\\\\.)*\")");
+    private static final Pattern SETTING_LINE = Pattern.compile(" *\"(world|rendermode)\": (\"(?:[^\"\\\\]|\\\\.)*\"),");
+
+    private File outputFolder;
+    private int processes;
+    private Map<String, File> worlds;
+    private Map<String, List<String>> renderModes;
+    private List<String> renders;
+
+    /**
+     * Start an empty configuration.
+     *
+     * @param outputFolder Folder all worlds are rendered to.
+     * @param processes Number of worker processes Overviewer may use.
+     */
+    public OverviewerConfig(File outputFolder, int processes) {
+        this.outputFolder = outputFolder;
+        this.processes = processes;
+        worlds = new LinkedHashMap<>();
+        renderModes = new HashMap<>();
+        renders = new ArrayList<>();
+    }
+
+    /**
+     * Read back the worlds and render modes of a configuration written by {@link #write(File)}.
+     *
+     * @param file
+     * @return the configuration, with no output folder; empty if the file does not exist
+     * @throws IOException
+     */
+    public static OverviewerConfig read(File file) throws IOException {
+        OverviewerConfig config = new OverviewerConfig(null, 0);
+        if(!file.isFile()) {
+            return config;
+        }
+        String world = null;
+        for(String line:Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            Matcher matcher = WORLD_LINE.matcher(line);
+            if(matcher.matches()) {
+                config.worlds.put(unquote(matcher.group(1)), new File(unquote(matcher.group(2))));
+                continue;
+            }
+            matcher = SETTING_LINE.matcher(line);
+            if(matcher.matches()) {
+                if("world".equals(matcher.group(1))) {
+                    world = unquote(matcher.group(2));
+                }
+                else if(world != null) {
+                    config.getRenderModes(world).add(unquote(matcher.group(2)));
+                }
+            }
+        }
+        return config;
+    }
+
+    /**
+     * @return the folders of the worlds, by world name in the order they were added
+     */
+    public Map<String, File> getWorlds() {
+        return worlds;
+    }
+
+    /**
+     * @param world
+     * @return the render modes of a world
+     */
+    public List<String> getRenderModes(String world) {
+        List<String> modes = renderModes.get(world);
+        if(modes == null) {
+            modes = new ArrayList<>();
+            renderModes.put(world, modes);
+        }
+        return modes;
+    }
+
+    /**
+     * Name of the render of a world in a render mode. Overviewer uses it as folder name, so anything other
+     * than letters, digits, '_' and '-' is replaced.
+     *
+     * @param world
+     * @param renderMode
+     * @return the render name
+     */
+    public static String getRenderName(String world, String renderMode) {
+        return (world + "-" + renderMode).replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    /**
+     * Add a render of the world for each render mode.
+     *
+     * @param world Name of the world.
+     * @param worldFolder
+     * @param renderModes Overviewer render modes, for example normal or smooth_lighting.
+     * @param checkMode How Overviewer should decide which tiles of this world to render.
+     */
+    public void addWorld(String world, File worldFolder, List<String> renderModes, RenderPlan.CheckMode checkMode) {
+        addRenders(world, worldFolder, renderModes, getRenderChecks(checkMode));
+    }
+
+    /**
+     * Add the renders of a world of an earlier batch so they stay on the web map. No tiles are rendered.
+     *
+     * @param world Name of the world.
+     * @param worldFolder
+     * @param renderModes Overviewer render modes the world was rendered in.
+     */
+    public void keepWorld(String world, File worldFolder, List<String> renderModes) {
+        addRenders(world, worldFolder, renderModes, SKIP_RENDER);
+    }
+
+    private void addRenders(String world, File worldFolder, List<String> renderModes, int renderChecks) {
+        worlds.put(world, worldFolder);
+        getRenderModes(world).addAll(renderModes);
+        for(String renderMode:renderModes) {
+            StringBuilder render = new StringBuilder();
+            render.append("renders[").append(quote(getRenderName(world, renderMode))).append("] = {\n");
+            render.append("    \"world\": ").append(quote(world)).append(",\n");
+            render.append("    \"title\": ").append(quote(world + " - " + renderMode)).append(",\n");
+            render.append("    \"rendermode\": ").append(quote(renderMode)).append(",\n");
+            if(renderMode.startsWith("nether")) {
+                render.append("    \"dimension\": \"nether\",\n");
+            }
+            if(renderChecks >= 0) {
+                render.append("    \"renderchecks\": ").append(renderChecks).append(",\n");
+            }
+            render.append("}\n");
+            renders.add(render.toString());
+        }
+    }
+
+    /**
+     * @return true if no render was added
+     */
+    public boolean isEmpty() {
+        return renders.isEmpty();
+    }
+
+    /**
+     * Write the configuration, replacing the previous file only once the new one is complete.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(temp.toPath()), StandardCharsets.UTF_8)) {
+            out.write("# Written by Overviewer GUI for a batch run, changes are overwritten.\n\n");
+            for(Map.Entry<String, File> world:worlds.entrySet()) {
+                out.write("worlds[" + quote(world.getKey()) + "] = " + quote(world.getValue().getAbsolutePath()) + "\n");
+            }
+            out.write("\n");
+            for(String render:renders) {
+                out.write(render);
+                out.write("\n");
+            }
+            out.write("outputdir = " + quote(outputFolder.getAbsolutePath()) + "\n");
+            out.write("processes = " + processes + "\n");
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * The renderchecks value that matches the command line option of the check mode, or -1 to leave the
+     * choice to Overviewer. A world with nothing to render stays in the configuration so it stays on the
+     * map, but only tiles of chunks saved since the last render are looked at.
+     */
+    private static int getRenderChecks(RenderPlan.CheckMode checkMode) {
+        switch(checkMode) {
+            case SKIP:
+            case NO_TILE_CHECKS:
+                return 0;
+            case CHECK_TILES:
+                return 1;
+            case FORCE_RENDER:
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String unquote(String quoted) {
+        return quoted.substring(1, quoted.length() - 1).replaceAll("\\\\(.)", "$1");
+    }
+}
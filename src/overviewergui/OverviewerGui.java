@@ -1,17 +1,31 @@
 package overviewergui;
 
 import java.awt.BorderLayout;
+import java.awt.Desktop;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
 import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.prefs.Preferences;
 
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 /**
  * Main GUI class for Overviewer
@@ -26,14 +40,17 @@ public class OverviewerGui extends JPanel implements WindowListener {
     private static final String WINDOW_WIDTH = "window.width";
     private static final String WINDOW_HEIGHT = "window.height";
     private static final String WINDOW_MAXIMIZED = "window.maximized";
-    private static final String MINECRAFT_SAVE_DATA = "minecraft.save.data";
-    private static final String MINECRAFT_MAP_OUTPUT = "minecraft.map.output";
-    private static final String OVERVIEWER_EXECUTABLE = "overviewer.executable";
     
     private JFrame parent;
     private SettingsPanel settingsPanel;
+    private PreviewPanel previewPanel;
     private JTabbedPane tabPane;
     private Map<String, OverviewerOutputPanel> activePanels;
+    private RenderScheduler scheduler;
+    private ContinuousRenderer watcher;
+    private MapServer server;
+    private MetricsEndpoint metricsEndpoint;
+    private ExecutorService estimateExecutor;
 
     /**
      * Set up GUI.
@@ -48,56 +65,396 @@ public class OverviewerGui extends JPanel implements WindowListener {
         add(tabPane, BorderLayout.CENTER);
         settingsPanel = new SettingsPanel(this);
         tabPane.addTab("Settings", settingsPanel);
+        previewPanel = new PreviewPanel();
+        tabPane.addTab("Preview", previewPanel);
+        tabPane.addChangeListener(new ChangeListener() {
+            
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                if(tabPane.getSelectedComponent() == previewPanel) {
+                    previewPanel.setOutputFolder(settingsPanel.getMapOutputFolder());
+                }
+            }
+        });
         activePanels = new HashMap<>();
+        estimateExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Queue estimates");
+                t.setDaemon(true);
+                return t;
+            }
+        });
         
         loadPrefs();
+        scheduler = new RenderScheduler(settingsPanel.getMaxConcurrentRenders());
+        LogArchiver.getDefault().sweep();
     }
     
     /**
-     * Add an Overviewer to the display.
+     * Add an Overviewer to the display for each map and queue the runs together.
+     * 
+     * @param minecraftFolder 
+     * @param mapNames
+     * @param mapOutputFolder 
+     * @param overviewerExecutable 
+     * @param priority Runs of lower priority are paused while these runs are active.
+     */
+    public void addOverviewers(String minecraftFolder, List<String> mapNames, String mapOutputFolder, String overviewerExecutable, 
+            RunPriority priority) {
+        if(settingsPanel.isBatchRuns() && mapNames.size() > 1) {
+            addBatch(minecraftFolder, mapNames, mapOutputFolder, overviewerExecutable, priority);
+            return;
+        }
+        final List<OverviewerRun> queued = new ArrayList<>();
+        final List<String> queuedMaps = new ArrayList<>();
+        for(String mapName:mapNames) {
+            OverviewerOutputPanel panel = addPanel(mapName, true);
+            if(!panel.isRunning()) {
+                OverviewerRun run = panel.queue(minecraftFolder, mapName, mapOutputFolder, overviewerExecutable, settingsPanel.isIncrementalRenders());
+                run.setPriority(priority, settingsPanel.isLowerLowPriority());
+                queued.add(run);
+                queuedMaps.add(mapName);
+            }
+        }
+        final String world = minecraftFolder;
+        final String output = mapOutputFolder;
+        final RenderCostEstimator estimator = settingsPanel.getCostEstimator();
+        final boolean incremental = settingsPanel.isIncrementalRenders();
+        submitEstimated(queued, new Runnable() {
+            
+            @Override
+            public void run() {
+                for(int i=0;i<queued.size();i++) {
+                    String mapName = queuedMaps.get(i);
+                    queued.get(i).setEstimatedSeconds(estimateSeconds(estimator, new File(world, mapName), new File(output, mapName), 
+                            RegionManifest.FILE_NAME, incremental));
+                }
+            }
+        });
+    }
+    
+    /**
+     * Add an Overviewer to the display for each map and queue one run that renders all of them. Maps that
+     * are already queued or running are left out.
+     * 
+     * @param minecraftFolder 
+     * @param mapNames
+     * @param mapOutputFolder 
+     * @param overviewerExecutable 
+     * @param priority Runs of lower priority are paused while this run is active.
+     */
+    public void addBatch(String minecraftFolder, List<String> mapNames, String mapOutputFolder, String overviewerExecutable, 
+            RunPriority priority) {
+        BatchOutputRouter router = new BatchOutputRouter();
+        Map<OverviewerOutputPanel, RenderProgress> panels = new HashMap<>();
+        Map<String, List<String>> renderModes = new HashMap<>();
+        final List<String> maps = new ArrayList<>();
+        for(String mapName:mapNames) {
+            OverviewerOutputPanel panel = addPanel(mapName, true);
+            if(!panel.isRunning()) {
+                List<String> modes = settingsPanel.getRenderModes(mapName);
+                renderModes.put(mapName, modes);
+                maps.add(mapName);
+                panels.put(panel, router.add(mapName, modes, panel));
+            }
+        }
+        if(maps.isEmpty()) {
+            return;
+        }
+        OverviewerRun run = OverviewerRun.batch(minecraftFolder, maps, renderModes, mapOutputFolder, overviewerExecutable, 
+                settingsPanel.isIncrementalRenders(), scheduler, router);
+        run.setPriority(priority, settingsPanel.isLowerLowPriority());
+        for(Map.Entry<OverviewerOutputPanel, RenderProgress> panel:panels.entrySet()) {
+            panel.getKey().show(run, panel.getValue());
+        }
+        final OverviewerRun batch = run;
+        final String world = minecraftFolder;
+        final String output = mapOutputFolder;
+        final RenderCostEstimator estimator = settingsPanel.getCostEstimator();
+        final boolean incremental = settingsPanel.isIncrementalRenders();
+        submitEstimated(Collections.singletonList(run), new Runnable() {
+            
+            @Override
+            public void run() {
+                long seconds = 0;
+                for(String mapName:maps) {
+                    long mapSeconds = estimateSeconds(estimator, new File(world, mapName), new File(output, OverviewerRun.BATCH_NAME), 
+                            OverviewerRun.getManifestName(mapName), incremental);
+                    seconds = seconds < 0 || mapSeconds < 0 ? -1 : seconds + mapSeconds;
+                }
+                batch.setEstimatedSeconds(seconds);
+            }
+        });
+    }
+    
+    /**
+     * Add an Overviewer to the display and queue its run.
      * 
      * @param minecraftFolder 
      * @param mapName
      * @param mapOutputFolder 
      * @param overviewerExecutable 
+     * @param priority Runs of lower priority are paused while this run is active.
+     */
+    public void addOverviewer(String minecraftFolder, String mapName, String mapOutputFolder, String overviewerExecutable, 
+            RunPriority priority) {
+        addOverviewers(minecraftFolder, Collections.singletonList(mapName), mapOutputFolder, overviewerExecutable, priority);
+    }
+    
+    /**
+     * Watch the maps and queue an incremental run of a map whenever its region files have changed and then 
+     * been quiet for the configured time. Replaces the maps watched before.
+     * 
+     * @param minecraftFolder 
+     * @param mapNames
+     * @param mapOutputFolder 
+     * @param overviewerExecutable 
+     * @param priority Priority of the runs.
+     * @return true if watching started
+     */
+    public boolean watchMaps(final String minecraftFolder, List<String> mapNames, final String mapOutputFolder, 
+            final String overviewerExecutable, final RunPriority priority) {
+        stopWatching();
+        ContinuousRenderer renderer = new ContinuousRenderer(new File(minecraftFolder), mapNames, 
+                settingsPanel.getWatchQuietSeconds() * 1000L, new ContinuousRenderer.Starter() {
+            
+            @Override
+            public OverviewerRun start(final String world) {
+                final OverviewerRun started[] = new OverviewerRun[1];
+                try {
+                    SwingUtilities.invokeAndWait(new Runnable() {
+                        
+                        @Override
+                        public void run() {
+                            started[0] = queueWatched(minecraftFolder, world, mapOutputFolder, overviewerExecutable, priority);
+                        }
+                    });
+                }
+                catch (InterruptedException | InvocationTargetException e) {
+                    e.printStackTrace();
+                }
+                return started[0];
+            }
+        });
+        try {
+            renderer.start();
+        }
+        catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Unable to watch the maps: " + e.getMessage(), "Watch Maps", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        watcher = renderer;
+        return true;
+    }
+    
+    /**
+     * Stop watching maps. Runs already queued are left to finish.
      */
-    public void addOverviewer(String minecraftFolder, String mapName, String mapOutputFolder, String overviewerExecutable) {
+    public void stopWatching() {
+        if(watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+    
+    /**
+     * Serve the map output folder over HTTP and open the list of maps in the browser.
+     * 
+     * @param mapOutputFolder 
+     * @param port 
+     * @return true if the server started
+     */
+    public boolean serveMaps(String mapOutputFolder, int port) {
+        stopServing();
+        MapServer mapServer = new MapServer(new File(mapOutputFolder), port);
+        try {
+            mapServer.start();
+        }
+        catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Unable to serve the maps on port " + port + ": " + e.getMessage(), "Serve Maps", 
+                    JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        server = mapServer;
+        URI address = URI.create("http://localhost:" + mapServer.getPort() + "/");
+        if(Desktop.isDesktopSupported() && Desktop.getDesktop().isSupported(Desktop.Action.BROWSE)) {
+            try {
+                Desktop.getDesktop().browse(address);
+            }
+            catch (IOException e) {
+                e.getMessage();
+            }
+        }
+        else {
+            JOptionPane.showMessageDialog(this, "The maps are served at " + address, "Serve Maps", JOptionPane.INFORMATION_MESSAGE);
+        }
+        return true;
+    }
+    
+    /**
+     * Stop serving the map output folder.
+     */
+    public void stopServing() {
+        if(server != null) {
+            server.close();
+            server = null;
+        }
+    }
+    
+    /**
+     * Publish the render metrics for Prometheus on a local port. They are always available over JMX.
+     * 
+     * @param port 
+     * @return true if the metrics are published
+     */
+    public boolean publishMetrics(int port) {
+        stopPublishingMetrics();
+        MetricsEndpoint endpoint = new MetricsEndpoint(RenderMetrics.getDefault());
+        try {
+            endpoint.start(port);
+        }
+        catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Unable to publish the metrics on port " + port + ": " + e.getMessage(), "Publish Metrics", 
+                    JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        metricsEndpoint = endpoint;
+        return true;
+    }
+    
+    /**
+     * Stop publishing the metrics on the local port.
+     */
+    public void stopPublishingMetrics() {
+        if(metricsEndpoint != null) {
+            metricsEndpoint.close();
+            metricsEndpoint = null;
+        }
+    }
+    
+    /**
+     * Queue the run of a watched map, without bringing its tab to the front. A map that is already queued or
+     * running is left alone.
+     * 
+     * @return the run of the map
+     */
+    private OverviewerRun queueWatched(String minecraftFolder, String mapName, String mapOutputFolder, String overviewerExecutable, 
+            RunPriority priority) {
+        OverviewerOutputPanel panel = addPanel(mapName, false);
+        if(panel.isRunning()) {
+            return panel.getRun();
+        }
+        OverviewerRun run = panel.queue(minecraftFolder, mapName, mapOutputFolder, overviewerExecutable, true);
+        run.setPriority(priority, settingsPanel.isLowerLowPriority());
+        scheduler.setMaxConcurrent(settingsPanel.getMaxConcurrentRenders());
+        if(run.markSubmitted()) {
+            scheduler.submitAll(Collections.singletonList(run));
+        }
+        return run;
+    }
+    
+    /**
+     * Submit runs to the scheduler. If the queue order needs the estimated durations, they are made first on
+     * a background thread, since making them reads the region headers of every world; the runs show as
+     * queued in the meantime and runs stopped in the meantime are left out. Runs submitted one after another 
+     * still reach the scheduler in that order.
+     * 
+     * @param runs
+     * @param estimate Sets the estimated durations of the runs. Called off the event dispatch thread.
+     */
+    private void submitEstimated(final List<OverviewerRun> runs, final Runnable estimate) {
+        scheduler.setMaxConcurrent(settingsPanel.getMaxConcurrentRenders());
+        scheduler.setOrder(settingsPanel.getQueueOrder());
+        if(runs.isEmpty()) {
+            return;
+        }
+        final boolean needsEstimates = settingsPanel.getQueueOrder() != QueueOrder.SELECTED;
+        estimateExecutor.execute(new Runnable() {
+            
+            @Override
+            public void run() {
+                if(needsEstimates) {
+                    estimate.run();
+                }
+                List<OverviewerRun> submitted = new ArrayList<>(runs.size());
+                for(OverviewerRun run:runs) {
+                    if(run.markSubmitted()) {
+                        submitted.add(run);
+                    }
+                }
+                scheduler.submitAll(submitted);
+            }
+        });
+    }
+    
+    /**
+     * @return the estimated duration of rendering a world, or -1 if the world could not be read
+     */
+    private static long estimateSeconds(RenderCostEstimator estimator, File world, File output, String manifestName, boolean incremental) {
+        try {
+            return estimator.estimate(world, output, manifestName, incremental).getSeconds();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+    
+    private OverviewerOutputPanel addPanel(String mapName, boolean select) {
         OverviewerOutputPanel panel = activePanels.get(mapName);
         if(panel == null) {
-            panel = new OverviewerOutputPanel();
+            panel = new OverviewerOutputPanel(scheduler, settingsPanel.getLogMaxLines(), settingsPanel.getLogMaxKilobytes() * 1024);
             activePanels.put(mapName, panel);
             tabPane.addTab(null, panel);
             int index = tabPane.indexOfComponent(panel);
-            tabPane.setTabComponentAt(index, new TabTitleComponent(mapName, this));
+            TabTitleComponent tabTitle = new TabTitleComponent(mapName, this);
+            tabPane.setTabComponentAt(index, tabTitle);
+            panel.setTabTitle(tabTitle);
         }
-        tabPane.setSelectedComponent(panel);
-        tabPane.repaint();
-        if(!panel.isRunning()) {
-            panel.start(minecraftFolder, mapName, mapOutputFolder, overviewerExecutable);
+        if(select) {
+            tabPane.setSelectedComponent(panel);
         }
+        tabPane.repaint();
+        return panel;
     }
     
     /**
-     * Stop the Overviewer run for the provided map and remove it from the tab.
+     * Stop the Overviewer run for the provided map and remove it from the tab. A batch run is stopped for
+     * all of its maps.
      * 
      * @param mapName
      */
     public void stopOverviewerRun(String mapName) {
         OverviewerOutputPanel panel = activePanels.remove(mapName);
         if(panel != null) {
-            panel.setRunning(false);
+            panel.close();
             tabPane.remove(panel);
         }
     }
 
     /**
-     * Save preferences and exit.
+     * Save preferences, end all Overviewer processes and exit.
      */
     public void exit() {
+        stopWatching();
+        stopServing();
+        stopPublishingMetrics();
         for(OverviewerOutputPanel panel:activePanels.values()) {
-            panel.setRunning(false);
+            panel.stop();
         }
         savePrefs();
+        long deadline = System.currentTimeMillis() + 2 * OverviewerRun.STOP_GRACE_MILLIS + 1000;
+        try {
+            for(OverviewerOutputPanel panel:activePanels.values()) {
+                panel.awaitEnd(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+            LogArchiver.getDefault().awaitIdle(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        catch (InterruptedException e) {
+            e.getMessage();
+        }
         System.exit(0);
     }
     @Override
@@ -119,7 +476,7 @@ public class OverviewerGui extends JPanel implements WindowListener {
     public void windowDeactivated(WindowEvent e) {}
 
     private void loadPrefs() {
-        Preferences prefs = Preferences.userNodeForPackage(OverviewerGui.class);
+        Preferences prefs = RenderSettings.getPreferences();
         
         int x = prefs.getInt(WINDOW_X, 0);
         int y = prefs.getInt(WINDOW_Y, 0);
@@ -130,23 +487,29 @@ public class OverviewerGui extends JPanel implements WindowListener {
         if(maximized) {
             parent.setExtendedState(JFrame.MAXIMIZED_BOTH);
         }
-        String minecraftLocation[] = {"", 
-                System.getProperty("user.home").replace("\\", "/") + "/.minecraft/saves",
-                System.getProperty("user.home").replace("\\", "/") + "/AppData/Roaming/.minecraft/saves"};
-        int choice = 0;
-        if(new File(minecraftLocation[1]).isDirectory()) {
-            choice = 1;
-        }
-        else if(new File(minecraftLocation[2]).isDirectory()) {
-            choice = 2;
-        }
-        settingsPanel.setMinecraftSaveFolder(prefs.get(MINECRAFT_SAVE_DATA, minecraftLocation[choice]));
-        settingsPanel.setOverviewerExecutable(prefs.get(OVERVIEWER_EXECUTABLE, ""));
-        settingsPanel.setMapOutputFolder(prefs.get(MINECRAFT_MAP_OUTPUT, new File(System.getProperty("user.home") + "/MinecraftMaps").getAbsolutePath()));
+        RenderSettings settings = RenderSettings.load();
+        settingsPanel.setMinecraftSaveFolder(settings.getMinecraftSaveFolder());
+        settingsPanel.setOverviewerExecutable(settings.getOverviewerExecutable());
+        settingsPanel.setMapOutputFolder(settings.getMapOutputFolder());
+        settingsPanel.setLogMaxLines(settings.getLogMaxLines());
+        settingsPanel.setLogMaxKilobytes(settings.getLogMaxKilobytes());
+        settingsPanel.setLogRetentionDays(settings.getLogRetentionDays());
+        settingsPanel.setLogRetentionMegabytes(settings.getLogRetentionMegabytes());
+        LogArchiver.getDefault().setRetention(settings.getLogRetentionDays(), settings.getLogRetentionMegabytes());
+        settingsPanel.setMaxConcurrentRenders(settings.getMaxConcurrentRenders());
+        settingsPanel.setIncrementalRenders(settings.isIncrementalRenders());
+        settingsPanel.setBatchRuns(settings.isBatchRuns());
+        settingsPanel.setRenderModes(settings.getRenderModes());
+        settingsPanel.setWorldRenderModes(settings.getWorldRenderModes());
+        settingsPanel.setLowerLowPriority(settings.isLowerLowPriority());
+        settingsPanel.setQueueOrder(settings.getQueueOrder());
+        settingsPanel.setWatchQuietSeconds(settings.getWatchQuietSeconds());
+        settingsPanel.setServerPort(settings.getServerPort());
+        settingsPanel.setMetricsPort(settings.getMetricsPort());
     }
     
     private void savePrefs() {
-        Preferences prefs = Preferences.userNodeForPackage(OverviewerGui.class);
+        Preferences prefs = RenderSettings.getPreferences();
         
         boolean maximized = (parent.getExtendedState() == JFrame.MAXIMIZED_BOTH);
         prefs.getBoolean(WINDOW_MAXIMIZED, maximized);
@@ -156,9 +519,25 @@ public class OverviewerGui extends JPanel implements WindowListener {
             prefs.putInt(WINDOW_WIDTH, parent.getWidth());
             prefs.putInt(WINDOW_HEIGHT, parent.getHeight());
         }
-        prefs.put(MINECRAFT_SAVE_DATA, settingsPanel.getMinecraftSaveFolder());
-        prefs.put(MINECRAFT_MAP_OUTPUT, settingsPanel.getMapOutputFolder());
-        prefs.put(OVERVIEWER_EXECUTABLE, settingsPanel.getOverviewerExecutable());
+        RenderSettings settings = new RenderSettings();
+        settings.setMinecraftSaveFolder(settingsPanel.getMinecraftSaveFolder());
+        settings.setMapOutputFolder(settingsPanel.getMapOutputFolder());
+        settings.setOverviewerExecutable(settingsPanel.getOverviewerExecutable());
+        settings.setLogMaxLines(settingsPanel.getLogMaxLines());
+        settings.setLogMaxKilobytes(settingsPanel.getLogMaxKilobytes());
+        settings.setLogRetentionDays(settingsPanel.getLogRetentionDays());
+        settings.setLogRetentionMegabytes(settingsPanel.getLogRetentionMegabytes());
+        settings.setMaxConcurrentRenders(settingsPanel.getMaxConcurrentRenders());
+        settings.setIncrementalRenders(settingsPanel.isIncrementalRenders());
+        settings.setBatchRuns(settingsPanel.isBatchRuns());
+        settings.setRenderModes(settingsPanel.getRenderModes());
+        settings.setWorldRenderModes(settingsPanel.getWorldRenderModes());
+        settings.setLowerLowPriority(settingsPanel.isLowerLowPriority());
+        settings.setQueueOrder(settingsPanel.getQueueOrder());
+        settings.setWatchQuietSeconds(settingsPanel.getWatchQuietSeconds());
+        settings.setServerPort(settingsPanel.getServerPort());
+        settings.setMetricsPort(settingsPanel.getMetricsPort());
+        settings.save();
     }
     /**
      * Overviewer GUI entry point.
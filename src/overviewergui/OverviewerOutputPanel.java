@@ -1,44 +1,79 @@
 package overviewergui;
 
 import java.awt.BorderLayout;
-import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
 import java.awt.FlowLayout;
+import java.awt.Window;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedInputStream;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.text.DefaultCaret;
 
 /**
- * Provides a panel for the Overviewer output. Also executes the Overviewer command.
+ * Provides a panel for the Overviewer output of a map. The run itself is an {@link OverviewerRun}; the panel
+ * shows its output and progress, and searches its log and the archived logs through {@link LogSearch}.
  * 
  * @author Mark Bernard
  */
-public class OverviewerOutputPanel extends JPanel implements Runnable {
+public class OverviewerOutputPanel extends JPanel implements RunListener {
     private static final long serialVersionUID = -1231657415239800281L;
-    private static final Object LOCK_OBJECT = new Object();
 
-    private String map;
-    private String mapFolder;
-    private String mapOutputFolder;
-    private String overviewerExecutable;
-    private StringBuilder overviewerOutput;
+    private volatile OverviewerRun run;
+    private RenderScheduler scheduler;
+    private TabTitleComponent tabTitle;
+    private LogDocument overviewerOutput;
+    private LogCompactor compactor;
+    private Queue<String> pendingOutput;
+    private StringBuilder frameOutput;
     private JTextArea overviewerOutputView;
     private JScrollPane scrollPane;
-    private JLabel runningLabel;
-    private boolean running;
+    private JProgressBar progressBar;
+    private JLabel throughputLabel;
+    private RenderProgress progress;
+    private Sparkline sparklines[];
+    private RunState state;
+    private long shownProgressVersion;
+    private long shownResourceVersion;
+    private JTextField searchField;
+    private JCheckBox searchAllLogs;
+    private JLabel searchStatus;
+    private DefaultListModel<LogSearch.Hit> hits;
+    private JScrollPane hitScrollPane;
+    private Thread searcher;
+    private MappedLogViewer hitViewer;
+    private File hitViewerLog;
 
     /**
      * Set up GUI elements
+     * 
+     * @param scheduler Scheduler that decides when the run starts.
+     * @param logMaxLines Maximum number of output lines kept in the view.
+     * @param logMaxChars Maximum number of output characters kept in the view.
      */
-    public OverviewerOutputPanel() {
+    public OverviewerOutputPanel(RenderScheduler scheduler, int logMaxLines, int logMaxChars) {
+        this.scheduler = scheduler;
         setLayout(new BorderLayout());
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         add(topPanel, BorderLayout.NORTH);
@@ -47,121 +82,369 @@ public class OverviewerOutputPanel extends JPanel implements Runnable {
             
             @Override
             public void actionPerformed(ActionEvent e) {
-                synchronized (LOCK_OBJECT) {
-                    running = false;
-                }
+                stop();
             }
         });
         topPanel.add(stopButton);
-        runningLabel = new JLabel();
-        runningLabel.setBackground(Color.RED);
-        topPanel.add(runningLabel);
+        JButton fullLogButton = new JButton("Full Log");
+        fullLogButton.addActionListener(new ActionListener() {
+            
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                OverviewerRun current = run;
+                File log = current == null || current.getLogFile() == null ? null : LogArchiver.find(current.getLogFile());
+                if(log != null) {
+                    MappedLogViewer.showWindow(OverviewerOutputPanel.this, log, "Overviewer Log - " + current.getMap());
+                }
+            }
+        });
+        topPanel.add(fullLogButton);
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        topPanel.add(progressBar);
+        throughputLabel = new JLabel();
+        topPanel.add(throughputLabel);
+        sparklines = new Sparkline[] {
+                new Sparkline(ResourceHistory.CPU, "CPU"),
+                new Sparkline(ResourceHistory.RSS, "RSS"),
+                new Sparkline(ResourceHistory.READ, "Read"),
+                new Sparkline(ResourceHistory.WRITE, "Write")};
+        for(Sparkline sparkline:sparklines) {
+            topPanel.add(sparkline);
+        }
+        progress = new RenderProgress();
+        state = RunState.QUEUED;
         
-        overviewerOutputView = new JTextArea();
+        overviewerOutput = new LogDocument(logMaxLines, logMaxChars);
+        compactor = new LogCompactor();
+        overviewerOutputView = new JTextArea(overviewerOutput);
         overviewerOutputView.setEditable(false);
         overviewerOutputView.setLineWrap(true);
+        ((DefaultCaret)overviewerOutputView.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
         scrollPane = new JScrollPane(overviewerOutputView);
         add(scrollPane, BorderLayout.CENTER);
+        add(createSearchPanel(), BorderLayout.SOUTH);
         
+        pendingOutput = new ConcurrentLinkedQueue<>();
+        frameOutput = new StringBuilder();
+        OutputRefreshTimer.register(this);
     }
     
     /**
-     * Set data items and start the run.
+     * Create a new run of the map shown by this panel. The caller submits the run to the scheduler.
      * 
      * @param mapFolder
      * @param map
      * @param mapOutputFolder
      * @param overviewerExecutable
+     * @param incremental Compare region files with the last render to skip or reduce the work.
+     * @return the queued run
      */
-    public void start(String mapFolder, String map, String mapOutputFolder, String overviewerExecutable) {
-        this.map = map;
-        this.mapFolder = mapFolder;
-        this.mapOutputFolder = mapOutputFolder;
-        this.overviewerExecutable = overviewerExecutable;
-        runningLabel.setText("Overviewer is running");
-
-        running = true;
-        
-        Thread t = new Thread(this, "Overviewer - " + map);
-        t.start();
+    public OverviewerRun queue(String mapFolder, String map, String mapOutputFolder, String overviewerExecutable, boolean incremental) {
+        OverviewerRun queued = new OverviewerRun(mapFolder, map, mapOutputFolder, overviewerExecutable, incremental, scheduler, this);
+        show(queued, queued.getProgress());
+        return queued;
+    }
+    
+    /**
+     * Show a run that covers the map of this panel, such as a batch run. The run must pass its output to 
+     * this panel.
+     * 
+     * @param run
+     * @param progress Progress of the map of this panel.
+     */
+    public void show(OverviewerRun run, RenderProgress progress) {
+        this.run = run;
+        this.progress = progress;
+        for(Sparkline sparkline:sparklines) {
+            sparkline.setHistory(run.getResources());
+        }
+        stateChanged(run, run.getState());
     }
     
     @Override
-    public void run() {
-        InputStreamReader in = null;
-        try {
-            overviewerOutput = new StringBuilder();
-            String commandString = buildCommand();
-            Process process = Runtime.getRuntime().exec(commandString);
-            in = new InputStreamReader(new BufferedInputStream(process.getInputStream()), "UTF-8");
-            char buffer[] = new char[8192];
-            int read = -1;
-            while((read = in.read(buffer)) > -1 && process.isAlive()) {
-                overviewerOutput.append(buffer, 0, read);
-                overviewerOutputView.setText(overviewerOutput.toString());
-                JScrollBar bar = scrollPane.getVerticalScrollBar();
-                bar.setValue(bar.getMaximum());
-                scrollPane.repaint();
-                synchronized (LOCK_OBJECT) {
-                    if(!running) {
-                        process.destroyForcibly();
-                        process.waitFor();
-                    }
+    public void outputRead(OverviewerRun run, char[] buffer, int offset, int length) {
+        pendingOutput.offer(new String(buffer, offset, length));
+    }
+    
+    @Override
+    public void stateChanged(final OverviewerRun run, final RunState state) {
+        SwingUtilities.invokeLater(new Runnable() {
+            
+            @Override
+            public void run() {
+                if(run != OverviewerOutputPanel.this.run) {
+                    return;
+                }
+                OverviewerOutputPanel.this.state = state;
+                showProgress();
+                if(tabTitle != null) {
+                    tabTitle.setState(state);
                 }
             }
-            
-            int exitValue = process.exitValue();
-            runningLabel.setText("Overviewer " + (exitValue==0?"is complete":"has completed with errors"));
-            runningLabel.setBackground(Color.GREEN);
+        });
+    }
+    
+    /**
+     * @param tabTitle the tab title that shows the state of this run
+     */
+    public void setTabTitle(TabTitleComponent tabTitle) {
+        this.tabTitle = tabTitle;
+    }
+    
+    /**
+     * Move all queued output into the view through the {@link LogCompactor} and follow the end of the log if
+     * the view was already showing it. Called once per frame on the event dispatch thread by {@link OutputRefreshTimer}.
+     */
+    public void drainOutput() {
+        if(progress.getVersion() != shownProgressVersion) {
+            showProgress();
+        }
+        OverviewerRun current = run;
+        if(current != null && current.getResources().getVersion() != shownResourceVersion) {
+            shownResourceVersion = current.getResources().getVersion();
+            for(Sparkline sparkline:sparklines) {
+                sparkline.repaint();
+            }
+        }
+        String chunk = pendingOutput.poll();
+        if(chunk == null) {
+            return;
         }
-        catch (Exception e) {
-            e.printStackTrace();
+        frameOutput.setLength(0);
+        while(chunk != null) {
+            frameOutput.append(chunk);
+            chunk = pendingOutput.poll();
         }
-        finally {
-            JScrollBar bar = scrollPane.getVerticalScrollBar();
-            bar.setValue(bar.getMaximum());
-            scrollPane.repaint();
-            if (in != null) { try { in.close(); } catch (Exception e) { e.getMessage(); } }
-            running = false;
+        int maxChars = overviewerOutput.getMaxChars();
+        compactor.feed(frameOutput);
+        String committed = compactor.takeCommitted();
+        int start = Math.max(0, committed.length() - maxChars);
+        JScrollBar bar = scrollPane.getVerticalScrollBar();
+        boolean following = bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum();
+        overviewerOutput.update(committed.substring(start), compactor.getTail());
+        if(following) {
+            overviewerOutputView.setCaretPosition(overviewerOutput.getLength());
+        }
+        if(frameOutput.capacity() > maxChars) {
+            frameOutput = new StringBuilder();
         }
     }
-    
+
     /**
-     * @return the running
+     * Search the log of the run shown, or all logs starting with it, on a background thread and list the
+     * lines found.
+     * 
+     * @param query Words that must all be on a line.
+     * @param allLogs True to search the archived logs and the logs of other runs as well.
      */
-    public boolean isRunning() {
-        synchronized (LOCK_OBJECT) {
-            return running;
+    public void search(final String query, final boolean allLogs) {
+        if(searcher != null) {
+            searcher.interrupt();
+        }
+        OverviewerRun current = run;
+        final File log = current == null ? null : current.getLogFile();
+        if(query.trim().isEmpty() || (log == null && !allLogs)) {
+            hits.clear();
+            hitScrollPane.setVisible(false);
+            searchStatus.setText("");
+            revalidate();
+            return;
         }
+        searchStatus.setText("Searching...");
+        searcher = new Thread(new Runnable() {
+            
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                final List<LogSearch.Hit> found = allLogs ? LogSearch.getDefault().searchAll(log, query) : LogSearch.getDefault().search(log, query);
+                final long millis = (System.nanoTime() - start) / 1000000;
+                if(Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        showHits(found, millis, allLogs ? LogSearch.MAX_HITS : LogSearch.MAX_HITS_PER_LOG);
+                    }
+                });
+            }
+        }, "Log search - " + query);
+        searcher.setDaemon(true);
+        searcher.start();
     }
 
     /**
-     * @param running the running to set
+     * Stop the run, or take it out of the queue if it has not started yet.
      */
-    public void setRunning(boolean running) {
-        synchronized (LOCK_OBJECT) {
-            this.running = running;
+    public void stop() {
+        OverviewerRun current = run;
+        if(current != null) {
+            current.stop();
         }
     }
 
-    private String buildCommand() {
-        StringBuilder command = new StringBuilder();
-        
-        if(System.getProperty("os.name").toLowerCase().contains("windows")) {
-            command.append("cmd /c ");
+    /**
+     * Wait for the run to end after {@link #stop()}.
+     * 
+     * @param timeoutMillis
+     * @return true if the run has ended or there is none, false if the time ran out
+     * @throws InterruptedException
+     */
+    public boolean awaitEnd(long timeoutMillis) throws InterruptedException {
+        OverviewerRun current = run;
+        return current == null || current.awaitEnd(timeoutMillis);
+    }
+
+    /**
+     * Stop the run and release the view from the refresh timer.
+     */
+    public void close() {
+        stop();
+        if(searcher != null) {
+            searcher.interrupt();
         }
-        command.append(overviewerExecutable + " ");
-        command.append(mapFolder + System.getProperty("file.separator") + map + " ");
-        command.append(mapOutputFolder + System.getProperty("file.separator") + map);
+        OutputRefreshTimer.unregister(this);
+    }
+
+    /**
+     * @return the run shown, or null if nothing was queued yet
+     */
+    public OverviewerRun getRun() {
+        return run;
+    }
+
+    /**
+     * @return true if the run of this panel is queued or running
+     */
+    public boolean isRunning() {
+        OverviewerRun current = run;
+        return current != null && current.isRunning();
+    }
+
+    private JPanel createSearchPanel() {
+        JPanel searchPanel = new JPanel(new BorderLayout());
+        JPanel searchRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(searchRow, BorderLayout.NORTH);
+        searchField = new JTextField(24);
+        searchField.setToolTipText("Lines holding all of these words; the last word may be the start of a longer word");
+        searchAllLogs = new JCheckBox("All logs");
+        searchAllLogs.setToolTipText("Also search the logs of other runs and the archived logs, newest first");
+        ActionListener searchAction = new ActionListener() {
+            
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                search(searchField.getText(), searchAllLogs.isSelected());
+            }
+        };
+        searchField.addActionListener(searchAction);
+        searchAllLogs.addActionListener(searchAction);
+        searchRow.add(new JLabel("Search log"));
+        searchRow.add(searchField);
+        searchRow.add(searchAllLogs);
+        JButton searchButton = new JButton("Search");
+        searchButton.addActionListener(searchAction);
+        searchRow.add(searchButton);
+        searchStatus = new JLabel();
+        searchRow.add(searchStatus);
         
-        File output = new File(mapOutputFolder + "/" + map);
-        if(!output.exists()) {
-            if(!output.mkdirs()) {
-                throw new RuntimeException("Unable to create output directory: " + output.getAbsolutePath());
+        hits = new DefaultListModel<>();
+        final JList<LogSearch.Hit> hitList = new JList<>(hits);
+        hitList.setCellRenderer(new DefaultListCellRenderer() {
+            private static final long serialVersionUID = -6408254472921063573L;
+
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                LogSearch.Hit hit = (LogSearch.Hit)value;
+                String text = String.format("%s:%,d  %s", hit.getLog().getName(), hit.getLine() + 1, hit.getText());
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
             }
+        });
+        hitList.addMouseListener(new MouseAdapter() {
             
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = hitList.locationToIndex(e.getPoint());
+                if(index >= 0 && hitList.getCellBounds(index, index).contains(e.getPoint())) {
+                    showHit(hits.get(index));
+                }
+            }
+        });
+        hitScrollPane = new JScrollPane(hitList);
+        hitScrollPane.setPreferredSize(new Dimension(400, 160));
+        hitScrollPane.setVisible(false);
+        searchPanel.add(hitScrollPane, BorderLayout.CENTER);
+        return searchPanel;
+    }
+    
+    private void showHits(List<LogSearch.Hit> found, long millis, int max) {
+        hits.clear();
+        Set<File> logs = new HashSet<>();
+        for(LogSearch.Hit hit:found) {
+            hits.addElement(hit);
+            logs.add(hit.getLog());
+        }
+        hitScrollPane.setVisible(!found.isEmpty());
+        String count = found.size() >= max ? String.format("First %,d lines", found.size()) : String.format("%,d %s", found.size(), found.size() == 1 ? "line" : "lines");
+        searchStatus.setText(String.format("%s in %d %s, %d ms", count, logs.size(), logs.size() == 1 ? "log" : "logs", millis));
+        revalidate();
+    }
+    
+    /**
+     * Open the log of a line found in the log viewer, or use the viewer already open on it, and scroll to
+     * the line.
+     */
+    private void showHit(LogSearch.Hit hit) {
+        File log = LogArchiver.find(hit.getLog());
+        if(log == null) {
+            searchStatus.setText(hit.getLog().getName() + " no longer exists");
+            return;
+        }
+        if(hitViewer == null || !hitViewer.isOpen() || !log.equals(hitViewerLog)) {
+            hitViewer = MappedLogViewer.showWindow(this, log, "Overviewer Log - " + hit.getLog().getName());
+            hitViewerLog = log;
+            if(hitViewer == null) {
+                return;
+            }
+        }
+        else {
+            Window window = SwingUtilities.getWindowAncestor(hitViewer);
+            if(window != null) {
+                window.toFront();
+            }
+        }
+        hitViewer.showLine(hit.getLine());
+    }
+
+    private void showProgress() {
+        shownProgressVersion = progress.getVersion();
+        long total = progress.getTilesTotal();
+        if(state != RunState.RUNNING) {
+            progressBar.setIndeterminate(false);
+            progressBar.setValue(state == RunState.COMPLETE || state == RunState.SKIPPED ? 100 : progress.getPercent());
+            progressBar.setString(state.getDescription());
+        }
+        else if(total <= 0) {
+            progressBar.setIndeterminate(true);
+            progressBar.setString(progress.getPhase().getDisplayName());
+        }
+        else {
+            int percent = progress.getPercent();
+            progressBar.setIndeterminate(false);
+            progressBar.setValue(percent);
+            progressBar.setString(String.format("%s %,d of %,d (%d%%)", 
+                    progress.getPhase().getDisplayName(), progress.getTilesDone(), total, percent));
+        }
+        if(state.isFinished() && progress.getAverageRate() > 0) {
+            throughputLabel.setText(String.format("Average %.1f tiles/s", progress.getAverageRate()));
+        }
+        else if(state == RunState.RUNNING && progress.getSmoothedRate() > 0) {
+            throughputLabel.setText(String.format("%.1f tiles/s (now %.1f), ETA %s", 
+                    progress.getSmoothedRate(), progress.getInstantRate(), RenderProgress.formatDuration(progress.getEtaSeconds())));
+        }
+        else {
+            throughputLabel.setText("");
         }
-        
-        return command.toString();
     }
 }
@@ -0,0 +1,600 @@
+package overviewergui;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One Overviewer run of a map: plans the render, builds the command, supervises the process, spools and
+ * parses its output. A batch run renders several maps with one Overviewer process from a generated
+ * {@link OverviewerConfig}. The run knows nothing about Swing; the GUI and the headless runner both follow
+ * it through a {@link RunListener}.
+ *
+ * @author Mark Bernard
+ */
+public class OverviewerRun implements Runnable, RenderJob {
+    /** Name of batch runs and of the output folder they render to. */
+    public static final String BATCH_NAME = "batch";
+    /** How long stopped processes get to end by themselves, and then to end when forced. */
+    public static final long STOP_GRACE_MILLIS = 5000;
+
+    private String map;
+    private List<String> maps;
+    private Map<String, List<String>> renderModes;
+    private String mapFolder;
+    private String mapOutputFolder;
+    private String overviewerExecutable;
+    private boolean incremental;
+    private int processes;
+    private RenderScheduler scheduler;
+    private RunListener listener;
+    private List<RenderPlan> plans;
+    private volatile LogSpool spool;
+    private volatile LiveLogIndex logIndex;
+    private RenderProgress progress;
+    private ProgressParser progressParser;
+    private ResourceHistory resources;
+    private volatile RunState state;
+    private boolean running;
+    private boolean submitted;
+    private RunPriority priority;
+    private volatile long estimatedSeconds;
+    private boolean lowerNice;
+    private boolean paused;
+    private Process process;
+    private volatile long startMillis;
+    private int exitCode;
+    private Thread terminator;
+    private volatile List<ProcessHandle> survivors;
+    private CountDownLatch ended;
+
+    /**
+     * Create a queued run. The caller submits it to the scheduler.
+     *
+     * @param mapFolder Folder holding the maps.
+     * @param map
+     * @param mapOutputFolder Folder the rendered maps are written to.
+     * @param overviewerExecutable
+     * @param incremental Compare region files with the last render to skip or reduce the work.
+     * @param scheduler Scheduler that decides when the run starts.
+     * @param listener
+     */
+    public OverviewerRun(String mapFolder, String map, String mapOutputFolder, String overviewerExecutable, boolean incremental,
+            RenderScheduler scheduler, RunListener listener) {
+        this(map, mapFolder, Collections.singletonList(map), null, mapOutputFolder, overviewerExecutable, incremental, scheduler, listener);
+    }
+
+    /**
+     * Create a queued batch run of several maps. The caller submits it to the scheduler.
+     *
+     * @param mapFolder Folder holding the maps.
+     * @param maps
+     * @param renderModes Overviewer render modes of each map.
+     * @param mapOutputFolder Folder the rendered maps are written to, in the {@value #BATCH_NAME} folder shared 
+     * by all batches.
+     * @param overviewerExecutable
+     * @param incremental Compare region files with the last render to reduce the work.
+     * @param scheduler Scheduler that decides when the run starts.
+     * @param listener
+     * @return the run
+     */
+    public static OverviewerRun batch(String mapFolder, List<String> maps, Map<String, List<String>> renderModes, String mapOutputFolder,
+            String overviewerExecutable, boolean incremental, RenderScheduler scheduler, RunListener listener) {
+        return new OverviewerRun(BATCH_NAME, mapFolder, new ArrayList<>(maps), renderModes, mapOutputFolder, overviewerExecutable, 
+                incremental, scheduler, listener);
+    }
+
+    private OverviewerRun(String map, String mapFolder, List<String> maps, Map<String, List<String>> renderModes, String mapOutputFolder, 
+            String overviewerExecutable, boolean incremental, RenderScheduler scheduler, RunListener listener) {
+        this.map = map;
+        this.maps = maps;
+        this.renderModes = renderModes;
+        this.mapFolder = mapFolder;
+        this.mapOutputFolder = mapOutputFolder;
+        this.overviewerExecutable = overviewerExecutable;
+        this.incremental = incremental;
+        this.scheduler = scheduler;
+        this.listener = listener;
+        progress = new RenderProgress();
+        progressParser = new ProgressParser(progress);
+        resources = new ResourceHistory();
+        plans = new ArrayList<>();
+        ended = new CountDownLatch(1);
+        priority = RunPriority.NORMAL;
+        estimatedSeconds = -1;
+        state = RunState.QUEUED;
+        running = true;
+        RenderMetrics.getDefault().runCreated(this);
+    }
+
+    /**
+     * Start the run on its own reader thread. Called by the scheduler once a render slot is free.
+     *
+     * @param processes Number of worker processes Overviewer may use.
+     */
+    @Override
+    public void start(int processes) {
+        this.processes = processes;
+        progress.reset();
+        resources.reset();
+        ReaderThreads.start("Overviewer - " + map, this);
+    }
+
+    @Override
+    public void run() {
+        InputStreamReader in = null;
+        RunState endState = RunState.FAILED;
+        try {
+            if(!isRunning()) {
+                endState = RunState.STOPPED;
+                return;
+            }
+            setState(RunState.RUNNING);
+            spool = new LogSpool(map);
+            logIndex = spool.getIndex();
+            LogSearch.getDefault().register(spool.getFile(), logIndex);
+            List<String> command = isBatch() ? prepareBatch() : prepareMap();
+            if(command == null) {
+                endState = RunState.SKIPPED;
+                return;
+            }
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectErrorStream(true);
+            exitCode = -1;
+            startMillis = System.currentTimeMillis();
+            Process started = builder.start();
+            boolean startPaused;
+            synchronized (this) {
+                process = started;
+                if(!running) {
+                    terminate();
+                }
+                if(priority == RunPriority.LOW && lowerNice) {
+                    new ProcessTree(started.toHandle()).lowerPriority();
+                }
+                startPaused = paused && new ProcessTree(started.toHandle()).signal("STOP");
+            }
+            if(startPaused) {
+                setState(RunState.PAUSED);
+            }
+            ResourceMonitor.register(started.toHandle(), resources);
+            in = new InputStreamReader(new BufferedInputStream(spool.tee(started.getInputStream())), "UTF-8");
+            char buffer[] = new char[8192];
+            int read = -1;
+            while((read = in.read(buffer)) > -1 && isRunning()) {
+                progressParser.feed(buffer, 0, read);
+                logIndex.feed(buffer, 0, read);
+                listener.outputRead(this, buffer, 0, read);
+            }
+            if(!isRunning()) {
+                awaitTermination();
+            }
+            int exitValue = started.waitFor();
+            exitCode = exitValue;
+
+            progressParser.finish();
+            if(!isRunning()) {
+                endState = RunState.STOPPED;
+            }
+            else if(exitValue == 0) {
+                endState = RunState.COMPLETE;
+                for(RenderPlan plan:plans) {
+                    plan.commit();
+                }
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        finally {
+            if (in != null) { try { in.close(); } catch (Exception e) { e.getMessage(); } }
+            if (spool != null) { try { spool.close(); } catch (Exception e) { e.getMessage(); } }
+            boolean started;
+            synchronized (this) {
+                started = process != null;
+                if(started) {
+                    ResourceMonitor.unregister(process.toHandle());
+                }
+            }
+            if(started) {
+                record(endState);
+            }
+            if(spool != null) {
+                LogArchiver.getDefault().archive(spool.getFile(), logIndex);
+            }
+            setRunning(false);
+            setState(endState);
+            ended.countDown();
+            scheduler.finished(this);
+        }
+    }
+
+    /**
+     * Add the outcome of the run to the {@link RunHistory}. Runs that were skipped are not recorded, they 
+     * did not start Overviewer.
+     */
+    private void record(RunState endState) {
+        int regionsChanged = 0;
+        long chunks = 0;
+        for(RenderPlan plan:plans) {
+            if(plan.getRegionsChanged() < 0 || regionsChanged < 0) {
+                regionsChanged = -1;
+            }
+            else {
+                regionsChanged += plan.getRegionsChanged();
+            }
+            chunks += plan.getChunks();
+        }
+        long endMillis = System.currentTimeMillis();
+        double rate = progress.getAverageRate();
+        if(rate <= 0 && endMillis > startMillis) {
+            // Overviewer reported the tile count only once, so there are no updates to time.
+            rate = progress.getTilesDone() * 1000.0 / (endMillis - startMillis);
+        }
+        try {
+            RunHistory.getDefault().append(new RunRecord(getHistoryName(), startMillis, endMillis, endState, 
+                    exitCode, progress.getTilesDone(), rate, resources.getPeakRss(), regionsChanged, chunks));
+        }
+        catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stop the run, or take it out of the queue if it has not started yet. Returns at once; the Overviewer
+     * processes are ended on another thread and the run reports {@link RunState#STOPPED} only once all of
+     * them are gone.
+     */
+    public void stop() {
+        boolean unsubmitted;
+        synchronized (this) {
+            unsubmitted = running && !submitted;
+            running = false;
+            if(process != null) {
+                terminate();
+            }
+        }
+        if(unsubmitted || scheduler.cancel(this)) {
+            setState(RunState.STOPPED);
+            ended.countDown();
+        }
+    }
+
+    /**
+     * Record that the run is about to be submitted to the scheduler. Until then the scheduler does not know
+     * the run, so {@link #stop()} ends it at once instead of taking it out of the queue.
+     * 
+     * @return false if the run was stopped already and must not be submitted
+     */
+    public synchronized boolean markSubmitted() {
+        submitted = running;
+        return submitted;
+    }
+
+    /**
+     * Set the priority. Must be called before the run is submitted.
+     * 
+     * @param priority
+     * @param lowerNice Lower the CPU and I/O priority of the processes if the priority is {@link RunPriority#LOW}.
+     */
+    public void setPriority(RunPriority priority, boolean lowerNice) {
+        this.priority = priority;
+        this.lowerNice = lowerNice;
+    }
+
+    @Override
+    public RunPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Set the estimated duration the scheduler may order the queue by. Must be called before the run is 
+     * submitted.
+     * 
+     * @param estimatedSeconds the estimated duration in seconds, or -1 if unknown
+     */
+    public void setEstimatedSeconds(long estimatedSeconds) {
+        this.estimatedSeconds = estimatedSeconds;
+    }
+
+    @Override
+    public long getEstimatedSeconds() {
+        return estimatedSeconds;
+    }
+
+    /**
+     * Stop all processes of the run with SIGSTOP. A run that has not started its process yet starts it 
+     * paused.
+     */
+    @Override
+    public boolean pause() {
+        if(!ProcessTree.isSignalSupported()) {
+            return false;
+        }
+        synchronized (this) {
+            if(!running) {
+                return false;
+            }
+            paused = true;
+            if(process == null) {
+                return true;
+            }
+            new ProcessTree(process.toHandle()).signal("STOP");
+        }
+        setState(RunState.PAUSED);
+        return true;
+    }
+
+    /**
+     * Continue all processes of the run with SIGCONT.
+     */
+    @Override
+    public void resume() {
+        synchronized (this) {
+            paused = false;
+            if(process == null) {
+                return;
+            }
+            new ProcessTree(process.toHandle()).signal("CONT");
+        }
+        if(isRunning()) {
+            setState(RunState.RUNNING);
+        }
+    }
+
+    /**
+     * Wait for the run to end.
+     * 
+     * @param timeoutMillis
+     * @return true if the run has ended, false if the time ran out
+     * @throws InterruptedException
+     */
+    public boolean awaitEnd(long timeoutMillis) throws InterruptedException {
+        return ended.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * End the whole process tree on its own thread. Ending the tree also closes the output pipe, which 
+     * wakes up the reader at once even when Overviewer is quiet. Must hold the lock.
+     */
+    private void terminate() {
+        if(terminator == null) {
+            final ProcessTree tree = new ProcessTree(process.toHandle());
+            terminator = ReaderThreads.start("Overviewer stop - " + map, new Runnable() {
+                
+                @Override
+                public void run() {
+                    try {
+                        survivors = tree.terminate(STOP_GRACE_MILLIS);
+                    }
+                    catch (InterruptedException e) {
+                        e.getMessage();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Wait until the process tree has been ended and tell the listener if any process survived.
+     */
+    private void awaitTermination() throws InterruptedException, IOException {
+        Thread current;
+        synchronized (this) {
+            current = terminator;
+        }
+        if(current != null) {
+            current.join();
+        }
+        List<ProcessHandle> alive = survivors;
+        if(alive != null && !alive.isEmpty()) {
+            StringBuilder pids = new StringBuilder();
+            for(ProcessHandle handle:alive) {
+                pids.append(' ').append(handle.pid());
+            }
+            message("Unable to stop Overviewer processes:" + pids + "\n");
+        }
+    }
+
+    /**
+     * @return true from the time the run is queued until it ends or is stopped
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    private synchronized void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    /**
+     * @return the map
+     */
+    public String getMap() {
+        return map;
+    }
+
+    /**
+     * @return the maps rendered by this run
+     */
+    public List<String> getMaps() {
+        return maps;
+    }
+
+    /**
+     * @return the name the run is kept under in the {@link RunHistory}: the map, or for a batch the maps 
+     * in it, since batches of different maps do not compare
+     */
+    public String getHistoryName() {
+        if(!isBatch()) {
+            return map;
+        }
+        StringBuilder name = new StringBuilder(BATCH_NAME).append(" (");
+        for(int i=0;i<maps.size();i++) {
+            name.append(i == 0 ? "" : ", ").append(maps.get(i));
+        }
+        return name.append(')').toString();
+    }
+
+    /**
+     * @return true if this run renders several maps from a configuration file
+     */
+    public boolean isBatch() {
+        return renderModes != null;
+    }
+
+    /**
+     * @return the state
+     */
+    public RunState getState() {
+        return state;
+    }
+
+    /**
+     * @return the progress parsed from the output
+     */
+    public RenderProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return the CPU, memory and storage use of the process tree
+     */
+    public ResourceHistory getResources() {
+        return resources;
+    }
+
+    /**
+     * @return the time the Overviewer process of the last attempt was started, 0 if it has not started
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return the file holding the complete output, or null before the run has started
+     */
+    public File getLogFile() {
+        LogSpool current = spool;
+        return current == null ? null : current.getFile();
+    }
+
+    private void setState(RunState state) {
+        this.state = state;
+        RenderMetrics.getDefault().runStateChanged(this, state);
+        listener.stateChanged(this, state);
+    }
+
+    /**
+     * Pass a message from the run itself on like Overviewer output, and keep it in the log.
+     */
+    private void message(String text) throws IOException {
+        char chars[] = text.toCharArray();
+        listener.outputRead(this, chars, 0, chars.length);
+        spool.write(text);
+        logIndex.feed(chars, 0, chars.length);
+    }
+
+    /**
+     * Plan the render of a single map.
+     * 
+     * @return the command, or null if there is nothing to render
+     */
+    private List<String> prepareMap() throws IOException {
+        RenderPlan plan = incremental ? RenderPlan.create(new File(mapFolder, map), new File(mapOutputFolder, map)) : RenderPlan.full(new File(mapFolder, map));
+        plans.add(plan);
+        if(plan.getDescription() != null) {
+            message(plan.getDescription() + "\n");
+        }
+        if(plan.getCheckMode() == RenderPlan.CheckMode.SKIP) {
+            return null;
+        }
+        List<String> command = startCommand();
+        command.add("--processes");
+        command.add(Integer.toString(processes));
+        if(plan.getCheckMode().getOption() != null) {
+            command.add(plan.getCheckMode().getOption());
+        }
+        command.add(new File(mapFolder, map).getPath());
+        command.add(createOutputFolder().getPath());
+        return command;
+    }
+
+    /**
+     * Plan the render of every map of the batch and write the configuration file covering them. Maps with 
+     * no changes stay in the configuration so they stay on the rendered map, and so do the maps of earlier 
+     * batches that are still in the save folder, without being rendered.
+     * 
+     * @return the command, or null if none of the maps changed
+     */
+    private List<String> prepareBatch() throws IOException {
+        File output = createOutputFolder();
+        File configFile = new File(output, OverviewerConfig.FILE_NAME);
+        OverviewerConfig previous = OverviewerConfig.read(configFile);
+        OverviewerConfig config = new OverviewerConfig(output, processes);
+        boolean changed = false;
+        for(String world:maps) {
+            File worldFolder = new File(mapFolder, world);
+            RenderPlan plan = incremental ? RenderPlan.create(worldFolder, output, getManifestName(world)) : RenderPlan.full(worldFolder);
+            plans.add(plan);
+            if(plan.getDescription() != null) {
+                message(world + ": " + plan.getDescription() + "\n");
+            }
+            changed |= plan.getCheckMode() != RenderPlan.CheckMode.SKIP;
+            config.addWorld(world, worldFolder, renderModes.get(world), plan.getCheckMode());
+        }
+        if(!changed) {
+            return null;
+        }
+        for(Map.Entry<String, File> world:previous.getWorlds().entrySet()) {
+            if(!maps.contains(world.getKey()) && new File(world.getValue(), "level.dat").isFile()) {
+                config.keepWorld(world.getKey(), world.getValue(), previous.getRenderModes(world.getKey()));
+            }
+        }
+        config.write(configFile);
+        List<String> command = startCommand();
+        command.add("--config");
+        command.add(configFile.getPath());
+        return command;
+    }
+
+    /**
+     * @param world
+     * @return the name of the region manifest of a world in the output folder of a batch
+     */
+    public static String getManifestName(String world) {
+        return "overviewergui-regions-" + world.replaceAll("[^A-Za-z0-9._-]", "_") + ".txt";
+    }
+
+    /**
+     * Start the command as a list of arguments so that paths with spaces are passed through unchanged.
+     */
+    private List<String> startCommand() {
+        List<String> command = new ArrayList<>();
+        
+        if(System.getProperty("os.name").toLowerCase().contains("windows")) {
+            command.add("cmd");
+            command.add("/c");
+        }
+        command.add(overviewerExecutable);
+        return command;
+    }
+
+    private File createOutputFolder() {
+        File output = new File(mapOutputFolder, map);
+        if(!output.exists()) {
+            if(!output.mkdirs()) {
+                throw new RuntimeException("Unable to create output directory: " + output.getAbsolutePath());
+            }
+
+        }
+        return output;
+    }
+}
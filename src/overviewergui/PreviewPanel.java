@@ -0,0 +1,168 @@
+package overviewergui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.BorderFactory;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+/**
+ * Shows the rendered maps in the map output folder with a {@link TileViewer}, read straight from the tile
+ * files so no browser is needed.
+ *
+ * @author Mark Bernard
+ */
+public class PreviewPanel extends JPanel {
+    /** ID for serialization */
+    private static final long serialVersionUID = 6902316440152835734L;
+    /** Most of the heap the decoded tiles may take. */
+    private static final long MAX_CACHE_BYTES = 256L * 1024 * 1024;
+
+    private File outputFolder;
+    private JComboBox<String> maps = new JComboBox<>();
+    private JComboBox<String> renders = new JComboBox<>();
+    private JLabel zoomLabel = new JLabel();
+    private TileViewer viewer;
+    private boolean updating;
+
+    /**
+     * Create the panel. Nothing is shown until an output folder is set.
+     */
+    public PreviewPanel() {
+        setLayout(new BorderLayout());
+        viewer = new TileViewer(new TileCache(Math.min(MAX_CACHE_BYTES, Runtime.getRuntime().maxMemory() / 4)));
+        add(viewer, BorderLayout.CENTER);
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.setBorder(BorderFactory.createEmptyBorder(0, 0, 5, 0));
+        add(controls, BorderLayout.NORTH);
+        controls.add(new JLabel("Map"));
+        controls.add(maps);
+        controls.add(new JLabel("Render"));
+        controls.add(renders);
+        JButton zoomOut = new JButton("-");
+        controls.add(zoomOut);
+        JButton zoomIn = new JButton("+");
+        controls.add(zoomIn);
+        controls.add(zoomLabel);
+        JButton reload = new JButton("Reload");
+        reload.setToolTipText("Read the tiles again after the map was rendered");
+        controls.add(reload);
+
+        maps.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if(!updating) {
+                    showRenders();
+                }
+            }
+        });
+        renders.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if(!updating) {
+                    showRender();
+                }
+            }
+        });
+        zoomOut.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                viewer.zoom(-1);
+            }
+        });
+        zoomIn.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                viewer.zoom(1);
+            }
+        });
+        reload.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                viewer.reload();
+            }
+        });
+        viewer.setZoomListener(new Runnable() {
+
+            @Override
+            public void run() {
+                TilePyramid pyramid = viewer.getPyramid();
+                zoomLabel.setText(pyramid == null ? "" : "Zoom " + viewer.getZoom() + " of " + pyramid.getMaxZoom());
+            }
+        });
+    }
+
+    /**
+     * List the maps of an output folder, keeping the map shown if it is still there.
+     *
+     * @param mapOutputFolder
+     */
+    public void setOutputFolder(String mapOutputFolder) {
+        outputFolder = new File(mapOutputFolder);
+        Object selected = maps.getSelectedItem();
+        DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>();
+        File folders[] = outputFolder.listFiles();
+        if(folders != null) {
+            Arrays.sort(folders);
+            for(File folder:folders) {
+                if(folder.isDirectory() && !TilePyramid.listRenders(folder).isEmpty()) {
+                    model.addElement(folder.getName());
+                }
+            }
+        }
+        updating = true;
+        maps.setModel(model);
+        if(selected != null && model.getIndexOf(selected) >= 0) {
+            maps.setSelectedItem(selected);
+        }
+        updating = false;
+        if(selected == null || !selected.equals(maps.getSelectedItem())) {
+            showRenders();
+        }
+    }
+
+    private void showRenders() {
+        DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>();
+        Object map = maps.getSelectedItem();
+        if(map != null) {
+            List<String> names = TilePyramid.listRenders(new File(outputFolder, map.toString()));
+            for(String name:names) {
+                model.addElement(name);
+            }
+        }
+        updating = true;
+        renders.setModel(model);
+        updating = false;
+        showRender();
+    }
+
+    private void showRender() {
+        Object map = maps.getSelectedItem();
+        Object render = renders.getSelectedItem();
+        TilePyramid pyramid = null;
+        if(map != null && render != null) {
+            try {
+                pyramid = TilePyramid.open(new File(new File(outputFolder, map.toString()), render.toString()));
+            }
+            catch (FileNotFoundException e) {
+                e.getMessage();
+            }
+        }
+        viewer.setPyramid(pyramid);
+    }
+}
@@ -0,0 +1,180 @@
+package overviewergui;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ends a process together with every process it started. Overviewer renders with a pool of worker
+ * processes, and on Windows it runs below a <code>cmd</code> wrapper, so ending only the process that was
+ * started leaves the workers running and using every core.
+ *
+ * @author Mark Bernard
+ */
+public class ProcessTree {
+    /** Nice value of runs with {@link RunPriority#LOW}. */
+    public static final int LOW_PRIORITY_NICE = 10;
+    private static final boolean POSIX = !System.getProperty("os.name").toLowerCase().contains("windows");
+
+    private ProcessHandle root;
+
+    /**
+     * @param root The process that was started.
+     */
+    public ProcessTree(ProcessHandle root) {
+        this.root = root;
+    }
+
+    /**
+     * Ask every process of the tree to end, then force the ones still alive after the grace period. The
+     * tree is listed before anything is ended, because once a parent is gone its children can no longer be
+     * found through it.
+     *
+     * @param graceMillis How long the processes get to end by themselves, and then to end when forced.
+     * @return the processes still alive at the end, empty if the whole tree is gone
+     * @throws InterruptedException
+     */
+    public List<ProcessHandle> terminate(long graceMillis) throws InterruptedException {
+        List<ProcessHandle> tree = new ArrayList<>();
+        addTree(root, tree);
+        for(ProcessHandle process:tree) {
+            process.destroy();
+        }
+        // A paused process only acts on the request to end once it continues.
+        signal(tree, "CONT");
+        List<ProcessHandle> alive = await(tree, graceMillis);
+        // Processes that survived may have started children while the tree was ending.
+        for(ProcessHandle process:new ArrayList<>(alive)) {
+            addTree(process, alive);
+        }
+        for(ProcessHandle process:alive) {
+            process.destroyForcibly();
+        }
+        return await(alive, graceMillis);
+    }
+
+    /**
+     * @return true if processes can be paused and continued with signals
+     */
+    public static boolean isSignalSupported() {
+        return POSIX;
+    }
+
+    /**
+     * Send a signal to every process of the tree.
+     *
+     * @param signal Name of the signal without SIG, for example STOP or CONT.
+     * @return true if the signal was sent
+     */
+    public boolean signal(String signal) {
+        List<ProcessHandle> tree = new ArrayList<>();
+        addTree(root, tree);
+        return signal(tree, signal);
+    }
+
+    /**
+     * Lower the CPU and I/O priority of every process of the tree. Processes started later by the tree
+     * inherit the lower priority.
+     */
+    public void lowerPriority() {
+        if(!POSIX) {
+            return;
+        }
+        List<ProcessHandle> tree = new ArrayList<>();
+        addTree(root, tree);
+        List<String> renice = new ArrayList<>();
+        renice.add("renice");
+        renice.add("-n");
+        renice.add(Integer.toString(LOW_PRIORITY_NICE));
+        renice.add("-p");
+        List<String> ionice = new ArrayList<>();
+        ionice.add("ionice");
+        ionice.add("-c");
+        ionice.add("3");
+        ionice.add("-p");
+        for(ProcessHandle process:tree) {
+            renice.add(Long.toString(process.pid()));
+            ionice.add(Long.toString(process.pid()));
+        }
+        execute(renice);
+        execute(ionice);
+    }
+
+    private static boolean signal(List<ProcessHandle> processes, String signal) {
+        if(!POSIX || processes.isEmpty()) {
+            return false;
+        }
+        List<String> command = new ArrayList<>();
+        command.add("kill");
+        command.add("-" + signal);
+        for(ProcessHandle process:processes) {
+            command.add(Long.toString(process.pid()));
+        }
+        execute(command);
+        return true;
+    }
+
+    /**
+     * Run a system command and wait for it. Failures are ignored, processes may have ended in the meantime.
+     */
+    private static void execute(List<String> command) {
+        try {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            builder.start().waitFor();
+        }
+        catch (IOException e) {
+            e.getMessage();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Add the descendants of the process that are still alive and are not in the list yet, followed by 
+     * the process itself.
+     */
+    private static void addTree(ProcessHandle process, List<ProcessHandle> tree) {
+        Iterator<ProcessHandle> descendants = process.descendants().iterator();
+        while(descendants.hasNext()) {
+            ProcessHandle descendant = descendants.next();
+            if(!tree.contains(descendant)) {
+                tree.add(descendant);
+            }
+        }
+        if(!tree.contains(process)) {
+            tree.add(process);
+        }
+    }
+
+    /**
+     * Wait until the processes have ended or the time is up.
+     *
+     * @return the processes still alive
+     */
+    private static List<ProcessHandle> await(List<ProcessHandle> processes, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<ProcessHandle> alive = new ArrayList<>();
+        for(ProcessHandle process:processes) {
+            long remaining = deadline - System.nanoTime();
+            try {
+                if(remaining > 0) {
+                    process.onExit().get(remaining, TimeUnit.NANOSECONDS);
+                }
+            }
+            catch (ExecutionException | TimeoutException e) {
+                e.getMessage();
+            }
+            if(process.isAlive()) {
+                alive.add(process);
+            }
+        }
+        return alive;
+    }
+}
@@ -0,0 +1,152 @@
+package overviewergui;
+
+/**
+ * Turns Overviewer output into {@link RenderProgress} updates. Output is fed in as the raw character chunks 
+ * read from the process and lines are matched in a reused buffer, so parsing does not create any objects on 
+ * the read path.
+ * 
+ * @author Mark Bernard
+ */
+public class ProgressParser {
+    /** Longer lines are only parsed up to this length. */
+    private static final int MAX_LINE = 512;
+    private static final char RENDERED[] = "Rendered ".toCharArray();
+    private static final char OF[] = " of ".toCharArray();
+    private static final char TOTAL_TILES[] = " total tiles".toCharArray();
+    private static final char PREPROCESSING[] = "Preprocessing".toCharArray();
+    private static final char SCANNING[] = "canning".toCharArray();
+    private static final char RENDERING[] = "Rendering".toCharArray();
+    private static final char RENDER_WRITTEN[] = "render has been written".toCharArray();
+    private static final char RENDERING_COMPLETE[] = "Rendering complete".toCharArray();
+    
+    private RenderProgress progress;
+    private char line[];
+    private int lineLength;
+    private int numberEnd;
+    
+    /**
+     * Create a parser that writes to the provided progress.
+     * 
+     * @param progress
+     */
+    public ProgressParser(RenderProgress progress) {
+        this.progress = progress;
+        line = new char[MAX_LINE];
+    }
+    
+    /**
+     * Parse a chunk of output. Lines may be split across chunks.
+     * 
+     * @param buffer
+     * @param offset
+     * @param length
+     */
+    public void feed(char buffer[], int offset, int length) {
+        int end = offset + length;
+        for(int i=offset;i<end;i++) {
+            char c = buffer[i];
+            if(c == '\n' || c == '\r') {
+                if(lineLength > 0) {
+                    parseLine();
+                    lineLength = 0;
+                }
+            }
+            else if(lineLength < MAX_LINE) {
+                line[lineLength++] = c;
+            }
+        }
+    }
+    
+    /**
+     * Parse whatever is left after the last line break. Called when the output has ended.
+     */
+    public void finish() {
+        if(lineLength > 0) {
+            parseLine();
+            lineLength = 0;
+        }
+    }
+    
+    private void parseLine() {
+        int at = indexOf(RENDERED, 0);
+        if(at >= 0) {
+            long done = parseNumber(at + RENDERED.length);
+            if(done >= 0 && startsWith(OF, numberEnd)) {
+                long total = parseNumber(numberEnd + OF.length);
+                if(total >= 0) {
+                    progress.updateTiles(done, total, System.nanoTime());
+                    return;
+                }
+            }
+        }
+        at = indexOf(TOTAL_TILES, 0);
+        if(at > 0) {
+            int start = at;
+            while(start > 0 && (Character.isDigit(line[start - 1]) || line[start - 1] == ',')) {
+                start--;
+            }
+            long total = parseNumber(start);
+            if(total >= 0) {
+                progress.setTilesTotal(total);
+            }
+        }
+        if(indexOf(RENDER_WRITTEN, 0) >= 0 || indexOf(RENDERING_COMPLETE, 0) >= 0) {
+            progress.setPhase(RenderPhase.FINISHED);
+        }
+        else if(indexOf(PREPROCESSING, 0) >= 0) {
+            progress.setPhase(RenderPhase.PREPROCESSING);
+        }
+        else if(indexOf(SCANNING, 0) >= 0) {
+            progress.setPhase(RenderPhase.SCANNING);
+        }
+        else if(indexOf(RENDERING, 0) >= 0) {
+            progress.setPhase(RenderPhase.RENDERING);
+        }
+    }
+    
+    /**
+     * Parse digits, allowing thousands separators, starting at the index.
+     * 
+     * @return the number or -1 if there are no digits at the index. {@link #numberEnd} is set to the index 
+     * after the number.
+     */
+    private long parseNumber(int start) {
+        long value = 0;
+        boolean digits = false;
+        int i = start;
+        for(;i<lineLength;i++) {
+            char c = line[i];
+            if(c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits = true;
+            }
+            else if(c != ',' || !digits) {
+                break;
+            }
+        }
+        numberEnd = i;
+        return digits ? value : -1;
+    }
+    
+    private boolean startsWith(char token[], int start) {
+        if(start + token.length > lineLength) {
+            return false;
+        }
+        for(int i=0;i<token.length;i++) {
+            if(line[start + i] != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private int indexOf(char token[], int from) {
+        int last = lineLength - token.length;
+        for(int i=from;i<=last;i++) {
+            if(line[i] == token[0] && startsWith(token, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
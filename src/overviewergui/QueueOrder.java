@@ -0,0 +1,48 @@
+package overviewergui;
+
+/**
+ * Order in which queued runs of the same priority are started, based on their estimated durations.
+ * 
+ * @author Mark Bernard
+ */
+public enum QueueOrder {
+    /** In the order the maps were selected. */
+    SELECTED("As Selected"),
+    /** Quickest runs first, so most maps are done early. */
+    SHORTEST_FIRST("Shortest First"),
+    /** Slowest runs first, so the long runs do not start last and keep one core busy while the others idle. */
+    LONGEST_FIRST("Longest First");
+    
+    private String displayName;
+    
+    private QueueOrder(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * @return the name shown to the user
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * @param first Estimated duration of a run, -1 if unknown.
+     * @param second Estimated duration of another run, -1 if unknown.
+     * @return true if the first run should start before the second; runs without an estimate start last
+     */
+    public boolean before(long first, long second) {
+        if(this == SELECTED || first < 0) {
+            return false;
+        }
+        if(second < 0) {
+            return true;
+        }
+        return this == SHORTEST_FIRST ? first < second : first > second;
+    }
+    
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
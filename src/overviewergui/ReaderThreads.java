@@ -0,0 +1,67 @@
+package overviewergui;
+
+import java.lang.reflect.Method;
+
+/**
+ * Starts the threads that wait on Overviewer output. These threads spend almost all of their time blocked
+ * in a read, so on a Java runtime with virtual threads they are started as virtual threads; otherwise they
+ * are ordinary daemon threads.
+ *
+ * @author Mark Bernard
+ */
+public class ReaderThreads {
+    private static final Object VIRTUAL_BUILDER;
+    private static final Method NAME;
+    private static final Method START;
+
+    static {
+        Object builder = null;
+        Method name = null;
+        Method start = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            name = builderClass.getMethod("name", String.class);
+            start = builderClass.getMethod("start", Runnable.class);
+        }
+        catch (ReflectiveOperationException e) {
+            builder = null;
+        }
+        VIRTUAL_BUILDER = builder;
+        NAME = name;
+        START = start;
+    }
+
+    private ReaderThreads() {}
+
+    /**
+     * Start a thread for the task.
+     *
+     * @param name Name of the thread.
+     * @param task
+     * @return the started thread
+     */
+    public static Thread start(String name, Runnable task) {
+        if(VIRTUAL_BUILDER != null) {
+            try {
+                synchronized (VIRTUAL_BUILDER) {
+                    return (Thread)START.invoke(NAME.invoke(VIRTUAL_BUILDER, name), task);
+                }
+            }
+            catch (ReflectiveOperationException e) {
+                e.getMessage();
+            }
+        }
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    /**
+     * @return true if the threads are virtual threads
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL_BUILDER != null;
+    }
+}
@@ -0,0 +1,358 @@
+package overviewergui;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Size, modification time and header checksum of every region file of a world. Comparing the manifest 
+ * saved after the last render with a fresh scan tells which regions changed since then.
+ * <p>
+ * The checksum covers the 8 KB header of the region file, which holds the location and save time of every 
+ * chunk. It only changes when chunks are saved, so it separates real changes from files that were merely 
+ * touched or copied, and it is only read for files whose size or modification time changed.
+ * 
+ * @author Mark Bernard
+ */
+public class RegionManifest {
+    /** Name of the manifest file kept in the map output folder. */
+    public static final String FILE_NAME = "overviewergui-regions.txt";
+    private static final String HEADER = "# Overviewer GUI region manifest";
+    private static final String REGION_FOLDERS[] = {"region", "DIM-1/region", "DIM1/region"};
+    private static final int REGION_HEADER_SIZE = 8192;
+    /** The first 4 KB of the header hold one location entry per chunk, zero where the chunk does not exist. */
+    private static final int LOCATION_TABLE_SIZE = 4096;
+    private static final FileFilter REGION_FILES = new FileFilter() {
+        
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && file.getName().endsWith(".mca");
+        }
+    };
+    
+    private Map<String, RegionEntry> entries;
+    
+    private RegionManifest() {
+        entries = new TreeMap<>();
+    }
+    
+    /**
+     * Scan the region folders of a world. Checksums are copied from the previous manifest for regions whose 
+     * size and modification time are unchanged.
+     * 
+     * @param world World folder.
+     * @param previous Manifest of the last render, or null.
+     * @return the manifest of the world as it is now
+     * @throws IOException
+     */
+    public static RegionManifest scan(File world, RegionManifest previous) throws IOException {
+        RegionManifest manifest = new RegionManifest();
+        byte header[] = new byte[REGION_HEADER_SIZE];
+        CRC32 crc = new CRC32();
+        for(String folderName:REGION_FOLDERS) {
+            File regions[] = new File(world, folderName).listFiles(REGION_FILES);
+            if(regions == null) {
+                continue;
+            }
+            for(File region:regions) {
+                String name = folderName + "/" + region.getName();
+                long size = region.length();
+                long modified = region.lastModified();
+                RegionEntry old = previous == null ? null : previous.entries.get(name);
+                RegionEntry entry;
+                if(old != null && old.size == size && old.modified == modified) {
+                    entry = new RegionEntry(size, modified, old.checksum);
+                }
+                else {
+                    int length = readHeader(region, header);
+                    crc.reset();
+                    crc.update(header, 0, length);
+                    entry = new RegionEntry(size, modified, crc.getValue());
+                    entry.chunks = countChunks(ByteBuffer.wrap(header, 0, length));
+                }
+                manifest.entries.put(name, entry);
+            }
+        }
+        return manifest;
+    }
+    
+    /**
+     * List the region files of every dimension of a world.
+     * 
+     * @param world World folder.
+     * @return the region files, empty if the world has none
+     */
+    public static List<File> listRegionFiles(File world) {
+        List<File> files = new ArrayList<>();
+        for(String folderName:REGION_FOLDERS) {
+            File regions[] = new File(world, folderName).listFiles(REGION_FILES);
+            if(regions != null) {
+                files.addAll(Arrays.asList(regions));
+            }
+        }
+        return files;
+    }
+    
+    /**
+     * Load a saved manifest.
+     * 
+     * @param file
+     * @return the manifest or null if the file does not exist or is not a manifest
+     * @throws IOException
+     */
+    public static RegionManifest load(File file) throws IOException {
+        if(!file.isFile()) {
+            return null;
+        }
+        RegionManifest manifest = new RegionManifest();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+            if(!HEADER.equals(in.readLine())) {
+                return null;
+            }
+            String line;
+            while((line = in.readLine()) != null) {
+                String parts[] = line.split("\t");
+                if(parts.length == 4) {
+                    manifest.entries.put(parts[0], new RegionEntry(Long.parseLong(parts[1]), 
+                            Long.parseLong(parts[2]), Long.parseLong(parts[3])));
+                }
+            }
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+        return manifest;
+    }
+    
+    /**
+     * Save the manifest. The file is replaced in one step so a failed write leaves the old manifest.
+     * 
+     * @param file
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"))) {
+            out.write(HEADER);
+            out.write('\n');
+            for(Map.Entry<String, RegionEntry> entry:entries.entrySet()) {
+                RegionEntry region = entry.getValue();
+                out.write(entry.getKey() + "\t" + region.size + "\t" + region.modified + "\t" + region.checksum + "\n");
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    /**
+     * @return the number of region files
+     */
+    public int size() {
+        return entries.size();
+    }
+    
+    /**
+     * @return the number of chunks in all regions, or -1 if the header of a region was not read by the scan
+     */
+    public long getChunks() {
+        long chunks = 0;
+        for(RegionEntry entry:entries.values()) {
+            if(entry.chunks < 0) {
+                return -1;
+            }
+            chunks += entry.chunks;
+        }
+        return chunks;
+    }
+    
+    /**
+     * Compare this manifest, taken at the last render, with a newer one.
+     * 
+     * @param newer
+     * @return the differences
+     */
+    public RegionChanges compare(RegionManifest newer) {
+        RegionChanges changes = new RegionChanges();
+        for(Map.Entry<String, RegionEntry> entry:newer.entries.entrySet()) {
+            RegionEntry now = entry.getValue();
+            RegionEntry then = entries.get(entry.getKey());
+            if(then == null) {
+                changes.added++;
+                changes.changedChunks += Math.max(0, now.chunks);
+            }
+            else if(then.checksum != now.checksum) {
+                changes.changed++;
+                changes.changedChunks += Math.max(0, now.chunks);
+                if(now.modified < then.modified) {
+                    changes.olderThanLastRender++;
+                }
+            }
+            else {
+                changes.unchanged++;
+            }
+        }
+        for(String name:entries.keySet()) {
+            if(!newer.entries.containsKey(name)) {
+                changes.removed++;
+            }
+        }
+        return changes;
+    }
+    
+    /**
+     * Count the chunks of a region file from its location table, which is memory-mapped so only the one 
+     * page is read however large the region is.
+     * 
+     * @param region
+     * @return the number of chunks saved in the region
+     * @throws IOException
+     */
+    public static int countChunks(File region) throws IOException {
+        try (FileChannel channel = FileChannel.open(region.toPath(), StandardOpenOption.READ)) {
+            long length = Math.min(channel.size(), LOCATION_TABLE_SIZE);
+            if(length == 0) {
+                return 0;
+            }
+            return countChunks(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+        }
+    }
+    
+    /**
+     * Count the chunks of several region files.
+     * 
+     * @param regions
+     * @return the number of chunks saved in the regions
+     * @throws IOException
+     */
+    public static long countChunks(List<File> regions) throws IOException {
+        long chunks = 0;
+        for(File region:regions) {
+            chunks += countChunks(region);
+        }
+        return chunks;
+    }
+    
+    private static int countChunks(ByteBuffer header) {
+        int chunks = 0;
+        int end = Math.min(header.limit(), header.position() + LOCATION_TABLE_SIZE) - 3;
+        for(int i=header.position();i<end;i+=4) {
+            if(header.getInt(i) != 0) {
+                chunks++;
+            }
+        }
+        return chunks;
+    }
+    
+    private static int readHeader(File region, byte header[]) throws IOException {
+        try (InputStream in = new FileInputStream(region)) {
+            int total = 0;
+            int read;
+            while(total < header.length && (read = in.read(header, total, header.length - total)) > 0) {
+                total += read;
+            }
+            return total;
+        }
+    }
+    
+    private static class RegionEntry {
+        private long size;
+        private long modified;
+        private long checksum;
+        /** Chunks in the region, -1 when the header was not read. Not saved. */
+        private int chunks = -1;
+        
+        public RegionEntry(long size, long modified, long checksum) {
+            this.size = size;
+            this.modified = modified;
+            this.checksum = checksum;
+        }
+    }
+    
+    /**
+     * Counts of region files by how they differ between two manifests.
+     */
+    public static class RegionChanges {
+        private int added;
+        private int changed;
+        private int removed;
+        private int unchanged;
+        private int olderThanLastRender;
+        private long changedChunks;
+
+        /**
+         * @return the number of regions that are new
+         */
+        public int getAdded() {
+            return added;
+        }
+
+        /**
+         * @return the number of regions whose chunks changed
+         */
+        public int getChanged() {
+            return changed;
+        }
+
+        /**
+         * @return the number of regions that were deleted
+         */
+        public int getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return the number of regions that did not change
+         */
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * @return the number of changed regions that are older than at the last render, as happens when a 
+         * backup is restored
+         */
+        public int getOlderThanLastRender() {
+            return olderThanLastRender;
+        }
+        
+        /**
+         * @return the number of chunks in the regions that are new or changed
+         */
+        public long getChangedChunks() {
+            return changedChunks;
+        }
+        
+        /**
+         * @return true if nothing changed
+         */
+        public boolean isEmpty() {
+            return added == 0 && changed == 0 && removed == 0;
+        }
+        
+        /**
+         * @return the fraction of the current regions that are new or changed
+         */
+        public double getChangedFraction() {
+            int total = added + changed + unchanged;
+            return total == 0 ? 0 : (double)(added + changed) / total;
+        }
+    }
+}
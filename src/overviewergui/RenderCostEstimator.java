@@ -0,0 +1,273 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Estimates how long Overviewer will take for a world: the chunks it has to render, counted from the
+ * location tables of the region files, times the seconds per chunk of the last completed runs of the world
+ * in the {@link RunHistory}. An incremental run only counts the regions saved since the last render.
+ * Worlds without history use the average of all worlds, or a rough default until anything has been
+ * rendered.
+ * <p>
+ * Estimates for the map list are made on a background thread and kept for a minute.
+ *
+ * @author Mark Bernard
+ */
+public class RenderCostEstimator {
+    /** Used until a run has been recorded; a few hundred chunks a minute is usual for a single core. */
+    private static final double DEFAULT_SECONDS_PER_CHUNK = 0.2;
+    /** Number of recent runs the seconds per chunk of a world is taken from. */
+    private static final int HISTORY_RUNS = 10;
+    /** An estimate shown again after this long is made again. */
+    private static final long RECHECK_MILLIS = 60000;
+
+    private RunHistory history;
+    private Map<String, Estimate> estimates;
+    private Map<String, Long> checkedAt;
+    private double averageSecondsPerChunk;
+    private String mapOutputFolder;
+    private boolean incremental;
+    private int generation;
+    private ExecutorService executor;
+    private Runnable changeListener;
+    private Executor notifier;
+
+    /**
+     * @param history Source of the seconds per chunk, or null to always use the rough default.
+     */
+    public RenderCostEstimator(RunHistory history) {
+        this.history = history;
+        estimates = new ConcurrentHashMap<>();
+        checkedAt = new HashMap<>();
+        mapOutputFolder = "";
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Render cost estimator");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * @param changeListener called when an estimate changes
+     * @param notifier Runs the listener, such as on the thread of a user interface.
+     */
+    public void setChangeListener(Runnable changeListener, Executor notifier) {
+        this.changeListener = changeListener;
+        this.notifier = notifier;
+    }
+
+    /**
+     * Set the settings the estimates shown in the map list are made for, and drop the estimates made for
+     * other settings. Called on the event dispatch thread.
+     *
+     * @param mapOutputFolder Folder the rendered maps are written to.
+     * @param incremental True if runs compare region files with the last render.
+     */
+    public void setSettings(String mapOutputFolder, boolean incremental) {
+        if(!this.mapOutputFolder.equals(mapOutputFolder) || this.incremental != incremental) {
+            this.mapOutputFolder = mapOutputFolder;
+            this.incremental = incremental;
+            synchronized (this) {
+                generation++;
+                averageSecondsPerChunk = 0;
+            }
+            estimates.clear();
+            checkedAt.clear();
+        }
+    }
+
+    /**
+     * Get the estimate for a world for the current settings and, the first time it is asked for or if it is
+     * a minute old, make it again in the background. Called on the event dispatch thread.
+     *
+     * @param world World folder.
+     * @return the last estimate, or null if none has been made yet
+     */
+    public Estimate get(final File world) {
+        final String key = world.getAbsolutePath();
+        long now = System.currentTimeMillis();
+        Long lastChecked = checkedAt.get(key);
+        if(lastChecked == null || now - lastChecked > RECHECK_MILLIS) {
+            checkedAt.put(key, now);
+            final File output = new File(mapOutputFolder, world.getName());
+            final boolean checkChanges = incremental;
+            final int requested;
+            synchronized (this) {
+                requested = generation;
+            }
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        Estimate estimate = estimate(world, output, checkChanges);
+                        synchronized (RenderCostEstimator.this) {
+                            if(requested != generation) {
+                                return;
+                            }
+                        }
+                        estimates.put(key, estimate);
+                        if(changeListener != null) {
+                            notifier.execute(changeListener);
+                        }
+                    }
+                    catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+        return estimates.get(key);
+    }
+
+    /**
+     * Estimate a run straight away.
+     *
+     * @param world World folder.
+     * @param output Map output folder of the world.
+     * @param incremental True if the run only renders regions changed since the last render.
+     * @return the estimate
+     * @throws IOException
+     */
+    public Estimate estimate(File world, File output, boolean incremental) throws IOException {
+        return estimate(world, output, RegionManifest.FILE_NAME, incremental);
+    }
+
+    /**
+     * Estimate a run straight away, for a world whose manifest is kept under its own name. Used for worlds
+     * rendered together in a batch.
+     *
+     * @param world World folder.
+     * @param output Map output folder the world is rendered to.
+     * @param manifestName Name of the manifest file of the world in the output folder.
+     * @param incremental True if the run only renders regions changed since the last render.
+     * @return the estimate
+     * @throws IOException
+     */
+    public Estimate estimate(File world, File output, String manifestName, boolean incremental) throws IOException {
+        List<File> regions = RegionManifest.listRegionFiles(world);
+        File manifest = new File(output, manifestName);
+        if(incremental && manifest.isFile() && new File(output, "overviewerConfig.js").isFile()) {
+            long lastRender = manifest.lastModified();
+            for(int i=regions.size() - 1;i>=0;i--) {
+                if(regions.get(i).lastModified() <= lastRender) {
+                    regions.remove(i);
+                }
+            }
+        }
+        long chunks = RegionManifest.countChunks(regions);
+        double secondsPerChunk = getSecondsPerChunk(world.getName());
+        boolean fromHistory = secondsPerChunk > 0;
+        if(!fromHistory) {
+            secondsPerChunk = getAverageSecondsPerChunk();
+        }
+        return new Estimate(chunks, Math.round(chunks * secondsPerChunk), fromHistory);
+    }
+
+    /**
+     * @return the seconds per chunk of the last completed runs of the world, or 0 if there are none
+     */
+    private double getSecondsPerChunk(String world) throws IOException {
+        if(history == null) {
+            return 0;
+        }
+        List<RunRecord> records = history.getRuns(world);
+        long millis = 0;
+        long chunks = 0;
+        int count = 0;
+        for(int i=records.size() - 1;i>=0 && count < HISTORY_RUNS;i--) {
+            RunRecord record = records.get(i);
+            if(record.getState() == RunState.COMPLETE && record.getChunks() > 0) {
+                millis += record.getDurationMillis();
+                chunks += record.getChunks();
+                count++;
+            }
+        }
+        return chunks == 0 ? 0 : millis / 1000.0 / chunks;
+    }
+
+    /**
+     * @return the average seconds per chunk of all worlds, or the default if nothing has been rendered
+     */
+    private synchronized double getAverageSecondsPerChunk() throws IOException {
+        if(averageSecondsPerChunk == 0) {
+            double total = 0;
+            int worlds = 0;
+            for(String world:history == null ? Collections.<String>emptyList() : history.getWorlds()) {
+                double secondsPerChunk = getSecondsPerChunk(world);
+                if(secondsPerChunk > 0) {
+                    total += secondsPerChunk;
+                    worlds++;
+                }
+            }
+            averageSecondsPerChunk = worlds == 0 ? DEFAULT_SECONDS_PER_CHUNK : total / worlds;
+        }
+        return averageSecondsPerChunk;
+    }
+
+    /**
+     * Estimated cost of one run.
+     */
+    public static class Estimate {
+        private long chunks;
+        private long seconds;
+        private boolean fromHistory;
+
+        /**
+         * @param chunks Chunks Overviewer has to render.
+         * @param seconds Estimated duration.
+         * @param fromHistory True if the world has been rendered before.
+         */
+        public Estimate(long chunks, long seconds, boolean fromHistory) {
+            this.chunks = chunks;
+            this.seconds = seconds;
+            this.fromHistory = fromHistory;
+        }
+
+        /**
+         * @return the chunks Overviewer has to render
+         */
+        public long getChunks() {
+            return chunks;
+        }
+
+        /**
+         * @return the estimated duration in seconds
+         */
+        public long getSeconds() {
+            return seconds;
+        }
+
+        /**
+         * @return true if the estimate is based on earlier runs of the same world
+         */
+        public boolean isFromHistory() {
+            return fromHistory;
+        }
+
+        /**
+         * @return a short text for the map list
+         */
+        public String getSummary() {
+            if(chunks == 0) {
+                return "nothing to render";
+            }
+            return String.format("%,d chunks, about %s%s", chunks, RenderProgress.formatDuration(seconds),
+                    fromHistory ? "" : " (not rendered before)");
+        }
+    }
+}
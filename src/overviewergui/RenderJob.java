@@ -0,0 +1,37 @@
+package overviewergui;
+
+/**
+ * A run that waits in the {@link RenderScheduler} until a render slot is free.
+ * 
+ * @author Mark Bernard
+ */
+public interface RenderJob {
+    /**
+     * Start the run. The job must call {@link RenderScheduler#finished(RenderJob)} once it has ended.
+     * 
+     * @param processes Number of worker processes Overviewer may use.
+     */
+    void start(int processes);
+    
+    /**
+     * @return the priority of the run
+     */
+    RunPriority getPriority();
+    
+    /**
+     * @return the estimated duration of the run in seconds, or -1 if unknown
+     */
+    long getEstimatedSeconds();
+    
+    /**
+     * Pause the run while a run of higher priority is active.
+     * 
+     * @return true if the run will be paused, false if pausing is not supported
+     */
+    boolean pause();
+    
+    /**
+     * Continue a paused run.
+     */
+    void resume();
+}
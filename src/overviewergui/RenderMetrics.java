@@ -0,0 +1,250 @@
+package overviewergui;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of all runs of this process, published as JMX MBeans and read by the {@link MetricsEndpoint}.
+ * Counters updated on the reader threads and the event dispatch thread are {@link LongAdder}s, so updates
+ * from several threads do not contend; gauges are read from the live runs only when asked for.
+ * <p>
+ * Every run is registered as a {@link RunMetrics} MBean named after its map while it is queued or running.
+ *
+ * @author Mark Bernard
+ */
+public class RenderMetrics implements RenderMetricsMBean {
+    /** Name the metrics are registered under. */
+    public static final String OBJECT_NAME = "overviewergui:type=RenderMetrics";
+    private static final RenderMetrics INSTANCE = new RenderMetrics();
+
+    private Map<OverviewerRun, RunMetrics> runs;
+    private AtomicLong nextId;
+    private LongAdder completed;
+    private LongAdder failed;
+    private LongAdder stopped;
+    private LongAdder skipped;
+    private LongAdder logBytes;
+    private LongAdder frames;
+    private LongAdder frameNanos;
+    private LongAccumulator maxFrameNanos;
+    private MBeanServer server;
+
+    private RenderMetrics() {
+        runs = new ConcurrentHashMap<>();
+        nextId = new AtomicLong();
+        completed = new LongAdder();
+        failed = new LongAdder();
+        stopped = new LongAdder();
+        skipped = new LongAdder();
+        logBytes = new LongAdder();
+        frames = new LongAdder();
+        frameNanos = new LongAdder();
+        maxFrameNanos = new LongAccumulator(new LongBinaryOperator() {
+
+            @Override
+            public long applyAsLong(long left, long right) {
+                return Math.max(left, right);
+            }
+        }, 0);
+        server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the metrics of this process
+     */
+    public static RenderMetrics getDefault() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start tracking a run that was created in the queued state.
+     *
+     * @param run
+     */
+    public void runCreated(OverviewerRun run) {
+        RunMetrics metrics = new RunMetrics(run);
+        runs.put(run, metrics);
+        try {
+            ObjectName name = new ObjectName("overviewergui:type=Run,world=" + ObjectName.quote(run.getHistoryName()) + ",id=" + nextId.incrementAndGet());
+            server.registerMBean(metrics, name);
+            metrics.setObjectName(name);
+        }
+        catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Count a run that has ended and stop tracking it. Other states need nothing, the gauges are read from
+     * the runs.
+     *
+     * @param run
+     * @param state
+     */
+    public void runStateChanged(OverviewerRun run, RunState state) {
+        if(!state.isFinished()) {
+            return;
+        }
+        RunMetrics metrics = runs.remove(run);
+        if(metrics == null) {
+            return;
+        }
+        switch(state) {
+        case COMPLETE:
+            completed.increment();
+            break;
+        case FAILED:
+            failed.increment();
+            break;
+        case STOPPED:
+            stopped.increment();
+            break;
+        default:
+            skipped.increment();
+            break;
+        }
+        if(metrics.getObjectName() != null) {
+            try {
+                server.unregisterMBean(metrics.getObjectName());
+            }
+            catch (JMException e) {
+                e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Count output read from Overviewer. Called on the reader threads.
+     *
+     * @param bytes
+     */
+    public void logRead(int bytes) {
+        logBytes.add(bytes);
+    }
+
+    /**
+     * Count a frame of output moved into the views. Called on the event dispatch thread.
+     *
+     * @param nanos Time the frame took.
+     */
+    public void frameDrained(long nanos) {
+        frames.increment();
+        frameNanos.add(nanos);
+        maxFrameNanos.accumulate(nanos);
+    }
+
+    /**
+     * @return the metrics of the runs that are queued or running
+     */
+    public List<RunMetrics> getRuns() {
+        return new ArrayList<>(runs.values());
+    }
+
+    @Override
+    public int getRunsQueued() {
+        return countRuns(RunState.QUEUED);
+    }
+
+    @Override
+    public int getRunsRunning() {
+        return countRuns(RunState.RUNNING);
+    }
+
+    @Override
+    public int getRunsPaused() {
+        return countRuns(RunState.PAUSED);
+    }
+
+    private int countRuns(RunState state) {
+        int count = 0;
+        for(OverviewerRun run:runs.keySet()) {
+            if(run.getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getRunsCompleted() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getRunsFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getRunsStopped() {
+        return stopped.sum();
+    }
+
+    @Override
+    public long getRunsSkipped() {
+        return skipped.sum();
+    }
+
+    @Override
+    public long getLogBytesIngested() {
+        return logBytes.sum();
+    }
+
+    @Override
+    public long getFramesDrained() {
+        return frames.sum();
+    }
+
+    /**
+     * @return total time taken to move output into the views, in nanoseconds
+     */
+    public long getFrameDrainNanos() {
+        return frameNanos.sum();
+    }
+
+    @Override
+    public double getFrameDrainMeanMillis() {
+        long count = frames.sum();
+        return count == 0 ? 0 : frameNanos.sum() / 1e6 / count;
+    }
+
+    @Override
+    public double getFrameDrainMaxMillis() {
+        return maxFrameNanos.get() / 1e6;
+    }
+
+    @Override
+    public double getChildCpuPercent() {
+        double cpu = 0;
+        for(OverviewerRun run:runs.keySet()) {
+            cpu += run.getResources().getLatest(ResourceHistory.CPU);
+        }
+        return cpu;
+    }
+
+    @Override
+    public long getChildRssBytes() {
+        long rss = 0;
+        for(OverviewerRun run:runs.keySet()) {
+            rss += (long)run.getResources().getLatest(ResourceHistory.RSS);
+        }
+        return rss;
+    }
+}
@@ -0,0 +1,73 @@
+package overviewergui;
+
+/**
+ * Management interface of the {@link RenderMetrics}, registered as {@value RenderMetrics#OBJECT_NAME}.
+ *
+ * @author Mark Bernard
+ */
+public interface RenderMetricsMBean {
+    /**
+     * @return runs waiting for a render slot
+     */
+    int getRunsQueued();
+
+    /**
+     * @return runs with a running Overviewer process
+     */
+    int getRunsRunning();
+
+    /**
+     * @return runs paused for a run of higher priority
+     */
+    int getRunsPaused();
+
+    /**
+     * @return runs that finished without errors
+     */
+    long getRunsCompleted();
+
+    /**
+     * @return runs that finished with errors or could not start Overviewer
+     */
+    long getRunsFailed();
+
+    /**
+     * @return runs stopped by the user
+     */
+    long getRunsStopped();
+
+    /**
+     * @return runs that were not needed because nothing changed
+     */
+    long getRunsSkipped();
+
+    /**
+     * @return bytes of Overviewer output read
+     */
+    long getLogBytesIngested();
+
+    /**
+     * @return frames in which output was moved into the views
+     */
+    long getFramesDrained();
+
+    /**
+     * @return average time taken to move the output of a frame into the views, in milliseconds
+     */
+    double getFrameDrainMeanMillis();
+
+    /**
+     * @return longest time taken to move the output of a frame into the views, in milliseconds
+     */
+    double getFrameDrainMaxMillis();
+
+    /**
+     * @return CPU use of all Overviewer processes in percent of one core
+     */
+    double getChildCpuPercent();
+
+    /**
+     * @return resident memory of all Overviewer processes in bytes
+     */
+    long getChildRssBytes();
+}
@@ -0,0 +1,32 @@
+package overviewergui;
+
+/**
+ * Phases reported by Overviewer while it renders a map.
+ * 
+ * @author Mark Bernard
+ */
+public enum RenderPhase {
+    /** Overviewer has started but not reported a phase yet. */
+    STARTING("Starting"),
+    /** Overviewer is reading textures and settings. */
+    PREPROCESSING("Preprocessing"),
+    /** Overviewer is scanning region files for chunks to render. */
+    SCANNING("Scanning"),
+    /** Overviewer is rendering tiles. */
+    RENDERING("Rendering"),
+    /** Overviewer has written the render. */
+    FINISHED("Finished");
+    
+    private String displayName;
+    
+    private RenderPhase(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * @return the name shown to the user
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+}
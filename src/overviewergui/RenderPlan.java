@@ -0,0 +1,167 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Decides how much work a run of Overviewer needs by comparing the region files of the world with the 
+ * manifest saved after the last successful render.
+ * 
+ * @author Mark Bernard
+ */
+public class RenderPlan {
+    /** Above this fraction of changed regions checking tiles costs more than rendering them all again. */
+    private static final double FORCE_RENDER_FRACTION = 0.5;
+    
+    /**
+     * How Overviewer should decide which tiles to render.
+     */
+    public enum CheckMode {
+        /** Nothing changed, Overviewer is not run. */
+        SKIP(null),
+        /** Let Overviewer decide, used when there is no previous render to compare with. */
+        DEFAULT(null),
+        /** Only render chunks saved since the last render. Cheapest when a few regions changed. */
+        NO_TILE_CHECKS("--no-tile-checks"),
+        /** Check every tile against its chunks. Needed when regions were removed or restored from a backup. */
+        CHECK_TILES("--check-tiles"),
+        /** Render every tile. Cheapest when most regions changed. */
+        FORCE_RENDER("--forcerender");
+        
+        private String option;
+        
+        private CheckMode(String option) {
+            this.option = option;
+        }
+        
+        /**
+         * @return the Overviewer command line option, or null if no option is needed
+         */
+        public String getOption() {
+            return option;
+        }
+    }
+    
+    private CheckMode checkMode;
+    private RegionManifest manifest;
+    private File manifestFile;
+    private String description;
+    private int regionsChanged;
+    private long chunks;
+    
+    private RenderPlan(CheckMode checkMode, RegionManifest manifest, File manifestFile, String description, int regionsChanged, 
+            long chunks) {
+        this.checkMode = checkMode;
+        this.manifest = manifest;
+        this.manifestFile = manifestFile;
+        this.description = description;
+        this.regionsChanged = regionsChanged;
+        this.chunks = chunks;
+    }
+    
+    /**
+     * Scan the world and choose the cheapest check mode.
+     * 
+     * @param world World folder.
+     * @param output Map output folder of the world.
+     * @return the plan
+     * @throws IOException
+     */
+    public static RenderPlan create(File world, File output) throws IOException {
+        return create(world, output, RegionManifest.FILE_NAME);
+    }
+    
+    /**
+     * Scan the world and choose the cheapest check mode, keeping the manifest under its own name. Used when
+     * several worlds are rendered to the same output folder.
+     * 
+     * @param world World folder.
+     * @param output Map output folder the world is rendered to.
+     * @param manifestName Name of the manifest file in the output folder.
+     * @return the plan
+     * @throws IOException
+     */
+    public static RenderPlan create(File world, File output, String manifestName) throws IOException {
+        File manifestFile = new File(output, manifestName);
+        RegionManifest previous = RegionManifest.load(manifestFile);
+        RegionManifest current = RegionManifest.scan(world, previous);
+        if(previous == null || !new File(output, "overviewerConfig.js").isFile()) {
+            long chunks = current.getChunks();
+            if(chunks < 0) {
+                chunks = RegionManifest.countChunks(RegionManifest.listRegionFiles(world));
+            }
+            return new RenderPlan(CheckMode.DEFAULT, current, manifestFile, 
+                    "No previous render to compare with, rendering " + current.size() + " region files.", current.size(), chunks);
+        }
+        RegionManifest.RegionChanges changes = previous.compare(current);
+        String summary = String.format("%d of %d region files new or changed, %d removed", 
+                changes.getAdded() + changes.getChanged(), current.size(), changes.getRemoved());
+        if(changes.isEmpty()) {
+            return new RenderPlan(CheckMode.SKIP, current, manifestFile, 
+                    "No region files changed since the last render, skipping.", 0, 0);
+        }
+        CheckMode mode;
+        if(changes.getRemoved() > 0 || changes.getOlderThanLastRender() > 0) {
+            mode = CheckMode.CHECK_TILES;
+        }
+        else if(changes.getChangedFraction() > FORCE_RENDER_FRACTION) {
+            mode = CheckMode.FORCE_RENDER;
+        }
+        else {
+            mode = CheckMode.NO_TILE_CHECKS;
+        }
+        return new RenderPlan(mode, current, manifestFile, summary + ", using " + mode.getOption() + ".", 
+                changes.getAdded() + changes.getChanged() + changes.getRemoved(), changes.getChangedChunks());
+    }
+    
+    /**
+     * A plan that renders without comparing regions.
+     * 
+     * @param world World folder.
+     * @return the plan
+     * @throws IOException
+     */
+    public static RenderPlan full(File world) throws IOException {
+        return new RenderPlan(CheckMode.DEFAULT, null, null, null, -1, RegionManifest.countChunks(RegionManifest.listRegionFiles(world)));
+    }
+    
+    /**
+     * Record the regions this plan was made from as rendered. Called after Overviewer finished without errors.
+     * 
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+        if(manifest != null) {
+            manifest.save(manifestFile);
+        }
+    }
+
+    /**
+     * @return the check mode
+     */
+    public CheckMode getCheckMode() {
+        return checkMode;
+    }
+
+    /**
+     * @return a line explaining the plan, or null if there is nothing to explain
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the number of region files added, changed or removed since the last render, or -1 if the 
+     * regions were not compared
+     */
+    public int getRegionsChanged() {
+        return regionsChanged;
+    }
+
+    /**
+     * @return the number of chunks in the regions Overviewer is going to render
+     */
+    public long getChunks() {
+        return chunks;
+    }
+}
@@ -0,0 +1,177 @@
+package overviewergui;
+
+/**
+ * Progress of a single Overviewer run as parsed from its output. Written by the thread reading the 
+ * Overviewer output and read by the UI, so all access is synchronized.
+ * 
+ * @author Mark Bernard
+ */
+public class RenderProgress {
+    /** Time constant of the smoothed tiles per second, in seconds. */
+    private static final double SMOOTHING_SECONDS = 10.0;
+    
+    private RenderPhase phase;
+    private long tilesDone;
+    private long tilesTotal;
+    private double instantRate;
+    private double smoothedRate;
+    private long firstNanos;
+    private long firstDone;
+    private long lastNanos;
+    private long version;
+    
+    /**
+     * Create progress for a run that has not started.
+     */
+    public RenderProgress() {
+        reset();
+    }
+    
+    /**
+     * Forget all progress for a new run.
+     */
+    public synchronized void reset() {
+        phase = RenderPhase.STARTING;
+        tilesDone = 0;
+        tilesTotal = 0;
+        instantRate = 0;
+        smoothedRate = 0;
+        firstNanos = 0;
+        firstDone = 0;
+        lastNanos = 0;
+        version++;
+    }
+    
+    /**
+     * @param phase the phase Overviewer is in
+     */
+    public synchronized void setPhase(RenderPhase phase) {
+        if(this.phase != phase) {
+            this.phase = phase;
+            version++;
+        }
+    }
+    
+    /**
+     * @param tilesTotal the number of tiles Overviewer is going to render
+     */
+    public synchronized void setTilesTotal(long tilesTotal) {
+        this.tilesTotal = tilesTotal;
+        version++;
+    }
+    
+    /**
+     * Record a tile count and update the rates.
+     * 
+     * @param done Number of tiles rendered so far.
+     * @param total Number of tiles to render.
+     * @param nanos Time of the update from {@link System#nanoTime()}.
+     */
+    public synchronized void updateTiles(long done, long total, long nanos) {
+        phase = RenderPhase.RENDERING;
+        if(lastNanos == 0) {
+            firstNanos = nanos;
+            firstDone = done;
+        }
+        else if(nanos > lastNanos && done >= tilesDone) {
+            double seconds = (nanos - lastNanos) / 1e9;
+            instantRate = (done - tilesDone) / seconds;
+            if(smoothedRate == 0) {
+                smoothedRate = instantRate;
+            }
+            else {
+                double alpha = 1.0 - Math.exp(-seconds / SMOOTHING_SECONDS);
+                smoothedRate += alpha * (instantRate - smoothedRate);
+            }
+        }
+        lastNanos = nanos;
+        tilesDone = done;
+        tilesTotal = total;
+        version++;
+    }
+    
+    /**
+     * @return a number that changes every time the progress changes
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the phase
+     */
+    public synchronized RenderPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return the number of tiles rendered so far
+     */
+    public synchronized long getTilesDone() {
+        return tilesDone;
+    }
+
+    /**
+     * @return the number of tiles to render, or 0 if not known yet
+     */
+    public synchronized long getTilesTotal() {
+        return tilesTotal;
+    }
+
+    /**
+     * @return tiles per second between the last two updates
+     */
+    public synchronized double getInstantRate() {
+        return instantRate;
+    }
+
+    /**
+     * @return tiles per second smoothed over roughly the last ten seconds
+     */
+    public synchronized double getSmoothedRate() {
+        return smoothedRate;
+    }
+    
+    /**
+     * @return tiles per second since the first tile count of the run
+     */
+    public synchronized double getAverageRate() {
+        if(lastNanos <= firstNanos) {
+            return 0;
+        }
+        return (tilesDone - firstDone) / ((lastNanos - firstNanos) / 1e9);
+    }
+    
+    /**
+     * @return the percentage of tiles rendered
+     */
+    public synchronized int getPercent() {
+        if(tilesTotal <= 0) {
+            return 0;
+        }
+        return (int)Math.min(100, tilesDone * 100 / tilesTotal);
+    }
+    
+    /**
+     * @return estimated seconds until all tiles are rendered, or -1 if there is no estimate yet
+     */
+    public synchronized long getEtaSeconds() {
+        if(smoothedRate <= 0 || tilesTotal <= 0) {
+            return -1;
+        }
+        return Math.round(Math.max(0, tilesTotal - tilesDone) / smoothedRate);
+    }
+    
+    /**
+     * Format a duration for display.
+     * 
+     * @param seconds
+     * @return the duration as hours, minutes and seconds, or "unknown" if negative
+     */
+    public static String formatDuration(long seconds) {
+        if(seconds < 0) {
+            return "unknown";
+        }
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+}
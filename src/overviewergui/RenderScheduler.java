@@ -0,0 +1,251 @@
+package overviewergui;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Queues Overviewer runs and limits how many run at the same time. Each run is started with a share of the 
+ * free CPU cores so that the running Overviewer worker pools together do not use more cores than the 
+ * machine has.
+ * <p>
+ * Runs are started in order of {@link RunPriority}. A run of higher priority does not wait for a slot: it 
+ * starts at once, and running jobs of lower priority are paused and give up their cores until no run of 
+ * higher priority is left. Runs of the same priority start in the {@link QueueOrder} set on the scheduler.
+ * 
+ * @author Mark Bernard
+ */
+public class RenderScheduler {
+    private int cores;
+    private int maxConcurrent;
+    private int usedCores;
+    private int completed;
+    private QueueOrder order;
+    private LinkedList<RenderJob> queue;
+    private Map<RenderJob, Integer> running;
+    private Set<RenderJob> paused;
+    
+    /**
+     * Create a scheduler for the cores available to this JVM.
+     * 
+     * @param maxConcurrent Maximum number of Overviewer runs at the same time.
+     */
+    public RenderScheduler(int maxConcurrent) {
+        this(maxConcurrent, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Create a scheduler.
+     * 
+     * @param maxConcurrent Maximum number of Overviewer runs at the same time.
+     * @param cores Number of cores to divide between the runs.
+     */
+    public RenderScheduler(int maxConcurrent, int cores) {
+        this.cores = Math.max(1, cores);
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        order = QueueOrder.SELECTED;
+        queue = new LinkedList<>();
+        running = new HashMap<>();
+        paused = new HashSet<>();
+    }
+    
+    /**
+     * @return the number of cores divided between the runs
+     */
+    public int getCores() {
+        return cores;
+    }
+    
+    /**
+     * @return the maximum number of Overviewer runs at the same time
+     */
+    public synchronized int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+    
+    /**
+     * Change the limit. Runs already started are not affected, but queued runs are started if the limit 
+     * went up.
+     * 
+     * @param maxConcurrent the maximum number of Overviewer runs at the same time
+     */
+    public synchronized void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        schedule();
+    }
+    
+    /**
+     * @return the order of queued runs of the same priority
+     */
+    public synchronized QueueOrder getOrder() {
+        return order;
+    }
+    
+    /**
+     * Change the order. Applies to jobs submitted from now on.
+     * 
+     * @param order the order of queued runs of the same priority
+     */
+    public synchronized void setOrder(QueueOrder order) {
+        this.order = order;
+    }
+    
+    /**
+     * Add jobs to the queue, after the queued jobs of higher priority and after the jobs of the same 
+     * priority that come first in the queue order. Jobs that are already queued or running are skipped. 
+     * Submitting a selection together lets the cores be divided between all of them rather than going to 
+     * the first.
+     * 
+     * @param jobs
+     */
+    public synchronized void submitAll(Collection<? extends RenderJob> jobs) {
+        for(RenderJob job:jobs) {
+            if(!queue.contains(job) && !running.containsKey(job)) {
+                int index = queue.size();
+                while(index > 0 && startsBefore(job, queue.get(index - 1))) {
+                    index--;
+                }
+                queue.add(index, job);
+            }
+        }
+        schedule();
+    }
+    
+    private boolean startsBefore(RenderJob job, RenderJob queued) {
+        int priority = job.getPriority().compareTo(queued.getPriority());
+        return priority > 0 || (priority == 0 && order.before(job.getEstimatedSeconds(), queued.getEstimatedSeconds()));
+    }
+    
+    /**
+     * Remove a job that has not been started yet.
+     * 
+     * @param job
+     * @return true if the job was waiting in the queue
+     */
+    public synchronized boolean cancel(RenderJob job) {
+        return queue.remove(job);
+    }
+    
+    /**
+     * Release the cores held by a job and start the next jobs in the queue.
+     * 
+     * @param job
+     */
+    public synchronized void finished(RenderJob job) {
+        Integer processes = running.remove(job);
+        if(processes != null) {
+            if(!paused.remove(job)) {
+                usedCores -= processes;
+            }
+            completed++;
+            resumePaused();
+            schedule();
+        }
+    }
+    
+    /**
+     * @return the number of jobs waiting for a slot
+     */
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+    
+    /**
+     * @return the number of jobs running, including paused ones
+     */
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+    
+    /**
+     * @return the number of running jobs paused for a job of higher priority
+     */
+    public synchronized int getPausedCount() {
+        return paused.size();
+    }
+    
+    /**
+     * @return the number of jobs that have ended since the scheduler was created
+     */
+    public synchronized int getCompletedCount() {
+        return completed;
+    }
+    
+    private void schedule() {
+        while(!queue.isEmpty()) {
+            RenderJob job = queue.getFirst();
+            RunPriority top = getTopPriority();
+            boolean preempts = top != null && job.getPriority().compareTo(top) > 0;
+            if(top != null && job.getPriority().compareTo(top) < 0) {
+                break;
+            }
+            if(!preempts && running.size() - paused.size() >= maxConcurrent) {
+                break;
+            }
+            queue.removeFirst();
+            if(preempts) {
+                pauseBelow(job.getPriority());
+            }
+            int active = running.size() - paused.size();
+            int sharing = Math.min(maxConcurrent - active, countQueued(job.getPriority()) + 1);
+            int processes = Math.max(1, (cores - usedCores) / Math.max(1, sharing));
+            running.put(job, processes);
+            usedCores += processes;
+            job.start(processes);
+        }
+    }
+    
+    /**
+     * Pause the active jobs of lower priority and take back their cores.
+     */
+    private void pauseBelow(RunPriority priority) {
+        for(Map.Entry<RenderJob, Integer> job:running.entrySet()) {
+            if(job.getKey().getPriority().compareTo(priority) < 0 && !paused.contains(job.getKey()) && job.getKey().pause()) {
+                paused.add(job.getKey());
+                usedCores -= job.getValue();
+            }
+        }
+    }
+    
+    /**
+     * Continue the paused jobs once no running job has a higher priority.
+     */
+    private void resumePaused() {
+        RunPriority top = getTopPriority();
+        for(Iterator<RenderJob> i = paused.iterator();i.hasNext();) {
+            RenderJob job = i.next();
+            if(job.getPriority() == top) {
+                i.remove();
+                usedCores += running.get(job);
+                job.resume();
+            }
+        }
+    }
+    
+    /**
+     * @return the highest priority of the running jobs, or null if none is running
+     */
+    private RunPriority getTopPriority() {
+        RunPriority top = null;
+        for(RenderJob job:running.keySet()) {
+            if(top == null || job.getPriority().compareTo(top) > 0) {
+                top = job.getPriority();
+            }
+        }
+        return top;
+    }
+    
+    private int countQueued(RunPriority priority) {
+        int count = 0;
+        for(RenderJob job:queue) {
+            if(job.getPriority() == priority) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,424 @@
+package overviewergui;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Settings shared by the GUI and the headless runner, stored with {@link Preferences}. Nothing in here
+ * touches Swing, so loading the settings does not start AWT.
+ *
+ * @author Mark Bernard
+ */
+public class RenderSettings {
+    private static final String MINECRAFT_SAVE_DATA = "minecraft.save.data";
+    private static final String MINECRAFT_MAP_OUTPUT = "minecraft.map.output";
+    private static final String OVERVIEWER_EXECUTABLE = "overviewer.executable";
+    private static final String LOG_MAX_LINES = "log.max.lines";
+    private static final String LOG_MAX_KILOBYTES = "log.max.kilobytes";
+    private static final String LOG_RETENTION_DAYS = "log.retention.days";
+    private static final String LOG_RETENTION_MEGABYTES = "log.retention.megabytes";
+    private static final String MAX_CONCURRENT_RENDERS = "max.concurrent.renders";
+    private static final String INCREMENTAL_RENDERS = "incremental.renders";
+    private static final String BATCH_RUNS = "batch.runs";
+    private static final String RENDER_MODES = "render.modes";
+    private static final String LOWER_LOW_PRIORITY = "lower.low.priority";
+    private static final String QUEUE_ORDER = "queue.order";
+    private static final String WATCH_QUIET_SECONDS = "watch.quiet.seconds";
+    private static final String SERVER_PORT = "server.port";
+    private static final String METRICS_PORT = "metrics.port";
+
+    private String minecraftSaveFolder;
+    private String mapOutputFolder;
+    private String overviewerExecutable;
+    private int logMaxLines;
+    private int logMaxKilobytes;
+    private int logRetentionDays;
+    private int logRetentionMegabytes;
+    private int maxConcurrentRenders;
+    private boolean incrementalRenders;
+    private boolean batchRuns;
+    private String renderModes;
+    private boolean lowerLowPriority;
+    private QueueOrder queueOrder = QueueOrder.SELECTED;
+    private int watchQuietSeconds;
+    private int serverPort;
+    private int metricsPort;
+    private Map<String, String> worldRenderModes = new HashMap<>();
+
+    /**
+     * @return the preferences node of the application, the same one the GUI has always used
+     */
+    public static Preferences getPreferences() {
+        return Preferences.userRoot().node("/overviewergui");
+    }
+
+    /**
+     * Read the settings, using defaults for anything that was never saved.
+     *
+     * @return the settings
+     */
+    public static RenderSettings load() {
+        Preferences prefs = getPreferences();
+        RenderSettings settings = new RenderSettings();
+        String minecraftLocation[] = {"",
+                System.getProperty("user.home").replace("\\", "/") + "/.minecraft/saves",
+                System.getProperty("user.home").replace("\\", "/") + "/AppData/Roaming/.minecraft/saves"};
+        int choice = 0;
+        if(new File(minecraftLocation[1]).isDirectory()) {
+            choice = 1;
+        }
+        else if(new File(minecraftLocation[2]).isDirectory()) {
+            choice = 2;
+        }
+        settings.minecraftSaveFolder = prefs.get(MINECRAFT_SAVE_DATA, minecraftLocation[choice]);
+        settings.overviewerExecutable = prefs.get(OVERVIEWER_EXECUTABLE, "");
+        settings.mapOutputFolder = prefs.get(MINECRAFT_MAP_OUTPUT, new File(System.getProperty("user.home") + "/MinecraftMaps").getAbsolutePath());
+        settings.logMaxLines = prefs.getInt(LOG_MAX_LINES, 10000);
+        settings.logMaxKilobytes = prefs.getInt(LOG_MAX_KILOBYTES, 4096);
+        settings.logRetentionDays = prefs.getInt(LOG_RETENTION_DAYS, 30);
+        settings.logRetentionMegabytes = prefs.getInt(LOG_RETENTION_MEGABYTES, 1024);
+        settings.maxConcurrentRenders = prefs.getInt(MAX_CONCURRENT_RENDERS, Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+        settings.incrementalRenders = prefs.getBoolean(INCREMENTAL_RENDERS, true);
+        settings.batchRuns = prefs.getBoolean(BATCH_RUNS, false);
+        settings.renderModes = prefs.get(RENDER_MODES, "normal");
+        settings.lowerLowPriority = prefs.getBoolean(LOWER_LOW_PRIORITY, true);
+        settings.watchQuietSeconds = prefs.getInt(WATCH_QUIET_SECONDS, 60);
+        settings.serverPort = prefs.getInt(SERVER_PORT, 8080);
+        settings.metricsPort = prefs.getInt(METRICS_PORT, 9464);
+        try {
+            settings.queueOrder = QueueOrder.valueOf(prefs.get(QUEUE_ORDER, QueueOrder.SELECTED.name()));
+        }
+        catch (IllegalArgumentException e) {
+            settings.queueOrder = QueueOrder.SELECTED;
+        }
+        try {
+            Preferences worldPrefs = prefs.node(RENDER_MODES);
+            for(String world:worldPrefs.keys()) {
+                settings.worldRenderModes.put(world, worldPrefs.get(world, ""));
+            }
+        }
+        catch (BackingStoreException e) {
+            e.getMessage();
+        }
+        return settings;
+    }
+
+    /**
+     * Write the settings.
+     */
+    public void save() {
+        Preferences prefs = getPreferences();
+        prefs.put(MINECRAFT_SAVE_DATA, minecraftSaveFolder);
+        prefs.put(MINECRAFT_MAP_OUTPUT, mapOutputFolder);
+        prefs.put(OVERVIEWER_EXECUTABLE, overviewerExecutable);
+        prefs.putInt(LOG_MAX_LINES, logMaxLines);
+        prefs.putInt(LOG_MAX_KILOBYTES, logMaxKilobytes);
+        prefs.putInt(LOG_RETENTION_DAYS, logRetentionDays);
+        prefs.putInt(LOG_RETENTION_MEGABYTES, logRetentionMegabytes);
+        prefs.putInt(MAX_CONCURRENT_RENDERS, maxConcurrentRenders);
+        prefs.putBoolean(INCREMENTAL_RENDERS, incrementalRenders);
+        prefs.putBoolean(BATCH_RUNS, batchRuns);
+        prefs.put(RENDER_MODES, renderModes);
+        prefs.putBoolean(LOWER_LOW_PRIORITY, lowerLowPriority);
+        prefs.put(QUEUE_ORDER, queueOrder.name());
+        prefs.putInt(WATCH_QUIET_SECONDS, watchQuietSeconds);
+        prefs.putInt(SERVER_PORT, serverPort);
+        prefs.putInt(METRICS_PORT, metricsPort);
+        try {
+            Preferences worldPrefs = prefs.node(RENDER_MODES);
+            worldPrefs.clear();
+            for(Map.Entry<String, String> world:worldRenderModes.entrySet()) {
+                worldPrefs.put(world.getKey(), world.getValue());
+            }
+        }
+        catch (BackingStoreException e) {
+            e.getMessage();
+        }
+    }
+
+    /**
+     * Split a list of render modes separated by commas or spaces.
+     *
+     * @param text
+     * @return the render modes, empty if there are none
+     */
+    public static List<String> parseRenderModes(String text) {
+        List<String> modes = new ArrayList<>();
+        for(String mode:text.trim().split("[,\\s]+")) {
+            if(!mode.isEmpty() && !modes.contains(mode)) {
+                modes.add(mode);
+            }
+        }
+        return modes;
+    }
+
+    /**
+     * @param world
+     * @return the render modes of the world, or the default render modes if none were set for it
+     */
+    public List<String> getRenderModes(String world) {
+        return resolveRenderModes(worldRenderModes.get(world), renderModes);
+    }
+
+    /**
+     * Choose between the render modes of a world and the default render modes.
+     *
+     * @param worldModes Render modes set for the world, may be null.
+     * @param defaultModes
+     * @return the render modes of the world if any are set, otherwise the default ones or "normal"
+     */
+    public static List<String> resolveRenderModes(String worldModes, String defaultModes) {
+        List<String> modes = parseRenderModes(worldModes == null ? "" : worldModes);
+        if(modes.isEmpty()) {
+            modes = parseRenderModes(defaultModes);
+        }
+        if(modes.isEmpty()) {
+            modes.add("normal");
+        }
+        return modes;
+    }
+
+    /**
+     * @return the minecraftSaveFolder
+     */
+    public String getMinecraftSaveFolder() {
+        return minecraftSaveFolder;
+    }
+
+    /**
+     * @param minecraftSaveFolder the minecraftSaveFolder to set
+     */
+    public void setMinecraftSaveFolder(String minecraftSaveFolder) {
+        this.minecraftSaveFolder = minecraftSaveFolder;
+    }
+
+    /**
+     * @return the mapOutputFolder
+     */
+    public String getMapOutputFolder() {
+        return mapOutputFolder;
+    }
+
+    /**
+     * @param mapOutputFolder the mapOutputFolder to set
+     */
+    public void setMapOutputFolder(String mapOutputFolder) {
+        this.mapOutputFolder = mapOutputFolder;
+    }
+
+    /**
+     * @return the overviewerExecutable
+     */
+    public String getOverviewerExecutable() {
+        return overviewerExecutable;
+    }
+
+    /**
+     * @param overviewerExecutable the overviewerExecutable to set
+     */
+    public void setOverviewerExecutable(String overviewerExecutable) {
+        this.overviewerExecutable = overviewerExecutable;
+    }
+
+    /**
+     * @return the logMaxLines
+     */
+    public int getLogMaxLines() {
+        return logMaxLines;
+    }
+
+    /**
+     * @param logMaxLines the logMaxLines to set
+     */
+    public void setLogMaxLines(int logMaxLines) {
+        this.logMaxLines = logMaxLines;
+    }
+
+    /**
+     * @return the logMaxKilobytes
+     */
+    public int getLogMaxKilobytes() {
+        return logMaxKilobytes;
+    }
+
+    /**
+     * @param logMaxKilobytes the logMaxKilobytes to set
+     */
+    public void setLogMaxKilobytes(int logMaxKilobytes) {
+        this.logMaxKilobytes = logMaxKilobytes;
+    }
+
+    /**
+     * @return the days archived run logs are kept, 0 to keep them regardless of age
+     */
+    public int getLogRetentionDays() {
+        return logRetentionDays;
+    }
+
+    /**
+     * @param logRetentionDays the days archived run logs are kept, 0 to keep them regardless of age
+     */
+    public void setLogRetentionDays(int logRetentionDays) {
+        this.logRetentionDays = logRetentionDays;
+    }
+
+    /**
+     * @return the total size of the archived run logs kept in megabytes, 0 for no limit
+     */
+    public int getLogRetentionMegabytes() {
+        return logRetentionMegabytes;
+    }
+
+    /**
+     * @param logRetentionMegabytes the total size of the archived run logs kept in megabytes, 0 for no limit
+     */
+    public void setLogRetentionMegabytes(int logRetentionMegabytes) {
+        this.logRetentionMegabytes = logRetentionMegabytes;
+    }
+
+    /**
+     * @return the maxConcurrentRenders
+     */
+    public int getMaxConcurrentRenders() {
+        return maxConcurrentRenders;
+    }
+
+    /**
+     * @param maxConcurrentRenders the maxConcurrentRenders to set
+     */
+    public void setMaxConcurrentRenders(int maxConcurrentRenders) {
+        this.maxConcurrentRenders = maxConcurrentRenders;
+    }
+
+    /**
+     * @return the incrementalRenders
+     */
+    public boolean isIncrementalRenders() {
+        return incrementalRenders;
+    }
+
+    /**
+     * @param incrementalRenders the incrementalRenders to set
+     */
+    public void setIncrementalRenders(boolean incrementalRenders) {
+        this.incrementalRenders = incrementalRenders;
+    }
+
+    /**
+     * @return true if selected maps are rendered together by one Overviewer process
+     */
+    public boolean isBatchRuns() {
+        return batchRuns;
+    }
+
+    /**
+     * @param batchRuns the batchRuns to set
+     */
+    public void setBatchRuns(boolean batchRuns) {
+        this.batchRuns = batchRuns;
+    }
+
+    /**
+     * @return the default render modes of batch runs
+     */
+    public String getRenderModes() {
+        return renderModes;
+    }
+
+    /**
+     * @param renderModes the default render modes of batch runs
+     */
+    public void setRenderModes(String renderModes) {
+        this.renderModes = renderModes;
+    }
+
+    /**
+     * @return true if low priority runs are started with a lower CPU and I/O priority
+     */
+    public boolean isLowerLowPriority() {
+        return lowerLowPriority;
+    }
+
+    /**
+     * @param lowerLowPriority true if low priority runs are started with a lower CPU and I/O priority
+     */
+    public void setLowerLowPriority(boolean lowerLowPriority) {
+        this.lowerLowPriority = lowerLowPriority;
+    }
+
+    /**
+     * @return the order of queued runs of the same priority
+     */
+    public QueueOrder getQueueOrder() {
+        return queueOrder;
+    }
+
+    /**
+     * @param queueOrder the order of queued runs of the same priority
+     */
+    public void setQueueOrder(QueueOrder queueOrder) {
+        this.queueOrder = queueOrder;
+    }
+
+    /**
+     * @return how long the region files of a watched world must be unchanged before it is rendered, in seconds
+     */
+    public int getWatchQuietSeconds() {
+        return watchQuietSeconds;
+    }
+
+    /**
+     * @param watchQuietSeconds how long the region files of a watched world must be unchanged before it is 
+     * rendered, in seconds
+     */
+    public void setWatchQuietSeconds(int watchQuietSeconds) {
+        this.watchQuietSeconds = watchQuietSeconds;
+    }
+
+    /**
+     * @return the port the rendered maps are served on
+     */
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    /**
+     * @param serverPort the port the rendered maps are served on
+     */
+    public void setServerPort(int serverPort) {
+        this.serverPort = serverPort;
+    }
+
+    /**
+     * @return the local port the metrics are published on
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * @param metricsPort the local port the metrics are published on
+     */
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    /**
+     * @return the render modes set for single worlds, by world name
+     */
+    public Map<String, String> getWorldRenderModes() {
+        return worldRenderModes;
+    }
+
+    /**
+     * @param worldRenderModes the render modes set for single worlds, by world name
+     */
+    public void setWorldRenderModes(Map<String, String> worldRenderModes) {
+        this.worldRenderModes = new HashMap<>(worldRenderModes);
+    }
+}
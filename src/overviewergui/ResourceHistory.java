@@ -0,0 +1,100 @@
+package overviewergui;
+
+/**
+ * Recent resource use of one Overviewer process tree, written by the {@link ResourceMonitor} and read by
+ * the views. Keeps the last {@value #SIZE} samples of each series in fixed arrays.
+ *
+ * @author Mark Bernard
+ */
+public class ResourceHistory {
+    /** Number of samples kept per series. */
+    public static final int SIZE = 60;
+    /** CPU use in percent of one core, so four busy cores show as 400. */
+    public static final int CPU = 0;
+    /** Resident memory in bytes. */
+    public static final int RSS = 1;
+    /** Bytes read from storage per second. */
+    public static final int READ = 2;
+    /** Bytes written to storage per second. */
+    public static final int WRITE = 3;
+    private static final int SERIES = 4;
+
+    private float values[][];
+    private int count;
+    private int next;
+    private long peakRss;
+    private long version;
+
+    /**
+     * Create an empty history.
+     */
+    public ResourceHistory() {
+        values = new float[SERIES][SIZE];
+    }
+
+    /**
+     * Forget all samples.
+     */
+    public synchronized void reset() {
+        count = 0;
+        next = 0;
+        peakRss = 0;
+        version++;
+    }
+
+    /**
+     * Add a sample, replacing the oldest one once the history is full.
+     *
+     * @param cpu
+     * @param rss
+     * @param read
+     * @param write
+     */
+    public synchronized void add(float cpu, long rss, float read, float write) {
+        values[CPU][next] = cpu;
+        values[RSS][next] = rss;
+        values[READ][next] = read;
+        values[WRITE][next] = write;
+        next = (next + 1) % SIZE;
+        count = Math.min(SIZE, count + 1);
+        peakRss = Math.max(peakRss, rss);
+        version++;
+    }
+
+    /**
+     * Copy a series, oldest sample first.
+     *
+     * @param series One of {@link #CPU}, {@link #RSS}, {@link #READ} or {@link #WRITE}.
+     * @param target Array of at least {@value #SIZE} values.
+     * @return the number of samples copied
+     */
+    public synchronized int copy(int series, float target[]) {
+        int start = (next - count + SIZE) % SIZE;
+        for(int i=0;i<count;i++) {
+            target[i] = values[series][(start + i) % SIZE];
+        }
+        return count;
+    }
+
+    /**
+     * @param series
+     * @return the newest sample of the series, 0 if there is none
+     */
+    public synchronized float getLatest(int series) {
+        return count == 0 ? 0 : values[series][(next - 1 + SIZE) % SIZE];
+    }
+
+    /**
+     * @return the highest resident memory seen since the last reset, in bytes
+     */
+    public synchronized long getPeakRss() {
+        return peakRss;
+    }
+
+    /**
+     * @return a number that changes whenever a sample is added
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+}
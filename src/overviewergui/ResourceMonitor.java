@@ -0,0 +1,256 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single sampler thread that measures the CPU, memory and storage use of every running Overviewer process
+ * tree once a second. On Linux the numbers come from <code>/proc/&lt;pid&gt;/stat</code>, <code>status</code>
+ * and <code>io</code>, read into one reused buffer; elsewhere only CPU time is available, from
+ * {@link ProcessHandle.Info}.
+ *
+ * @author Mark Bernard
+ */
+public class ResourceMonitor implements Runnable {
+    /** Time between two samples. */
+    public static final int SAMPLE_MILLIS = 1000;
+    /** Clock ticks per second used by /proc for CPU times, the same on all common Linux systems. */
+    private static final int CLOCK_TICKS = 100;
+    private static final byte VM_RSS[] = "VmRSS:".getBytes();
+    private static final byte READ_BYTES[] = "read_bytes:".getBytes();
+    private static final byte WRITE_BYTES[] = "write_bytes:".getBytes();
+    private static final ResourceMonitor INSTANCE = new ResourceMonitor();
+
+    private Map<ProcessHandle, Tree> trees;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> sampling;
+    private byte buffer[];
+    private boolean procAvailable;
+
+    private ResourceMonitor() {
+        trees = new ConcurrentHashMap<>();
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Resource monitor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        buffer = new byte[8192];
+        procAvailable = new File("/proc/self/stat").isFile();
+    }
+
+    /**
+     * Start sampling a process tree.
+     *
+     * @param root The process that was started.
+     * @param history History the samples are added to.
+     */
+    public static void register(ProcessHandle root, ResourceHistory history) {
+        INSTANCE.trees.put(root, new Tree(history));
+        synchronized (INSTANCE) {
+            if(INSTANCE.sampling == null) {
+                INSTANCE.sampling = INSTANCE.executor.scheduleAtFixedRate(INSTANCE, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stop sampling a process tree.
+     *
+     * @param root
+     */
+    public static void unregister(ProcessHandle root) {
+        INSTANCE.trees.remove(root);
+        synchronized (INSTANCE) {
+            if(INSTANCE.trees.isEmpty() && INSTANCE.sampling != null) {
+                INSTANCE.sampling.cancel(false);
+                INSTANCE.sampling = null;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        for(Map.Entry<ProcessHandle, Tree> entry:trees.entrySet()) {
+            try {
+                sample(entry.getKey(), entry.getValue(), now);
+            }
+            catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Add the use of all processes of the tree since the last sample to the history of the tree.
+     */
+    private void sample(ProcessHandle root, Tree tree, long now) {
+        long cpuTicks = 0;
+        long rss = 0;
+        long read = 0;
+        long write = 0;
+        tree.seen++;
+        Iterator<ProcessHandle> descendants = root.descendants().iterator();
+        ProcessHandle process = root;
+        while(process != null) {
+            long pid = process.pid();
+            long usage[] = tree.processes.get(pid);
+            if(usage == null) {
+                usage = new long[5];
+                tree.processes.put(pid, usage);
+            }
+            usage[4] = tree.seen;
+            long previousTicks = usage[0];
+            long previousRead = usage[1];
+            long previousWrite = usage[2];
+            if(readUsage(process, usage)) {
+                cpuTicks += Math.max(0, usage[0] - previousTicks);
+                read += Math.max(0, usage[1] - previousRead);
+                write += Math.max(0, usage[2] - previousWrite);
+                rss += usage[3];
+            }
+            process = descendants.hasNext() ? descendants.next() : null;
+        }
+        for(Iterator<long[]> usage = tree.processes.values().iterator();usage.hasNext();) {
+            if(usage.next()[4] != tree.seen) {
+                usage.remove();
+            }
+        }
+        if(tree.lastSample != 0) {
+            double seconds = (now - tree.lastSample) / 1e9;
+            tree.history.add((float)(cpuTicks * 100.0 / CLOCK_TICKS / seconds), rss, (float)(read / seconds), (float)(write / seconds));
+        }
+        tree.lastSample = now;
+    }
+
+    /**
+     * Read the cumulative CPU ticks, bytes read and written, and the current resident memory of a process.
+     *
+     * @param usage Filled with ticks, read, written and resident bytes; the fifth value is left alone.
+     * @return false if the process is gone
+     */
+    private boolean readUsage(ProcessHandle process, long usage[]) {
+        if(!procAvailable) {
+            Duration cpu = process.info().totalCpuDuration().orElse(null);
+            if(cpu == null) {
+                return false;
+            }
+            usage[0] = cpu.toMillis() * CLOCK_TICKS / 1000;
+            return true;
+        }
+        String base = "/proc/" + process.pid() + "/";
+        int length = readFile(base + "stat");
+        if(length <= 0) {
+            return false;
+        }
+        int field = lastIndexOf(')', length) + 2;
+        // utime and stime are fields 14 and 15, the state after the command name is field 3.
+        for(int i=3;i<14 && field < length;i++) {
+            field = indexOf(' ', field, length) + 1;
+        }
+        long utime = parseNumber(field, length);
+        long stime = parseNumber(indexOf(' ', field, length) + 1, length);
+        usage[0] = utime + stime;
+        length = readFile(base + "status");
+        usage[3] = valueAfter(VM_RSS, length) * 1024;
+        length = readFile(base + "io");
+        if(length > 0) {
+            usage[1] = valueAfter(READ_BYTES, length);
+            usage[2] = valueAfter(WRITE_BYTES, length);
+        }
+        return true;
+    }
+
+    private int readFile(String path) {
+        try (FileInputStream in = new FileInputStream(path)) {
+            int length = 0;
+            int read;
+            while(length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+            return length;
+        }
+        catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private long valueAfter(byte key[], int length) {
+        for(int i=0;i<=length - key.length;i++) {
+            if((i == 0 || buffer[i - 1] == '\n') && matches(key, i)) {
+                int start = i + key.length;
+                while(start < length && (buffer[start] == ' ' || buffer[start] == '\t')) {
+                    start++;
+                }
+                return parseNumber(start, length);
+            }
+        }
+        return 0;
+    }
+
+    private boolean matches(byte key[], int offset) {
+        for(int i=0;i<key.length;i++) {
+            if(buffer[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long parseNumber(int offset, int length) {
+        long value = 0;
+        for(int i=offset;i<length && buffer[i] >= '0' && buffer[i] <= '9';i++) {
+            value = value * 10 + buffer[i] - '0';
+        }
+        return value;
+    }
+
+    private int indexOf(char c, int from, int length) {
+        for(int i=from;i<length;i++) {
+            if(buffer[i] == c) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private int lastIndexOf(char c, int length) {
+        for(int i=length - 1;i>=0;i--) {
+            if(buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sampling state of one process tree.
+     */
+    private static class Tree {
+        private ResourceHistory history;
+        private Map<Long, long[]> processes;
+        private long lastSample;
+        /** Number of the current sample, to drop processes that have ended. */
+        private long seen;
+
+        public Tree(ResourceHistory history) {
+            this.history = history;
+            processes = new HashMap<>();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package overviewergui;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * Document content stored in a circular character buffer. Appending just before the trailing newline and
+ * removing text from the front only touch the characters involved, so a log that is capped and evicted from
+ * the front costs the same per append no matter how long it has been running.
+ * <p>
+ * Positions are kept as offsets from the start of everything ever written, which lets them follow text
+ * evicted from the front without being visited. Positions at the tail, where appends happen, are kept in a
+ * short list and moved on every insert, matching how {@link javax.swing.text.GapContent} moves positions at
+ * the insertion point. The rest are kept sorted so that edits elsewhere only visit the positions after the
+ * edit.
+ *
+ * @author Mark Bernard
+ */
+class RingBufferContent implements AbstractDocument.Content {
+    private char buffer[];
+    private int head;
+    private int length;
+    private long evicted;
+    private List<WeakReference<StreamPosition>> tailPositions;
+    private TreeMap<Long, List<WeakReference<StreamPosition>>> fixedPositions;
+
+    /**
+     * Create content holding only the trailing newline required by the document.
+     *
+     * @param initialCapacity Number of characters to allocate up front.
+     */
+    public RingBufferContent(int initialCapacity) {
+        buffer = new char[Math.max(16, initialCapacity)];
+        buffer[0] = '\n';
+        length = 1;
+        tailPositions = new ArrayList<>();
+        fixedPositions = new TreeMap<>();
+    }
+
+    @Override
+    public Position createPosition(int offset) throws BadLocationException {
+        if(offset < 0 || offset > length) {
+            throw new BadLocationException("Invalid position", offset);
+        }
+        StreamPosition position = new StreamPosition(evicted + offset);
+        if(offset >= length - 1 && offset > 0) {
+            tailPositions.add(new WeakReference<>(position));
+        }
+        else if(offset > 0) {
+            addFixed(position);
+        }
+        return position;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public UndoableEdit insertString(int where, String str) throws BadLocationException {
+        if(where < 0 || where >= length) {
+            throw new BadLocationException("Invalid insert", where);
+        }
+        int count = str.length();
+        ensureCapacity(length + count);
+        if(where == length - 1) {
+            int index = physical(where);
+            copyIn(str, index);
+            buffer[physical(where + count)] = '\n';
+        }
+        else {
+            linearize();
+            System.arraycopy(buffer, where, buffer, where + count, length - where);
+            str.getChars(0, count, buffer, where);
+            for(StreamPosition position:takeFixed(Math.max(where, 1))) {
+                position.streamOffset += count;
+                addFixed(position);
+            }
+        }
+        shiftTailPositions(where, count);
+        length += count;
+        return null;
+    }
+
+    @Override
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+        if(where < 0 || nitems < 0 || where + nitems >= length) {
+            throw new BadLocationException("Invalid remove", where + nitems);
+        }
+        if(where == 0) {
+            head = physical(nitems);
+            evicted += nitems;
+            fixedPositions.headMap(evicted, true).clear();
+            length -= nitems;
+            return null;
+        }
+        boolean tail = (where + nitems == length - 1);
+        if(tail) {
+            buffer[physical(where)] = '\n';
+        }
+        else {
+            linearize();
+            System.arraycopy(buffer, where + nitems, buffer, where, length - where - nitems);
+        }
+        List<StreamPosition> moved = takeFixed(where);
+        shiftTailPositions(where, -nitems);
+        for(StreamPosition position:moved) {
+            position.streamOffset = Math.max(evicted + where, position.streamOffset - nitems);
+            if(tail) {
+                tailPositions.add(new WeakReference<>(position));
+            }
+            else {
+                addFixed(position);
+            }
+        }
+        length -= nitems;
+        return null;
+    }
+
+    @Override
+    public String getString(int where, int len) throws BadLocationException {
+        Segment segment = new Segment();
+        getChars(where, len, segment);
+        return new String(segment.array, segment.offset, segment.count);
+    }
+
+    @Override
+    public void getChars(int where, int len, Segment txt) throws BadLocationException {
+        if(where < 0 || len < 0 || where + len > length) {
+            throw new BadLocationException("Invalid location", where + len);
+        }
+        int start = physical(where);
+        int contiguous = Math.min(len, buffer.length - start);
+        if(contiguous == len || txt.isPartialReturn()) {
+            txt.array = buffer;
+            txt.offset = start;
+            txt.count = contiguous;
+        }
+        else {
+            char copy[] = new char[len];
+            System.arraycopy(buffer, start, copy, 0, contiguous);
+            System.arraycopy(buffer, 0, copy, contiguous, len - contiguous);
+            txt.array = copy;
+            txt.offset = 0;
+            txt.count = len;
+        }
+    }
+
+    private int physical(int offset) {
+        int index = head + offset;
+        return index < buffer.length ? index : index - buffer.length;
+    }
+
+    private void copyIn(String str, int index) {
+        int count = str.length();
+        int first = Math.min(count, buffer.length - index);
+        str.getChars(0, first, buffer, index);
+        if(first < count) {
+            str.getChars(first, count, buffer, 0);
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if(needed > buffer.length) {
+            char grown[] = new char[Math.max(needed, buffer.length * 2)];
+            copyOut(grown);
+            buffer = grown;
+            head = 0;
+        }
+    }
+
+    private void linearize() {
+        if(head + length > buffer.length) {
+            char straight[] = new char[buffer.length];
+            copyOut(straight);
+            buffer = straight;
+        }
+        else {
+            System.arraycopy(buffer, head, buffer, 0, length);
+        }
+        head = 0;
+    }
+
+    private void addFixed(StreamPosition position) {
+        List<WeakReference<StreamPosition>> positions = fixedPositions.get(position.streamOffset);
+        if(positions == null) {
+            positions = new ArrayList<>(2);
+            fixedPositions.put(position.streamOffset, positions);
+        }
+        positions.add(new WeakReference<>(position));
+    }
+
+    /**
+     * Remove and return the live fixed positions at or after the offset.
+     */
+    private List<StreamPosition> takeFixed(int offset) {
+        List<StreamPosition> taken = new ArrayList<>();
+        NavigableMap<Long, List<WeakReference<StreamPosition>>> after = fixedPositions.tailMap(evicted + offset, true);
+        for(Map.Entry<Long, List<WeakReference<StreamPosition>>> entry:after.entrySet()) {
+            for(WeakReference<StreamPosition> reference:entry.getValue()) {
+                StreamPosition position = reference.get();
+                if(position != null) {
+                    taken.add(position);
+                }
+            }
+        }
+        after.clear();
+        return taken;
+    }
+
+    /**
+     * Move the tail positions at or after the edit point, dropping any that are no longer referenced.
+     */
+    private void shiftTailPositions(int where, int delta) {
+        Iterator<WeakReference<StreamPosition>> iterator = tailPositions.iterator();
+        while(iterator.hasNext()) {
+            StreamPosition position = iterator.next().get();
+            if(position == null) {
+                iterator.remove();
+            }
+            else {
+                int offset = position.getOffset();
+                if(offset > 0 && offset >= where) {
+                    position.streamOffset += delta;
+                }
+            }
+        }
+    }
+
+    private void copyOut(char target[]) {
+        int first = Math.min(length, buffer.length - head);
+        System.arraycopy(buffer, head, target, 0, first);
+        System.arraycopy(buffer, 0, target, first, length - first);
+    }
+
+    private class StreamPosition implements Position {
+        private long streamOffset;
+
+        public StreamPosition(long streamOffset) {
+            this.streamOffset = streamOffset;
+        }
+
+        @Override
+        public int getOffset() {
+            long offset = streamOffset - evicted;
+            if(offset < 0) {
+                return 0;
+            }
+            return (int)Math.min(offset, length);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package overviewergui;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every finished run, kept in an append-only file of {@link RunRecord}s. Records are never rewritten, so a
+ * crash can at most lose the record being written. An index of record offsets by world is kept next to the
+ * file so the history of one world is read without reading the others; records appended after the index
+ * was written, for example by a headless run in another process, are indexed when the history is used.
+ *
+ * @author Mark Bernard
+ */
+public class RunHistory {
+    private static final int MAGIC = 0x4f475248;
+    private static final int INDEX_MAGIC = 0x4f475249;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    /** Records are a few hundred bytes, a larger length means the file is damaged. */
+    private static final int MAX_RECORD_SIZE = 65536;
+    private static RunHistory instance;
+
+    private File file;
+    private File indexFile;
+    private Map<String, List<Long>> offsets;
+    private long indexedLength;
+
+    /**
+     * Open a history, creating its file if needed.
+     *
+     * @param file The record file.
+     * @param indexFile The index of the record file.
+     */
+    public RunHistory(File file, File indexFile) {
+        this.file = file;
+        this.indexFile = indexFile;
+        offsets = new HashMap<>();
+        indexedLength = HEADER_SIZE;
+        try {
+            loadIndex();
+            refresh();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the history kept in the data folder
+     */
+    public static synchronized RunHistory getDefault() {
+        if(instance == null) {
+            instance = new RunHistory(DataFolder.resolve("run-history.dat"), DataFolder.resolve("run-history.idx"));
+        }
+        return instance;
+    }
+
+    /**
+     * Append a record and bring the index up to date.
+     *
+     * @param record
+     * @throws IOException
+     */
+    public synchronized void append(RunRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        record.write(out);
+        out.flush();
+        byte data[] = bytes.toByteArray();
+        int length = data.length - 4;
+        data[0] = (byte)(length >>> 24);
+        data[1] = (byte)(length >>> 16);
+        data[2] = (byte)(length >>> 8);
+        data[3] = (byte)length;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // A headless run in another process may append at the same time.
+            FileLock lock = raf.getChannel().lock();
+            try {
+                if(raf.length() < HEADER_SIZE) {
+                    raf.setLength(0);
+                    raf.writeInt(MAGIC);
+                    raf.writeInt(VERSION);
+                }
+                scan(raf);
+                // Only a crash in the middle of an append leaves bytes after the last whole record.
+                raf.setLength(indexedLength);
+                raf.seek(indexedLength);
+                raf.write(data);
+                add(record.getWorld(), indexedLength);
+                indexedLength += data.length;
+            }
+            finally {
+                lock.release();
+            }
+        }
+        saveIndex();
+    }
+
+    /**
+     * @return the worlds with at least one record, sorted by name
+     */
+    public synchronized List<String> getWorlds() {
+        try {
+            refresh();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        List<String> worlds = new ArrayList<>(offsets.keySet());
+        Collections.sort(worlds, String.CASE_INSENSITIVE_ORDER);
+        return worlds;
+    }
+
+    /**
+     * Read the records of a world.
+     *
+     * @param world
+     * @return the records, oldest first
+     * @throws IOException
+     */
+    public synchronized List<RunRecord> getRuns(String world) throws IOException {
+        refresh();
+        List<RunRecord> records = new ArrayList<>();
+        List<Long> worldOffsets = offsets.get(world);
+        if(worldOffsets == null) {
+            return records;
+        }
+        byte data[] = new byte[256];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            for(long offset:worldOffsets) {
+                raf.seek(offset);
+                int length = raf.readInt();
+                if(data.length < length) {
+                    data = new byte[length];
+                }
+                raf.readFully(data, 0, length);
+                records.add(RunRecord.read(new DataInputStream(new ByteArrayInputStream(data, 0, length))));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Index records appended since the file was last read.
+     */
+    private void refresh() throws IOException {
+        if(file.length() <= indexedLength) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            scan(raf);
+        }
+    }
+
+    /**
+     * Index the whole records after the indexed part of the file. Stops at a record that is not complete,
+     * which is either being written or was cut off by a crash.
+     */
+    private void scan(RandomAccessFile raf) throws IOException {
+        long fileLength = raf.length();
+        if(indexedLength == HEADER_SIZE && fileLength >= HEADER_SIZE) {
+            raf.seek(0);
+            if(raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                throw new IOException("Not a run history file: " + file.getAbsolutePath());
+            }
+        }
+        while(indexedLength + 4 <= fileLength) {
+            raf.seek(indexedLength);
+            int length = raf.readInt();
+            if(length <= 0 || length > MAX_RECORD_SIZE) {
+                throw new IOException("Damaged run history at " + indexedLength + ": " + file.getAbsolutePath());
+            }
+            if(indexedLength + 4 + length > fileLength) {
+                break;
+            }
+            add(raf.readUTF(), indexedLength);
+            indexedLength += 4 + length;
+        }
+    }
+
+    private void add(String world, long offset) {
+        List<Long> worldOffsets = offsets.get(world);
+        if(worldOffsets == null) {
+            worldOffsets = new ArrayList<>();
+            offsets.put(world, worldOffsets);
+        }
+        worldOffsets.add(offset);
+    }
+
+    /**
+     * Load the index unless it covers more than the file holds, in which case the file was replaced and is
+     * indexed again from the start.
+     */
+    private void loadIndex() throws IOException {
+        if(!indexFile.isFile()) {
+            return;
+        }
+        Map<String, List<Long>> loaded = new HashMap<>();
+        long length;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if(in.readInt() != INDEX_MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            length = in.readLong();
+            int worlds = in.readInt();
+            for(int i=0;i<worlds;i++) {
+                String world = in.readUTF();
+                int count = in.readInt();
+                List<Long> worldOffsets = new ArrayList<>(count);
+                for(int j=0;j<count;j++) {
+                    worldOffsets.add(in.readLong());
+                }
+                loaded.put(world, worldOffsets);
+            }
+        }
+        if(length >= HEADER_SIZE && length <= file.length()) {
+            offsets = loaded;
+            indexedLength = length;
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        File temp = File.createTempFile("run-history", ".tmp", indexFile.getParentFile());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(indexedLength);
+            out.writeInt(offsets.size());
+            for(Map.Entry<String, List<Long>> entry:offsets.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for(long offset:entry.getValue()) {
+                    out.writeLong(offset);
+                }
+            }
+        }
+        Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,240 @@
+package overviewergui;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.swing.BorderFactory;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.UIManager;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Shows the {@link RunHistory} one world at a time: a chart of how long the runs took, to spot a world that
+ * is getting slower to render or an Overviewer upgrade that made every world slower, and a table of the
+ * runs.
+ *
+ * @author Mark Bernard
+ */
+public class RunHistoryViewer extends JPanel {
+    private static final long serialVersionUID = 3561842049702746511L;
+
+    private RunHistory history;
+    private JList<String> worldList;
+    private RunTableModel tableModel;
+    private DurationChart chart;
+
+    /**
+     * @param history
+     */
+    public RunHistoryViewer(RunHistory history) {
+        this.history = history;
+        setLayout(new BorderLayout());
+        worldList = new JList<>(history.getWorlds().toArray(new String[0]));
+        worldList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        worldList.addListSelectionListener(new ListSelectionListener() {
+
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                if(!e.getValueIsAdjusting()) {
+                    showWorld(worldList.getSelectedValue());
+                }
+            }
+        });
+        JScrollPane worldScroll = new JScrollPane(worldList);
+        worldScroll.setBorder(BorderFactory.createTitledBorder("Worlds"));
+        worldScroll.setPreferredSize(new Dimension(180, 400));
+
+        chart = new DurationChart();
+        chart.setBorder(BorderFactory.createTitledBorder("Duration"));
+        tableModel = new RunTableModel();
+        JTable table = new JTable(tableModel);
+        table.setAutoCreateRowSorter(true);
+        JSplitPane runPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, chart, new JScrollPane(table));
+        runPane.setResizeWeight(0.5);
+        add(new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, worldScroll, runPane), BorderLayout.CENTER);
+        if(worldList.getModel().getSize() > 0) {
+            worldList.setSelectedIndex(0);
+        }
+    }
+
+    /**
+     * Open the history in its own window.
+     *
+     * @param parent Component the window is shown over.
+     */
+    public static void showWindow(Component parent) {
+        JFrame frame = new JFrame("Run History");
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.add(new RunHistoryViewer(RunHistory.getDefault()));
+        frame.setSize(900, 600);
+        frame.setLocationRelativeTo(parent);
+        frame.setVisible(true);
+    }
+
+    private void showWorld(String world) {
+        List<RunRecord> records = new ArrayList<>();
+        if(world != null) {
+            try {
+                records = history.getRuns(world);
+            }
+            catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Unable to read the run history: " + e.getMessage(), "Run History",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+        tableModel.setRecords(records);
+        chart.setRecords(records);
+    }
+
+    /**
+     * Runs of the selected world, oldest first.
+     */
+    private static class RunTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = -1027514539921786140L;
+        private static final String COLUMNS[] = {"Started", "Duration", "State", "Exit Code", "Tiles", "Tiles/s", "Peak Memory", "Regions Changed"};
+        private List<RunRecord> records = new ArrayList<>();
+        private DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+
+        public void setRecords(List<RunRecord> records) {
+            this.records = records;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return records.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            switch(column) {
+                case 3:
+                case 7:
+                    return Integer.class;
+                case 4:
+                    return Long.class;
+                case 5:
+                    return Double.class;
+                default:
+                    return String.class;
+            }
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            RunRecord record = records.get(row);
+            switch(column) {
+                case 0:
+                    return dateFormat.format(new Date(record.getStartMillis()));
+                case 1:
+                    return RenderProgress.formatDuration(record.getDurationMillis() / 1000);
+                case 2:
+                    return record.getState().getShortText();
+                case 3:
+                    return record.getExitCode();
+                case 4:
+                    return record.getTilesRendered();
+                case 5:
+                    return Math.round(record.getTilesPerSecond() * 10) / 10.0;
+                case 6:
+                    return WorldMetadata.formatBytes(record.getPeakRss());
+                default:
+                    return record.getRegionsChanged();
+            }
+        }
+    }
+
+    /**
+     * Line chart of the duration of each run, with runs that did not complete marked in red.
+     */
+    private static class DurationChart extends JComponent {
+        private static final long serialVersionUID = 8223604516338217093L;
+        private static final int MARGIN = 8;
+        private List<RunRecord> records = new ArrayList<>();
+
+        public DurationChart() {
+            setPreferredSize(new Dimension(600, 200));
+        }
+
+        public void setRecords(List<RunRecord> records) {
+            this.records = records;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Color background = UIManager.getColor("TextArea.background");
+            g.setColor(background == null ? Color.WHITE : background);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            int left = getInsets().left + MARGIN;
+            int top = getInsets().top + MARGIN;
+            int width = getWidth() - getInsets().right - MARGIN - left;
+            int height = getHeight() - getInsets().bottom - MARGIN - top;
+            Color foreground = UIManager.getColor("TextArea.foreground");
+            g.setColor(foreground == null ? Color.BLACK : foreground);
+            FontMetrics metrics = g.getFontMetrics();
+            if(records.isEmpty()) {
+                g.drawString("No runs recorded", left, top + metrics.getAscent());
+                return;
+            }
+            long max = 1;
+            for(RunRecord record:records) {
+                max = Math.max(max, record.getDurationMillis());
+            }
+            g.drawString("Longest " + RenderProgress.formatDuration(max / 1000) + ", " + records.size() + " runs",
+                    left, top + metrics.getAscent());
+            top += metrics.getHeight();
+            height -= metrics.getHeight();
+            g.setColor(Color.GRAY);
+            g.drawLine(left, top + height, left + width, top + height);
+            ((Graphics2D)g).setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            float step = records.size() == 1 ? 0 : width / (float)(records.size() - 1);
+            int lastX = 0;
+            int lastY = 0;
+            for(int i=0;i<records.size();i++) {
+                RunRecord record = records.get(i);
+                int x = left + Math.round(i * step);
+                int y = top + height - Math.round(record.getDurationMillis() / (float)max * height);
+                if(i > 0) {
+                    g.setColor(new Color(0x3070c0));
+                    g.drawLine(lastX, lastY, x, y);
+                }
+                g.setColor(record.getState() == RunState.COMPLETE ? new Color(0x3070c0) : Color.RED);
+                g.fillOval(x - 2, y - 2, 5, 5);
+                lastX = x;
+                lastY = y;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package overviewergui;
+
+/**
+ * Receives the output and state changes of an {@link OverviewerRun}. Output arrives on the thread reading
+ * Overviewer; state changes may arrive on any thread, including the one that stopped the run.
+ *
+ * @author Mark Bernard
+ */
+public interface RunListener {
+    /**
+     * Output read from Overviewer, or a message from the run itself. The buffer is reused after the call
+     * returns, so copy what has to be kept.
+     *
+     * @param run
+     * @param buffer
+     * @param offset
+     * @param length
+     */
+    void outputRead(OverviewerRun run, char buffer[], int offset, int length);
+
+    /**
+     * The run moved to a new state.
+     *
+     * @param run
+     * @param state
+     */
+    void stateChanged(OverviewerRun run, RunState state);
+}
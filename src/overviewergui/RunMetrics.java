@@ -0,0 +1,82 @@
+package overviewergui;
+
+import javax.management.ObjectName;
+
+/**
+ * Live metrics of one {@link OverviewerRun}, read from its progress and resource history when asked for.
+ *
+ * @author Mark Bernard
+ */
+public class RunMetrics implements RunMetricsMBean {
+    private OverviewerRun run;
+    private ObjectName objectName;
+
+    /**
+     * @param run
+     */
+    public RunMetrics(OverviewerRun run) {
+        this.run = run;
+    }
+
+    /**
+     * @return the run
+     */
+    public OverviewerRun getRun() {
+        return run;
+    }
+
+    /**
+     * @return the name the metrics are registered under, or null if they are not registered
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * @param objectName the name the metrics are registered under
+     */
+    public void setObjectName(ObjectName objectName) {
+        this.objectName = objectName;
+    }
+
+    @Override
+    public String getWorld() {
+        return run.getHistoryName();
+    }
+
+    @Override
+    public String getState() {
+        return run.getState().name();
+    }
+
+    @Override
+    public double getTilesPerSecond() {
+        return run.getProgress().getSmoothedRate();
+    }
+
+    @Override
+    public long getTilesDone() {
+        return run.getProgress().getTilesDone();
+    }
+
+    @Override
+    public long getTilesTotal() {
+        return run.getProgress().getTilesTotal();
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        long start = run.getStartMillis();
+        return start == 0 ? 0 : (System.currentTimeMillis() - start) / 1000.0;
+    }
+
+    @Override
+    public double getCpuPercent() {
+        return run.getResources().getLatest(ResourceHistory.CPU);
+    }
+
+    @Override
+    public long getRssBytes() {
+        return (long)run.getResources().getLatest(ResourceHistory.RSS);
+    }
+}
@@ -0,0 +1,49 @@
+package overviewergui;
+
+/**
+ * Management interface of the {@link RunMetrics} of one run, registered while the run is queued or
+ * running.
+ *
+ * @author Mark Bernard
+ */
+public interface RunMetricsMBean {
+    /**
+     * @return the map, or the maps of a batch
+     */
+    String getWorld();
+
+    /**
+     * @return the state of the run
+     */
+    String getState();
+
+    /**
+     * @return tiles per second smoothed over roughly the last ten seconds
+     */
+    double getTilesPerSecond();
+
+    /**
+     * @return tiles rendered so far
+     */
+    long getTilesDone();
+
+    /**
+     * @return tiles to render, 0 if not known yet
+     */
+    long getTilesTotal();
+
+    /**
+     * @return seconds since the Overviewer process was started, 0 if it has not started
+     */
+    double getElapsedSeconds();
+
+    /**
+     * @return CPU use of the Overviewer processes in percent of one core
+     */
+    double getCpuPercent();
+
+    /**
+     * @return resident memory of the Overviewer processes in bytes
+     */
+    long getRssBytes();
+}
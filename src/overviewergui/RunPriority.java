@@ -0,0 +1,34 @@
+package overviewergui;
+
+/**
+ * Priority of an Overviewer run. While a run is active, runs of a lower priority are paused so that the
+ * more urgent run gets the whole machine, and they continue where they were once it has ended.
+ * 
+ * @author Mark Bernard
+ */
+public enum RunPriority {
+    /** Background work such as a nightly render of every world. */
+    LOW("Low"),
+    /** The usual priority. */
+    NORMAL("Normal"),
+    /** A render someone is waiting for. */
+    HIGH("High");
+    
+    private String displayName;
+    
+    private RunPriority(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * @return the name shown to the user
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,176 @@
+package overviewergui;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Outcome of one finished Overviewer run as kept in the {@link RunHistory}.
+ *
+ * @author Mark Bernard
+ */
+public class RunRecord {
+    private String world;
+    private long startMillis;
+    private long endMillis;
+    private RunState state;
+    private int exitCode;
+    private long tilesRendered;
+    private double tilesPerSecond;
+    private long peakRss;
+    private int regionsChanged;
+    private long chunks;
+
+    /**
+     * Create a record.
+     *
+     * @param world Map the run rendered, or the name of the batch.
+     * @param startMillis Time Overviewer was started in milliseconds since the epoch.
+     * @param endMillis Time Overviewer ended in milliseconds since the epoch.
+     * @param state State the run ended in.
+     * @param exitCode Exit code of Overviewer, or -1 if it did not exit by itself.
+     * @param tilesRendered Number of tiles rendered.
+     * @param tilesPerSecond Average tiles per second while rendering.
+     * @param peakRss Highest resident memory of the process tree in bytes.
+     * @param regionsChanged Region files added, changed or removed since the last render, or -1 if unknown.
+     * @param chunks Chunks in the regions Overviewer was asked to render.
+     */
+    public RunRecord(String world, long startMillis, long endMillis, RunState state, int exitCode, long tilesRendered,
+            double tilesPerSecond, long peakRss, int regionsChanged, long chunks) {
+        this.world = world;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.state = state;
+        this.exitCode = exitCode;
+        this.tilesRendered = tilesRendered;
+        this.tilesPerSecond = tilesPerSecond;
+        this.peakRss = peakRss;
+        this.regionsChanged = regionsChanged;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Read a record written by {@link #write(DataOutput)}. Fields added later are written at the end and only 
+     * read when the record holds them, so older records stay readable.
+     *
+     * @param in Stream holding exactly one record.
+     * @return the record
+     * @throws IOException
+     */
+    public static RunRecord read(DataInputStream in) throws IOException {
+        String world = in.readUTF();
+        long startMillis = in.readLong();
+        long endMillis = in.readLong();
+        RunState state;
+        try {
+            state = RunState.valueOf(in.readUTF());
+        }
+        catch (IllegalArgumentException e) {
+            state = RunState.FAILED;
+        }
+        int exitCode = in.readInt();
+        long tilesRendered = in.readLong();
+        double tilesPerSecond = in.readDouble();
+        long peakRss = in.readLong();
+        int regionsChanged = in.readInt();
+        long chunks = in.available() >= 8 ? in.readLong() : 0;
+        return new RunRecord(world, startMillis, endMillis, state, exitCode, tilesRendered, tilesPerSecond, peakRss, 
+                regionsChanged, chunks);
+    }
+
+    /**
+     * Write the record in a compact binary form.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(world);
+        out.writeLong(startMillis);
+        out.writeLong(endMillis);
+        out.writeUTF(state.name());
+        out.writeInt(exitCode);
+        out.writeLong(tilesRendered);
+        out.writeDouble(tilesPerSecond);
+        out.writeLong(peakRss);
+        out.writeInt(regionsChanged);
+        out.writeLong(chunks);
+    }
+
+    /**
+     * @return the map the run rendered, or the name of the batch
+     */
+    public String getWorld() {
+        return world;
+    }
+
+    /**
+     * @return the time Overviewer was started in milliseconds since the epoch
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return the time Overviewer ended in milliseconds since the epoch
+     */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * @return the time Overviewer ran in milliseconds
+     */
+    public long getDurationMillis() {
+        return Math.max(0, endMillis - startMillis);
+    }
+
+    /**
+     * @return the state the run ended in
+     */
+    public RunState getState() {
+        return state;
+    }
+
+    /**
+     * @return the exit code of Overviewer, or -1 if it did not exit by itself
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * @return the number of tiles rendered
+     */
+    public long getTilesRendered() {
+        return tilesRendered;
+    }
+
+    /**
+     * @return the average tiles per second while rendering
+     */
+    public double getTilesPerSecond() {
+        return tilesPerSecond;
+    }
+
+    /**
+     * @return the highest resident memory of the process tree in bytes
+     */
+    public long getPeakRss() {
+        return peakRss;
+    }
+
+    /**
+     * @return the region files added, changed or removed since the last render, or -1 if unknown
+     */
+    public int getRegionsChanged() {
+        return regionsChanged;
+    }
+
+    /**
+     * @return the chunks in the regions Overviewer was asked to render, 0 if not recorded
+     */
+    public long getChunks() {
+        return chunks;
+    }
+}
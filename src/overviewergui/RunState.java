@@ -0,0 +1,52 @@
+package overviewergui;
+
+/**
+ * Life cycle of a single Overviewer run.
+ * 
+ * @author Mark Bernard
+ */
+public enum RunState {
+    /** Waiting for a free render slot. */
+    QUEUED("Queued", "Overviewer is waiting for a free render slot"),
+    /** Overviewer process is running. */
+    RUNNING("Running", "Overviewer is running"),
+    /** Overviewer processes are paused while a run of higher priority is active. */
+    PAUSED("Paused", "Overviewer is paused for a run of higher priority"),
+    /** Overviewer finished without errors. */
+    COMPLETE("Done", "Overviewer is complete"),
+    /** Overviewer finished with a non-zero exit code or could not be started. */
+    FAILED("Failed", "Overviewer has completed with errors"),
+    /** Nothing changed since the last render so Overviewer was not run. */
+    SKIPPED("Skipped", "Nothing changed since the last render"),
+    /** The run was stopped by the user. */
+    STOPPED("Stopped", "Overviewer was stopped");
+    
+    private String shortText;
+    private String description;
+    
+    private RunState(String shortText, String description) {
+        this.shortText = shortText;
+        this.description = description;
+    }
+
+    /**
+     * @return the text shown in the tab title
+     */
+    public String getShortText() {
+        return shortText;
+    }
+
+    /**
+     * @return the text shown in the run panel
+     */
+    public String getDescription() {
+        return description;
+    }
+    
+    /**
+     * @return true if the run has ended
+     */
+    public boolean isFinished() {
+        return this == COMPLETE || this == FAILED || this == SKIPPED || this == STOPPED;
+    }
+}
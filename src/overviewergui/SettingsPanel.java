@@ -7,19 +7,32 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
+import java.io.File;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JList;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JTextField;
+import javax.swing.JToggleButton;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
 import javax.swing.border.BevelBorder;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 /**
  * Settings for running overviewer with.
@@ -34,8 +47,25 @@ public class SettingsPanel extends JPanel implements ActionListener {
     private JTextField overviewerExecutable = new JTextField();
     private JTextField minecraftSaveFolder = new JTextField();
     private JTextField mapOutputFolder = new JTextField();
+    private JSpinner logMaxLines = new JSpinner(new SpinnerNumberModel(10000, 100, 1000000, 1000));
+    private JSpinner logMaxKilobytes = new JSpinner(new SpinnerNumberModel(4096, 64, 262144, 1024));
+    private JSpinner logRetentionDays = new JSpinner(new SpinnerNumberModel(30, 0, 3650, 1));
+    private JSpinner logRetentionMegabytes = new JSpinner(new SpinnerNumberModel(1024, 0, 1048576, 256));
+    private JSpinner maxConcurrentRenders = new JSpinner(new SpinnerNumberModel(1, 1, 64, 1));
+    private JCheckBox incrementalRenders = new JCheckBox("Skip maps with no changed regions and only check what changed");
+    private JCheckBox batchRuns = new JCheckBox("Render all selected maps with one Overviewer process");
+    private JTextField renderModes = new JTextField();
+    private JCheckBox lowerLowPriority = new JCheckBox("Run low priority renders with renice and ionice");
+    private JSpinner watchQuietSeconds = new JSpinner(new SpinnerNumberModel(60, 1, 86400, 10));
+    private JSpinner serverPort = new JSpinner(new SpinnerNumberModel(8080, 1, 65535, 1));
+    private JSpinner metricsPort = new JSpinner(new SpinnerNumberModel(9464, 1, 65535, 1));
+    private JComboBox<QueueOrder> queueOrder = new JComboBox<>(QueueOrder.values());
+    private JComboBox<RunPriority> runPriority = new JComboBox<>(RunPriority.values());
+    private Map<String, String> worldRenderModes = new HashMap<>();
     private MapListModel listModel = new MapListModel("");
     private JList<String> mapList = new JList<String>(listModel);
+    private WorldMetadataIndex worldIndex;
+    private RenderCostEstimator costEstimator;
     private OverviewerGui overviewerGui;
 
     /**
@@ -45,6 +75,18 @@ public class SettingsPanel extends JPanel implements ActionListener {
      */
     public SettingsPanel(final OverviewerGui overviewerGui) {
         this.overviewerGui = overviewerGui;
+        File worldIndexFile = null;
+        RunHistory history = null;
+        try {
+            worldIndexFile = DataFolder.resolve("worlds.idx");
+            history = RunHistory.getDefault();
+        }
+        catch (RuntimeException e) {
+            // No data folder: the details of the worlds are not cached and estimates use the default rate.
+            e.printStackTrace();
+        }
+        worldIndex = new WorldMetadataIndex(worldIndexFile);
+        costEstimator = new RenderCostEstimator(history);
         setLayout(new BorderLayout());
         JPanel foldersPanel = new JPanel(new BorderLayout());
         add(foldersPanel, BorderLayout.NORTH);
@@ -66,10 +108,36 @@ public class SettingsPanel extends JPanel implements ActionListener {
         labelPanel.add(new JLabel("Overviewer Executable"));
         labelPanel.add(new JLabel("Minecraft Save Folder"));
         labelPanel.add(new JLabel("Map Output Folder"));
+        labelPanel.add(new JLabel("Log Lines Kept"));
+        labelPanel.add(new JLabel("Log Size Kept (KB)"));
+        labelPanel.add(new JLabel("Archived Logs Kept (days)"));
+        labelPanel.add(new JLabel("Archived Logs Kept (MB)"));
+        labelPanel.add(new JLabel("Concurrent Renders"));
+        labelPanel.add(new JLabel("Incremental Renders"));
+        labelPanel.add(new JLabel("Batch Runs"));
+        labelPanel.add(new JLabel("Batch Render Modes"));
+        labelPanel.add(new JLabel("Low Priority Runs"));
+        labelPanel.add(new JLabel("Queue Order"));
+        labelPanel.add(new JLabel("Watch Quiet Period (s)"));
+        labelPanel.add(new JLabel("Map Server Port"));
+        labelPanel.add(new JLabel("Metrics Port"));
         
         inputPanel.add(overviewerExecutable);
         inputPanel.add(minecraftSaveFolder);
         inputPanel.add(mapOutputFolder);
+        inputPanel.add(logMaxLines);
+        inputPanel.add(logMaxKilobytes);
+        inputPanel.add(logRetentionDays);
+        inputPanel.add(logRetentionMegabytes);
+        inputPanel.add(maxConcurrentRenders);
+        inputPanel.add(incrementalRenders);
+        inputPanel.add(batchRuns);
+        inputPanel.add(renderModes);
+        inputPanel.add(lowerLowPriority);
+        inputPanel.add(queueOrder);
+        inputPanel.add(watchQuietSeconds);
+        inputPanel.add(serverPort);
+        inputPanel.add(metricsPort);
         
         buttonPanel.add(new JButton(new FileBrowse(overviewerExecutable, this, false, null)));
         buttonPanel.add(new JButton(new FileBrowse(minecraftSaveFolder, this, true, null)));
@@ -78,8 +146,29 @@ public class SettingsPanel extends JPanel implements ActionListener {
             @Override
             public void run() {
                 listModel.setFolder(minecraftSaveFolder.getText());
+                updateEstimates();
             }
         })));
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JButton(new AbstractAction("Selected Maps...") {
+            private static final long serialVersionUID = 4418093286315521706L;
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                editWorldRenderModes();
+            }
+        }));
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
         minecraftSaveFolder.addFocusListener(new FocusListener() {
             
             @Override
@@ -90,7 +179,53 @@ public class SettingsPanel extends JPanel implements ActionListener {
             @Override
             public void focusGained(FocusEvent e) {}
         });
+        mapOutputFolder.addFocusListener(new FocusListener() {
+            
+            @Override
+            public void focusLost(FocusEvent e) {
+                updateEstimates();
+            }
+            
+            @Override
+            public void focusGained(FocusEvent e) {}
+        });
+        ChangeListener retention = new ChangeListener() {
+            
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                LogArchiver.getDefault().setRetention(getLogRetentionDays(), getLogRetentionMegabytes());
+            }
+        };
+        logRetentionDays.addChangeListener(retention);
+        logRetentionMegabytes.addChangeListener(retention);
+        logRetentionDays.setToolTipText("Archived run logs older than this are deleted, 0 keeps them");
+        logRetentionMegabytes.setToolTipText("The oldest archived run logs are deleted above this total size, 0 for no limit");
+        incrementalRenders.addActionListener(new ActionListener() {
+            
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                updateEstimates();
+            }
+        });
 
+        Runnable repaintMapList = new Runnable() {
+            
+            @Override
+            public void run() {
+                mapList.repaint();
+            }
+        };
+        Executor eventDispatchThread = new Executor() {
+            
+            @Override
+            public void execute(Runnable command) {
+                SwingUtilities.invokeLater(command);
+            }
+        };
+        worldIndex.setChangeListener(repaintMapList, eventDispatchThread);
+        costEstimator.setChangeListener(repaintMapList, eventDispatchThread);
+        mapList.setSelectionModel(new MapListModel.SelectionModel());
+        mapList.setCellRenderer(new MapListCellRenderer(listModel, worldIndex, costEstimator));
         JPanel mapListPanel = new JPanel(new BorderLayout());
         mapListPanel.add(new JScrollPane(mapList));
         mapListPanel.setBorder(BorderFactory.createTitledBorder("Minecraft Maps"));
@@ -98,9 +233,94 @@ public class SettingsPanel extends JPanel implements ActionListener {
 
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         add(panel, BorderLayout.SOUTH);
+        runPriority.setSelectedItem(RunPriority.NORMAL);
+        panel.add(new JLabel("Priority"));
+        panel.add(runPriority);
         JButton runButton = new JButton("Run Overviewer");
         panel.add(runButton);
         runButton.addActionListener(this);
+        final JToggleButton watchButton = new JToggleButton("Watch Maps");
+        watchButton.setToolTipText("Render the selected maps again whenever their region files change");
+        panel.add(watchButton);
+        watchButton.addActionListener(new ActionListener() {
+            
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if(!watchButton.isSelected()) {
+                    overviewerGui.stopWatching();
+                    return;
+                }
+                List<String> maps = mapList.getSelectedValuesList();
+                if(maps.isEmpty()) {
+                    JOptionPane.showMessageDialog(SettingsPanel.this, "Select the maps to watch.", "Watch Maps", JOptionPane.INFORMATION_MESSAGE);
+                    watchButton.setSelected(false);
+                    return;
+                }
+                watchButton.setSelected(overviewerGui.watchMaps(getMinecraftSaveFolder(), maps, getMapOutputFolder(), 
+                        getOverviewerExecutable(), (RunPriority)runPriority.getSelectedItem()));
+            }
+        });
+        final JToggleButton serveButton = new JToggleButton("Serve Maps");
+        serveButton.setToolTipText("Serve the map output folder over HTTP and open it in the browser");
+        panel.add(serveButton);
+        serveButton.addActionListener(new ActionListener() {
+            
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if(serveButton.isSelected()) {
+                    serveButton.setSelected(overviewerGui.serveMaps(getMapOutputFolder(), getServerPort()));
+                }
+                else {
+                    overviewerGui.stopServing();
+                }
+            }
+        });
+        final JToggleButton metricsButton = new JToggleButton("Publish Metrics");
+        metricsButton.setToolTipText("Publish the render metrics for Prometheus at http://localhost:port/metrics");
+        panel.add(metricsButton);
+        metricsButton.addActionListener(new ActionListener() {
+            
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if(metricsButton.isSelected()) {
+                    metricsButton.setSelected(overviewerGui.publishMetrics(getMetricsPort()));
+                }
+                else {
+                    overviewerGui.stopPublishingMetrics();
+                }
+            }
+        });
+        JButton openLogButton = new JButton("Open Log...");
+        panel.add(openLogButton);
+        openLogButton.addActionListener(new ActionListener() {
+            
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser fileChooser = new JFileChooser(LogSpool.getLogFolder());
+                if(fileChooser.showOpenDialog(SettingsPanel.this) == JFileChooser.APPROVE_OPTION) {
+                    File file = fileChooser.getSelectedFile();
+                    MappedLogViewer.showWindow(SettingsPanel.this, file, "Overviewer Log - " + file.getName());
+                }
+            }
+        });
+        JButton historyButton = new JButton("History...");
+        panel.add(historyButton);
+        historyButton.addActionListener(new ActionListener() {
+            
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                RunHistoryViewer.showWindow(SettingsPanel.this);
+            }
+        });
+        JButton analyzeButton = new JButton("Analyze Output...");
+        panel.add(analyzeButton);
+        analyzeButton.addActionListener(new ActionListener() {
+            
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                OutputAnalyzerViewer.showWindow(SettingsPanel.this, getMapOutputFolder(), getMinecraftSaveFolder());
+            }
+        });
         JButton exitButton = new JButton("Exit");
         panel.add(exitButton);
         exitButton.addActionListener(new ActionListener() {
@@ -153,6 +373,252 @@ public class SettingsPanel extends JPanel implements ActionListener {
      */
     public void setMapOutputFolder(String mapOutputFolder) {
         this.mapOutputFolder.setText(mapOutputFolder);
+        updateEstimates();
+    }
+
+    /**
+     * @return the maximum number of log lines kept per run
+     */
+    public int getLogMaxLines() {
+        return (Integer)logMaxLines.getValue();
+    }
+
+    /**
+     * @param logMaxLines the maximum number of log lines kept per run
+     */
+    public void setLogMaxLines(int logMaxLines) {
+        this.logMaxLines.setValue(logMaxLines);
+    }
+
+    /**
+     * @return the maximum log size kept per run in kilobytes
+     */
+    public int getLogMaxKilobytes() {
+        return (Integer)logMaxKilobytes.getValue();
+    }
+
+    /**
+     * @param logMaxKilobytes the maximum log size kept per run in kilobytes
+     */
+    public void setLogMaxKilobytes(int logMaxKilobytes) {
+        this.logMaxKilobytes.setValue(logMaxKilobytes);
+    }
+
+    /**
+     * @return the days archived run logs are kept, 0 to keep them regardless of age
+     */
+    public int getLogRetentionDays() {
+        return (Integer)logRetentionDays.getValue();
+    }
+
+    /**
+     * @param logRetentionDays the days archived run logs are kept, 0 to keep them regardless of age
+     */
+    public void setLogRetentionDays(int logRetentionDays) {
+        this.logRetentionDays.setValue(logRetentionDays);
+    }
+
+    /**
+     * @return the total size of the archived run logs kept in megabytes, 0 for no limit
+     */
+    public int getLogRetentionMegabytes() {
+        return (Integer)logRetentionMegabytes.getValue();
+    }
+
+    /**
+     * @param logRetentionMegabytes the total size of the archived run logs kept in megabytes, 0 for no limit
+     */
+    public void setLogRetentionMegabytes(int logRetentionMegabytes) {
+        this.logRetentionMegabytes.setValue(logRetentionMegabytes);
+    }
+
+    /**
+     * @return the maximum number of Overviewer runs at the same time
+     */
+    public int getMaxConcurrentRenders() {
+        return (Integer)maxConcurrentRenders.getValue();
+    }
+
+    /**
+     * @param maxConcurrentRenders the maximum number of Overviewer runs at the same time
+     */
+    public void setMaxConcurrentRenders(int maxConcurrentRenders) {
+        this.maxConcurrentRenders.setValue(maxConcurrentRenders);
+    }
+
+    /**
+     * @return true if runs compare region files with the last render
+     */
+    public boolean isIncrementalRenders() {
+        return incrementalRenders.isSelected();
+    }
+
+    /**
+     * @param incrementalRenders true if runs compare region files with the last render
+     */
+    public void setIncrementalRenders(boolean incrementalRenders) {
+        this.incrementalRenders.setSelected(incrementalRenders);
+        updateEstimates();
+    }
+
+    /**
+     * @return true if selected maps are rendered together by one Overviewer process
+     */
+    public boolean isBatchRuns() {
+        return batchRuns.isSelected();
+    }
+
+    /**
+     * @param batchRuns true if selected maps are rendered together by one Overviewer process
+     */
+    public void setBatchRuns(boolean batchRuns) {
+        this.batchRuns.setSelected(batchRuns);
+    }
+
+    /**
+     * @return the default render modes of batch runs
+     */
+    public String getRenderModes() {
+        return renderModes.getText();
+    }
+
+    /**
+     * @param renderModes the default render modes of batch runs
+     */
+    public void setRenderModes(String renderModes) {
+        this.renderModes.setText(renderModes);
+    }
+
+    /**
+     * @param world
+     * @return the render modes a batch run uses for the world
+     */
+    public List<String> getRenderModes(String world) {
+        return RenderSettings.resolveRenderModes(worldRenderModes.get(world), renderModes.getText());
+    }
+
+    /**
+     * @return true if low priority runs are started with a lower CPU and I/O priority
+     */
+    public boolean isLowerLowPriority() {
+        return lowerLowPriority.isSelected();
+    }
+
+    /**
+     * @param lowerLowPriority true if low priority runs are started with a lower CPU and I/O priority
+     */
+    public void setLowerLowPriority(boolean lowerLowPriority) {
+        this.lowerLowPriority.setSelected(lowerLowPriority);
+    }
+
+    /**
+     * @return the order of queued runs of the same priority
+     */
+    public QueueOrder getQueueOrder() {
+        return (QueueOrder)queueOrder.getSelectedItem();
+    }
+
+    /**
+     * @param queueOrder the order of queued runs of the same priority
+     */
+    public void setQueueOrder(QueueOrder queueOrder) {
+        this.queueOrder.setSelectedItem(queueOrder);
+    }
+
+    /**
+     * @return the seconds the region files of a watched map must be unchanged before it is rendered
+     */
+    public int getWatchQuietSeconds() {
+        return (Integer)watchQuietSeconds.getValue();
+    }
+
+    /**
+     * @param watchQuietSeconds the seconds the region files of a watched map must be unchanged before it is rendered
+     */
+    public void setWatchQuietSeconds(int watchQuietSeconds) {
+        this.watchQuietSeconds.setValue(watchQuietSeconds);
+    }
+
+    /**
+     * @return the port the rendered maps are served on
+     */
+    public int getServerPort() {
+        return (Integer)serverPort.getValue();
+    }
+
+    /**
+     * @param serverPort the port the rendered maps are served on
+     */
+    public void setServerPort(int serverPort) {
+        this.serverPort.setValue(serverPort);
+    }
+
+    /**
+     * @return the local port the metrics are published on
+     */
+    public int getMetricsPort() {
+        return (Integer)metricsPort.getValue();
+    }
+
+    /**
+     * @param metricsPort the local port the metrics are published on
+     */
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort.setValue(metricsPort);
+    }
+
+    /**
+     * @return the estimator of the render times shown in the map list
+     */
+    public RenderCostEstimator getCostEstimator() {
+        return costEstimator;
+    }
+
+    /**
+     * Make the estimates in the map list again for the current output folder and incremental setting.
+     */
+    private void updateEstimates() {
+        costEstimator.setSettings(getMapOutputFolder(), isIncrementalRenders());
+        mapList.repaint();
+    }
+
+    /**
+     * @return the render modes set for single worlds, by world name
+     */
+    public Map<String, String> getWorldRenderModes() {
+        return worldRenderModes;
+    }
+
+    /**
+     * @param worldRenderModes the render modes set for single worlds, by world name
+     */
+    public void setWorldRenderModes(Map<String, String> worldRenderModes) {
+        this.worldRenderModes = new HashMap<>(worldRenderModes);
+    }
+
+    /**
+     * Ask for the render modes of the selected maps. An empty answer goes back to the default render modes.
+     */
+    private void editWorldRenderModes() {
+        List<String> maps = mapList.getSelectedValuesList();
+        if(maps.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Select the maps to set render modes for.", "Batch Render Modes", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String current = worldRenderModes.get(maps.get(0));
+        Object answer = JOptionPane.showInputDialog(this, "Render modes of " + (maps.size() == 1 ? maps.get(0) : maps.size() + " maps") 
+                + ", empty for the default", "Batch Render Modes", JOptionPane.QUESTION_MESSAGE, null, null, current == null ? "" : current);
+        if(answer == null) {
+            return;
+        }
+        for(String map:maps) {
+            if(RenderSettings.parseRenderModes(answer.toString()).isEmpty()) {
+                worldRenderModes.remove(map);
+            }
+            else {
+                worldRenderModes.put(map, answer.toString().trim());
+            }
+        }
     }
 
     /**
@@ -170,9 +636,8 @@ public class SettingsPanel extends JPanel implements ActionListener {
     @Override
     public void actionPerformed(ActionEvent e) {
         List<String> maps = mapList.getSelectedValuesList();
-        for(String map:maps) {
-            this.overviewerGui.addOverviewer(getMinecraftSaveFolder(), map, getMapOutputFolder(), getOverviewerExecutable());
-        }
+        this.overviewerGui.addOverviewers(getMinecraftSaveFolder(), maps, getMapOutputFolder(), getOverviewerExecutable(), 
+                (RunPriority)runPriority.getSelectedItem());
     }
 }
 
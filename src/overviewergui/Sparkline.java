@@ -0,0 +1,94 @@
+package overviewergui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+import javax.swing.JComponent;
+import javax.swing.UIManager;
+
+/**
+ * Small line chart of one series of a {@link ResourceHistory} with its newest value as caption. The chart
+ * is scaled to the highest value shown.
+ *
+ * @author Mark Bernard
+ */
+public class Sparkline extends JComponent {
+    private static final long serialVersionUID = -2719540331806463581L;
+
+    private int series;
+    private String name;
+    private ResourceHistory history;
+    private float values[];
+    private int xPoints[];
+    private int yPoints[];
+
+    /**
+     * @param series One of the series of {@link ResourceHistory}.
+     * @param name Caption in front of the newest value.
+     */
+    public Sparkline(int series, String name) {
+        this.series = series;
+        this.name = name;
+        values = new float[ResourceHistory.SIZE];
+        xPoints = new int[ResourceHistory.SIZE];
+        yPoints = new int[ResourceHistory.SIZE];
+        setFont(getFont() == null ? new Font(Font.SANS_SERIF, Font.PLAIN, 10) : getFont().deriveFont(10f));
+        setPreferredSize(new Dimension(110, 26));
+    }
+
+    /**
+     * @param history the history to show, may be null
+     */
+    public void setHistory(ResourceHistory history) {
+        this.history = history;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        int width = getWidth();
+        int height = getHeight();
+        Color background = UIManager.getColor("TextArea.background");
+        g.setColor(background == null ? Color.WHITE : background);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.GRAY);
+        g.drawRect(0, 0, width - 1, height - 1);
+        int count = history == null ? 0 : history.copy(series, values);
+        float max = 0;
+        for(int i=0;i<count;i++) {
+            max = Math.max(max, values[i]);
+        }
+        if(count > 1) {
+            float step = (width - 3) / (float)(ResourceHistory.SIZE - 1);
+            int offset = ResourceHistory.SIZE - count;
+            for(int i=0;i<count;i++) {
+                xPoints[i] = 1 + Math.round((offset + i) * step);
+                yPoints[i] = height - 2 - (max <= 0 ? 0 : Math.round(values[i] / max * (height - 4)));
+            }
+            ((Graphics2D)g).setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(new Color(0x3070c0));
+            g.drawPolyline(xPoints, yPoints, count);
+        }
+        Color foreground = UIManager.getColor("TextArea.foreground");
+        g.setColor(foreground == null ? Color.BLACK : foreground);
+        g.setFont(getFont());
+        FontMetrics metrics = g.getFontMetrics();
+        g.drawString(name + " " + format(count == 0 ? 0 : values[count - 1]), 3, metrics.getAscent() + 1);
+    }
+
+    private String format(float value) {
+        switch(series) {
+            case ResourceHistory.CPU:
+                return String.format("%.0f%%", value);
+            case ResourceHistory.RSS:
+                return WorldMetadata.formatBytes((long)value);
+            default:
+                return WorldMetadata.formatBytes((long)value) + "/s";
+        }
+    }
+}
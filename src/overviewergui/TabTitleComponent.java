@@ -15,6 +15,7 @@ import javax.swing.JPanel;
  */
 public class TabTitleComponent extends JPanel {
     private static final long serialVersionUID = -3479738282862739743L;
+    private JLabel stateLabel;
 
     /**
      * Create a tab closing component with the provided title.
@@ -30,6 +31,10 @@ public class TabTitleComponent extends JPanel {
         JLabel titleLabel = new JLabel(title);
         titleLabel.setOpaque(false);
         titlePanel.add(titleLabel);
+        stateLabel = new JLabel();
+        stateLabel.setOpaque(false);
+        stateLabel.setEnabled(false);
+        titlePanel.add(stateLabel);
         add(titlePanel, BorderLayout.CENTER);
         ImageButton closeButton = new ImageButton();
 //        closeButton.setBorder(BorderFactory.createEmptyBorder());
@@ -46,4 +51,13 @@ public class TabTitleComponent extends JPanel {
             }
         });
     }
+
+    /**
+     * Show the state of the run next to the title.
+     * 
+     * @param state
+     */
+    public void setState(RunState state) {
+        stateLabel.setText("(" + state.getShortText() + ")");
+    }
 }
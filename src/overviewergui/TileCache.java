@@ -0,0 +1,97 @@
+package overviewergui;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded tiles, least recently used first out once their pixels take more than the budget. Tiles known to
+ * be empty are kept as {@link #EMPTY} so their files are not looked for again.
+ *
+ * @author Mark Bernard
+ */
+public class TileCache {
+    /** Marks a tile that has no file. */
+    public static final BufferedImage EMPTY = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+    /** What an entry costs besides its pixels. */
+    private static final int ENTRY_BYTES = 64;
+
+    private long budget;
+    private long used;
+    private LinkedHashMap<Long, BufferedImage> tiles;
+
+    /**
+     * @param budget Bytes the decoded pixels may take.
+     */
+    public TileCache(long budget) {
+        this.budget = budget;
+        tiles = new LinkedHashMap<>(1024, 0.75f, true);
+    }
+
+    /**
+     * @param zoom
+     * @param column
+     * @param row
+     * @return the key of a tile
+     */
+    public static long key(int zoom, int column, int row) {
+        return ((long)zoom << 56) | ((long)column << 28) | row;
+    }
+
+    /**
+     * @param key
+     * @return the tile, {@link #EMPTY}, or null if it is not in the cache
+     */
+    public synchronized BufferedImage get(long key) {
+        return tiles.get(key);
+    }
+
+    /**
+     * Add a tile and drop the least recently used tiles until the cache is within its budget again.
+     *
+     * @param key
+     * @param tile The decoded tile or {@link #EMPTY}.
+     */
+    public synchronized void put(long key, BufferedImage tile) {
+        BufferedImage old = tiles.put(key, tile);
+        if(old != null) {
+            used -= cost(old);
+        }
+        used += cost(tile);
+        Iterator<Map.Entry<Long, BufferedImage>> entries = tiles.entrySet().iterator();
+        while(used > budget && entries.hasNext()) {
+            Map.Entry<Long, BufferedImage> entry = entries.next();
+            if(entry.getKey() != key) {
+                used -= cost(entry.getValue());
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop every tile.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        used = 0;
+    }
+
+    /**
+     * @return the bytes taken by the tiles in the cache
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * @return the number of tiles in the cache
+     */
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    private static long cost(BufferedImage tile) {
+        return tile == EMPTY ? ENTRY_BYTES : ENTRY_BYTES + (long)tile.getWidth() * tile.getHeight() * 4;
+    }
+}
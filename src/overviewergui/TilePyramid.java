@@ -0,0 +1,127 @@
+package overviewergui;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The tiles of one render of a map as Overviewer writes them. The whole map at the lowest zoom level is
+ * {@code base.png}; every tile has four tiles of the next zoom level in a folder named like the tile without
+ * its extension, numbered 0 to 3 for the top left, top right, bottom left and bottom right quarter. A tile at
+ * zoom level z is addressed by its column and row, both from 0 to 2<sup>z</sup> - 1. Tiles with nothing on
+ * them are not written.
+ *
+ * @author Mark Bernard
+ */
+public class TilePyramid {
+    private static final String IMAGE_FORMATS[] = {"png", "jpg", "webp"};
+
+    private File folder;
+    private String extension;
+    private int maxZoom;
+
+    private TilePyramid(File folder, String extension, int maxZoom) {
+        this.folder = folder;
+        this.extension = extension;
+        this.maxZoom = maxZoom;
+    }
+
+    /**
+     * Find the renders of a map, the sub folders of its output folder that hold tiles.
+     *
+     * @param mapFolder Output folder of the map.
+     * @return the names of the renders, sorted
+     */
+    public static List<String> listRenders(File mapFolder) {
+        List<String> renders = new ArrayList<>();
+        File folders[] = mapFolder.listFiles();
+        if(folders != null) {
+            Arrays.sort(folders);
+            for(File folder:folders) {
+                if(folder.isDirectory() && findExtension(folder) != null) {
+                    renders.add(folder.getName());
+                }
+            }
+        }
+        return renders;
+    }
+
+    /**
+     * Open the tiles of a render. The zoom levels are found by following the tile folders down.
+     *
+     * @param folder Folder of the render.
+     * @return the pyramid
+     * @throws FileNotFoundException if the folder holds no tiles
+     */
+    public static TilePyramid open(File folder) throws FileNotFoundException {
+        String extension = findExtension(folder);
+        if(extension == null) {
+            throw new FileNotFoundException("No tiles in " + folder.getAbsolutePath());
+        }
+        int zoom = 0;
+        File level = folder;
+        boolean found = true;
+        while(found) {
+            found = false;
+            for(int quadrant=0;quadrant<4 && !found;quadrant++) {
+                File child = new File(level, Integer.toString(quadrant));
+                if(child.isDirectory()) {
+                    level = child;
+                    zoom++;
+                    found = true;
+                }
+            }
+        }
+        for(int quadrant=0;quadrant<4;quadrant++) {
+            if(new File(level, quadrant + "." + extension).isFile()) {
+                zoom++;
+                break;
+            }
+        }
+        return new TilePyramid(folder, extension, zoom);
+    }
+
+    private static String findExtension(File folder) {
+        for(String extension:IMAGE_FORMATS) {
+            if(new File(folder, "base." + extension).isFile()) {
+                return extension;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param zoom Zoom level, 0 is the whole map in one tile.
+     * @param column
+     * @param row
+     * @return the file of the tile, which does not exist if the tile is empty
+     */
+    public File getTile(int zoom, int column, int row) {
+        if(zoom == 0) {
+            return new File(folder, "base." + extension);
+        }
+        StringBuilder path = new StringBuilder(zoom * 2 + extension.length());
+        for(int bit=zoom - 1;bit>=0;bit--) {
+            path.append(((row >> bit) & 1) * 2 + ((column >> bit) & 1));
+            path.append(bit == 0 ? '.' : File.separatorChar);
+        }
+        path.append(extension);
+        return new File(folder, path.toString());
+    }
+
+    /**
+     * @return the folder of the render
+     */
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * @return the highest zoom level
+     */
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+}
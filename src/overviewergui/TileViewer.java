@@ -0,0 +1,429 @@
+package overviewergui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/**
+ * Shows a {@link TilePyramid} that can be dragged around and zoomed with the mouse wheel. Only the tiles in
+ * view are decoded, on a small pool of background threads, and kept in a {@link TileCache}. Until a tile is
+ * decoded the part of a lower zoom level tile that covers it is drawn scaled up, so zooming in never shows
+ * holes. While the map is dragged, the row or column of tiles about to come into view is decoded ahead of
+ * time. Loads for tiles that went out of view before their turn are dropped.
+ *
+ * @author Mark Bernard
+ */
+public class TileViewer extends JComponent {
+    private static final long serialVersionUID = -4620137829457170281L;
+    /** Tile size Overviewer uses, used until the first tile is read. */
+    private static final int DEFAULT_TILE_SIZE = 384;
+    private static final Color BACKGROUND = new Color(0x1a1a1a);
+    private static final int PRIORITY_VISIBLE = 0;
+    private static final int PRIORITY_PREFETCH = 1;
+
+    private TileCache cache;
+    private ThreadPoolExecutor decoders;
+    private AtomicLong sequence = new AtomicLong();
+    private Set<Long> loading = ConcurrentHashMap.newKeySet();
+    private volatile TilePyramid pyramid;
+    private volatile TileRange wanted;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private int zoom;
+    /** Center of the view in pixels of the highest zoom level. */
+    private double centerX;
+    private double centerY;
+    private int directionX;
+    private int directionY;
+    private Runnable zoomListener;
+
+    /**
+     * @param cache Cache for the decoded tiles.
+     */
+    public TileViewer(TileCache cache) {
+        this.cache = cache;
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        decoders = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Tile decoder");
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            }
+        });
+        decoders.allowCoreThreadTimeOut(true);
+        setPreferredSize(new Dimension(800, 600));
+        setOpaque(true);
+        MouseAdapter mouse = new MouseAdapter() {
+            private Point last;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                last = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if(last != null) {
+                    pan(last.x - e.getX(), last.y - e.getY());
+                    last = e.getPoint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                last = null;
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if(e.getClickCount() == 2) {
+                    zoom(SwingUtilities.isRightMouseButton(e) ? -1 : 1, e.getX(), e.getY());
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(-e.getWheelRotation(), e.getX(), e.getY());
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    /**
+     * Show another render, zoomed out so the whole map is in view.
+     *
+     * @param pyramid The render, or null to show nothing.
+     */
+    public void setPyramid(TilePyramid pyramid) {
+        this.pyramid = pyramid;
+        wanted = null;
+        cache.clear();
+        tileSize = DEFAULT_TILE_SIZE;
+        zoom = 0;
+        if(pyramid != null) {
+            centerX = ((long)tileSize << pyramid.getMaxZoom()) / 2.0;
+            centerY = centerX;
+        }
+        fireZoomChanged();
+        repaint();
+    }
+
+    /**
+     * @return the render shown, or null
+     */
+    public TilePyramid getPyramid() {
+        return pyramid;
+    }
+
+    /**
+     * @param zoomListener called when the zoom level changes
+     */
+    public void setZoomListener(Runnable zoomListener) {
+        this.zoomListener = zoomListener;
+    }
+
+    /**
+     * @return the zoom level shown
+     */
+    public int getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Zoom around the middle of the view.
+     *
+     * @param steps Zoom levels to go in, or out if negative.
+     */
+    public void zoom(int steps) {
+        zoom(steps, getWidth() / 2, getHeight() / 2);
+    }
+
+    /**
+     * Zoom so the point under the mouse stays where it is.
+     */
+    private void zoom(int steps, int x, int y) {
+        TilePyramid shown = pyramid;
+        if(shown == null) {
+            return;
+        }
+        int newZoom = Math.max(0, Math.min(shown.getMaxZoom(), zoom + steps));
+        if(newZoom == zoom) {
+            return;
+        }
+        double scale = scale(shown);
+        double pointX = centerX + (x - getWidth() / 2.0) * scale;
+        double pointY = centerY + (y - getHeight() / 2.0) * scale;
+        zoom = newZoom;
+        scale = scale(shown);
+        centerX = pointX - (x - getWidth() / 2.0) * scale;
+        centerY = pointY - (y - getHeight() / 2.0) * scale;
+        directionX = 0;
+        directionY = 0;
+        fireZoomChanged();
+        repaint();
+    }
+
+    /**
+     * Move the view by a number of screen pixels and note the direction for loading ahead.
+     */
+    private void pan(int dx, int dy) {
+        TilePyramid shown = pyramid;
+        if(shown == null || dx == 0 && dy == 0) {
+            return;
+        }
+        double scale = scale(shown);
+        double size = (double)tileSize * (1L << shown.getMaxZoom());
+        centerX = Math.max(0, Math.min(size, centerX + dx * scale));
+        centerY = Math.max(0, Math.min(size, centerY + dy * scale));
+        directionX = Integer.signum(dx);
+        directionY = Integer.signum(dy);
+        repaint();
+    }
+
+    /**
+     * @return pixels of the highest zoom level per screen pixel
+     */
+    private double scale(TilePyramid shown) {
+        return 1L << (shown.getMaxZoom() - zoom);
+    }
+
+    private void fireZoomChanged() {
+        if(zoomListener != null) {
+            zoomListener.run();
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        TilePyramid shown = pyramid;
+        if(shown == null) {
+            return;
+        }
+        int tiles = 1 << zoom;
+        double scale = scale(shown);
+        double left = centerX / scale - getWidth() / 2.0;
+        double top = centerY / scale - getHeight() / 2.0;
+        int firstColumn = Math.max(0, (int)Math.floor(left / tileSize));
+        int lastColumn = Math.min(tiles - 1, (int)Math.floor((left + getWidth() - 1) / tileSize));
+        int firstRow = Math.max(0, (int)Math.floor(top / tileSize));
+        int lastRow = Math.min(tiles - 1, (int)Math.floor((top + getHeight() - 1) / tileSize));
+        TileRange range = new TileRange(shown, zoom, firstColumn, lastColumn, firstRow, lastRow, directionX, directionY);
+        wanted = range;
+        for(int row=firstRow;row<=lastRow;row++) {
+            for(int column=firstColumn;column<=lastColumn;column++) {
+                int x = (int)Math.round(column * (double)tileSize - left);
+                int y = (int)Math.round(row * (double)tileSize - top);
+                BufferedImage tile = cache.get(TileCache.key(zoom, column, row));
+                if(tile == null) {
+                    load(shown, zoom, column, row, PRIORITY_VISIBLE);
+                    drawFallback(g, column, row, x, y);
+                }
+                else if(tile != TileCache.EMPTY) {
+                    g.drawImage(tile, x, y, tileSize, tileSize, null);
+                }
+            }
+        }
+        prefetch(shown, range);
+    }
+
+    /**
+     * Draw the part of the nearest lower zoom level tile in the cache that covers a tile.
+     */
+    private void drawFallback(Graphics g, int column, int row, int x, int y) {
+        for(int levels=1;levels<=zoom;levels++) {
+            BufferedImage parent = cache.get(TileCache.key(zoom - levels, column >> levels, row >> levels));
+            if(parent == TileCache.EMPTY) {
+                return;
+            }
+            if(parent != null) {
+                int size = parent.getWidth() >> levels;
+                if(size == 0) {
+                    return;
+                }
+                int sourceX = (column & ((1 << levels) - 1)) * size;
+                int sourceY = (row & ((1 << levels) - 1)) * size;
+                ((Graphics2D)g).drawImage(parent, x, y, x + tileSize, y + tileSize, sourceX, sourceY, sourceX + size, sourceY + size, null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Load the tiles just past the edge of the view the map is being dragged towards.
+     */
+    private void prefetch(TilePyramid shown, TileRange range) {
+        int tiles = 1 << range.zoom;
+        if(range.directionX != 0) {
+            int column = range.directionX > 0 ? range.lastColumn + 1 : range.firstColumn - 1;
+            if(column >= 0 && column < tiles) {
+                for(int row=range.firstRow;row<=range.lastRow;row++) {
+                    load(shown, range.zoom, column, row, PRIORITY_PREFETCH);
+                }
+            }
+        }
+        if(range.directionY != 0) {
+            int row = range.directionY > 0 ? range.lastRow + 1 : range.firstRow - 1;
+            if(row >= 0 && row < tiles) {
+                for(int column=range.firstColumn;column<=range.lastColumn;column++) {
+                    load(shown, range.zoom, column, row, PRIORITY_PREFETCH);
+                }
+            }
+        }
+    }
+
+    private void load(TilePyramid shown, int tileZoom, int column, int row, int priority) {
+        long key = TileCache.key(tileZoom, column, row);
+        if(cache.get(key) == null && loading.add(key)) {
+            decoders.execute(new TileLoad(shown, tileZoom, column, row, priority, sequence.incrementAndGet()));
+        }
+    }
+
+    /**
+     * Drop the decoded tiles, for example after the map was rendered again.
+     */
+    public void reload() {
+        cache.clear();
+        repaint();
+    }
+
+    /**
+     * Tiles in view, and the direction the view moves in.
+     */
+    private static class TileRange {
+        private TilePyramid pyramid;
+        private int zoom;
+        private int firstColumn;
+        private int lastColumn;
+        private int firstRow;
+        private int lastRow;
+        private int directionX;
+        private int directionY;
+
+        private TileRange(TilePyramid pyramid, int zoom, int firstColumn, int lastColumn, int firstRow, int lastRow,
+                int directionX, int directionY) {
+            this.pyramid = pyramid;
+            this.zoom = zoom;
+            this.firstColumn = firstColumn;
+            this.lastColumn = lastColumn;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.directionX = directionX;
+            this.directionY = directionY;
+        }
+
+        /**
+         * @return true if the tile is in view or one tile past its edge
+         */
+        private boolean contains(TilePyramid tilePyramid, int tileZoom, int column, int row) {
+            return tilePyramid == pyramid && tileZoom == zoom && column >= firstColumn - 1 && column <= lastColumn + 1
+                    && row >= firstRow - 1 && row <= lastRow + 1;
+        }
+    }
+
+    /**
+     * Decodes one tile. Tiles in view go before tiles loaded ahead, older requests before newer ones.
+     */
+    private class TileLoad implements Runnable, Comparable<TileLoad> {
+        private TilePyramid tilePyramid;
+        private int tileZoom;
+        private int column;
+        private int row;
+        private int priority;
+        private long order;
+
+        private TileLoad(TilePyramid tilePyramid, int tileZoom, int column, int row, int priority, long order) {
+            this.tilePyramid = tilePyramid;
+            this.tileZoom = tileZoom;
+            this.column = column;
+            this.row = row;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(TileLoad other) {
+            if(priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return Long.compare(order, other.order);
+        }
+
+        @Override
+        public void run() {
+            long key = TileCache.key(tileZoom, column, row);
+            try {
+                TileRange range = wanted;
+                if(range == null || !range.contains(tilePyramid, tileZoom, column, row)) {
+                    return;
+                }
+                File file = tilePyramid.getTile(tileZoom, column, row);
+                BufferedImage tile = file.isFile() ? decode(file) : null;
+                if(pyramid != tilePyramid) {
+                    return;
+                }
+                cache.put(key, tile == null ? TileCache.EMPTY : tile);
+                if(tile != null && tileZoom == 0 && tile.getWidth() != tileSize) {
+                    final int size = tile.getWidth();
+                    SwingUtilities.invokeLater(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            centerX = centerX * size / tileSize;
+                            centerY = centerY * size / tileSize;
+                            tileSize = size;
+                            repaint();
+                        }
+                    });
+                }
+            }
+            catch (IOException e) {
+                cache.put(key, TileCache.EMPTY);
+            }
+            finally {
+                loading.remove(key);
+            }
+            repaint();
+        }
+    }
+
+    /**
+     * Read a tile and convert it to the pixel layout that is quickest to draw.
+     */
+    private static BufferedImage decode(File file) throws IOException {
+        BufferedImage read = ImageIO.read(file);
+        if(read == null || read.getType() == BufferedImage.TYPE_INT_ARGB_PRE) {
+            return read;
+        }
+        BufferedImage tile = new BufferedImage(read.getWidth(), read.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = tile.createGraphics();
+        g.drawImage(read, 0, 0, null);
+        g.dispose();
+        return tile;
+    }
+}
@@ -0,0 +1,160 @@
+package overviewergui;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+
+/**
+ * Details of a Minecraft world shown in the map list, with the modification times they were read at.
+ * 
+ * @author Mark Bernard
+ */
+public class WorldMetadata {
+    private String levelName;
+    private long lastPlayed;
+    private String gameVersion;
+    private int regionCount;
+    private long regionBytes;
+    private long levelDatModified;
+    private long regionsModified;
+    
+    /**
+     * Create metadata.
+     * 
+     * @param levelName Name of the world from level.dat.
+     * @param lastPlayed Time the world was last played in milliseconds since the epoch, or 0 if unknown.
+     * @param gameVersion Minecraft version that last saved the world, or an empty string if unknown.
+     * @param regionCount Number of region files.
+     * @param regionBytes Total size of the region files.
+     * @param levelDatModified Modification time of level.dat when it was read.
+     * @param regionsModified Modification time of the newest region file when they were counted.
+     */
+    public WorldMetadata(String levelName, long lastPlayed, String gameVersion, int regionCount, long regionBytes, 
+            long levelDatModified, long regionsModified) {
+        this.levelName = levelName;
+        this.lastPlayed = lastPlayed;
+        this.gameVersion = gameVersion;
+        this.regionCount = regionCount;
+        this.regionBytes = regionBytes;
+        this.levelDatModified = levelDatModified;
+        this.regionsModified = regionsModified;
+    }
+    
+    /**
+     * Read metadata written by {@link #write(DataOutput)}.
+     * 
+     * @param in
+     * @return the metadata
+     * @throws IOException
+     */
+    public static WorldMetadata read(DataInput in) throws IOException {
+        return new WorldMetadata(in.readUTF(), in.readLong(), in.readUTF(), in.readInt(), in.readLong(), 
+                in.readLong(), in.readLong());
+    }
+    
+    /**
+     * Write the metadata in a compact binary form.
+     * 
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(levelName);
+        out.writeLong(lastPlayed);
+        out.writeUTF(gameVersion);
+        out.writeInt(regionCount);
+        out.writeLong(regionBytes);
+        out.writeLong(levelDatModified);
+        out.writeLong(regionsModified);
+    }
+    
+    /**
+     * A region file that grows keeps the modification time of its folder, so the region files themselves
+     * are compared.
+     * 
+     * @param levelDatModified Current modification time of level.dat.
+     * @param regionCount Current number of region files.
+     * @param regionBytes Current total size of the region files.
+     * @param regionsModified Current modification time of the newest region file.
+     * @return true if the metadata was read from the world as it is now
+     */
+    public boolean isCurrent(long levelDatModified, int regionCount, long regionBytes, long regionsModified) {
+        return this.levelDatModified == levelDatModified && this.regionCount == regionCount && 
+                this.regionBytes == regionBytes && this.regionsModified == regionsModified;
+    }
+
+    /**
+     * @return the modification time of level.dat when it was read
+     */
+    public long getLevelDatModified() {
+        return levelDatModified;
+    }
+
+    /**
+     * @return the levelName
+     */
+    public String getLevelName() {
+        return levelName;
+    }
+
+    /**
+     * @return the time the world was last played in milliseconds since the epoch, or 0 if unknown
+     */
+    public long getLastPlayed() {
+        return lastPlayed;
+    }
+
+    /**
+     * @return the gameVersion, or an empty string if unknown
+     */
+    public String getGameVersion() {
+        return gameVersion;
+    }
+
+    /**
+     * @return the number of region files
+     */
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    /**
+     * @return the total size of the region files in bytes
+     */
+    public long getRegionBytes() {
+        return regionBytes;
+    }
+    
+    /**
+     * @return a one line summary for the map list
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        if(gameVersion.length() > 0) {
+            summary.append(gameVersion).append(", ");
+        }
+        if(lastPlayed > 0) {
+            summary.append("played ").append(DateFormat.getDateInstance(DateFormat.MEDIUM).format(new Date(lastPlayed))).append(", ");
+        }
+        summary.append(regionCount).append(regionCount == 1 ? " region, " : " regions, ");
+        summary.append(formatBytes(regionBytes));
+        return summary.toString();
+    }
+    
+    /**
+     * Format a size for display.
+     * 
+     * @param bytes
+     * @return the size in the largest unit that keeps it at or above 1
+     */
+    public static String formatBytes(long bytes) {
+        if(bytes < 1024) {
+            return bytes + " B";
+        }
+        String units = "KMGTPE";
+        int unit = Math.min(units.length(), (63 - Long.numberOfLeadingZeros(bytes)) / 10);
+        return String.format("%.1f %sB", bytes / Math.pow(1024, unit), units.charAt(unit - 1));
+    }
+}
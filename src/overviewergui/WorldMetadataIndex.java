@@ -0,0 +1,224 @@
+package overviewergui;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Cache of {@link WorldMetadata} keyed by world folder. The cache is loaded from disk so the map list can 
+ * show details straight away, and each world is checked against the modification time of level.dat and the 
+ * number, size and newest modification time of its region files the first time it is shown. Worlds that 
+ * changed are read again on a background thread, level.dat only if it changed itself, and the cache is 
+ * written back once the work is done.
+ * 
+ * @author Mark Bernard
+ */
+public class WorldMetadataIndex {
+    private static final int MAGIC = 0x4f474d49;
+    private static final int VERSION = 2;
+    /** A world shown again after this long is checked again. */
+    private static final long RECHECK_MILLIS = 60000;
+    private static final String LEVEL_NAME = "Data.LevelName";
+    private static final String LAST_PLAYED = "Data.LastPlayed";
+    private static final String VERSION_NAME = "Data.Version.Name";
+    private static final Set<String> LEVEL_PATHS = new HashSet<>(Arrays.asList(LEVEL_NAME, LAST_PLAYED, VERSION_NAME));
+    
+    private File cacheFile;
+    private Map<String, WorldMetadata> worlds;
+    private Map<String, Long> checkedAt;
+    private ExecutorService executor;
+    private Runnable changeListener;
+    private Executor notifier;
+    private int pending;
+    private boolean dirty;
+    
+    /**
+     * Load the index from its cache file.
+     * 
+     * @param cacheFile The cache file, or null to keep the details in memory only.
+     */
+    public WorldMetadataIndex(File cacheFile) {
+        this.cacheFile = cacheFile;
+        worlds = new ConcurrentHashMap<>();
+        checkedAt = new HashMap<>();
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "World metadata indexer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            load();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * @param changeListener called when the details of a world change
+     * @param notifier Runs the listener, such as on the thread of a user interface.
+     */
+    public void setChangeListener(Runnable changeListener, Executor notifier) {
+        this.changeListener = changeListener;
+        this.notifier = notifier;
+    }
+    
+    /**
+     * Get the cached details of a world and, the first time a world is asked for or if it has not been 
+     * checked for a while, check them in the background. Called on the event dispatch thread when a world 
+     * is shown.
+     * 
+     * @param world World folder.
+     * @return the cached details or null if the world has not been read yet
+     */
+    public WorldMetadata get(final File world) {
+        final String key = world.getAbsolutePath();
+        long now = System.currentTimeMillis();
+        Long lastChecked = checkedAt.get(key);
+        if(lastChecked == null || now - lastChecked > RECHECK_MILLIS) {
+            checkedAt.put(key, now);
+            synchronized (this) {
+                pending++;
+            }
+            executor.execute(new Runnable() {
+                
+                @Override
+                public void run() {
+                    revalidate(key, world);
+                }
+            });
+        }
+        return worlds.get(key);
+    }
+    
+    private void revalidate(String key, File world) {
+        try {
+            File levelDat = new File(world, "level.dat");
+            long levelDatModified = levelDat.lastModified();
+            WorldMetadata cached = worlds.get(key);
+            if(levelDatModified == 0) {
+                if(cached != null) {
+                    worlds.remove(key);
+                    changed();
+                }
+                return;
+            }
+            int regionCount = 0;
+            long regionBytes = 0;
+            long regionsModified = 0;
+            for(File region:RegionManifest.listRegionFiles(world)) {
+                regionCount++;
+                regionBytes += region.length();
+                regionsModified = Math.max(regionsModified, region.lastModified());
+            }
+            if(cached == null || cached.getLevelDatModified() != levelDatModified) {
+                worlds.put(key, readWorld(world, levelDat, levelDatModified, regionCount, regionBytes, regionsModified));
+                changed();
+            }
+            else if(!cached.isCurrent(levelDatModified, regionCount, regionBytes, regionsModified)) {
+                worlds.put(key, new WorldMetadata(cached.getLevelName(), cached.getLastPlayed(), cached.getGameVersion(), 
+                        regionCount, regionBytes, levelDatModified, regionsModified));
+                changed();
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        finally {
+            boolean save;
+            synchronized (this) {
+                pending--;
+                save = pending == 0 && dirty;
+                if(save) {
+                    dirty = false;
+                }
+            }
+            if(save) {
+                try {
+                    save();
+                }
+                catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+    
+    private WorldMetadata readWorld(File world, File levelDat, long levelDatModified, int regionCount, long regionBytes, 
+            long regionsModified) throws IOException {
+        Map<String, Object> values;
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(levelDat)))) {
+            values = NbtReader.readValues(in, LEVEL_PATHS);
+        }
+        String levelName = values.get(LEVEL_NAME) instanceof String ? (String)values.get(LEVEL_NAME) : world.getName();
+        long lastPlayed = values.get(LAST_PLAYED) instanceof Long ? (Long)values.get(LAST_PLAYED) : 0;
+        String gameVersion = values.get(VERSION_NAME) instanceof String ? (String)values.get(VERSION_NAME) : "";
+        return new WorldMetadata(levelName, lastPlayed, gameVersion, regionCount, regionBytes, levelDatModified, regionsModified);
+    }
+    
+    private void changed() {
+        synchronized (this) {
+            dirty = true;
+        }
+        if(changeListener != null) {
+            notifier.execute(changeListener);
+        }
+    }
+    
+    private void load() throws IOException {
+        if(cacheFile == null || !cacheFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for(int i=0;i<count;i++) {
+                String key = in.readUTF();
+                worlds.put(key, WorldMetadata.read(in));
+            }
+        }
+    }
+    
+    private void save() throws IOException {
+        if(cacheFile == null) {
+            return;
+        }
+        File temp = new File(cacheFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            Map<String, WorldMetadata> snapshot = new HashMap<>(worlds);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+            for(Map.Entry<String, WorldMetadata> entry:snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+        }
+        Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}